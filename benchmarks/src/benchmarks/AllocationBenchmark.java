@@ -0,0 +1,80 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import filesystem.FileSystem;
+
+/**
+ * Benchmarks of search and allocation of free blocks on empty volume, on
+ * volume with every second block used and on full volume.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AllocationBenchmark {
+
+	@Param({"4096", "65536"})
+	public int blocksCount;
+
+	@Param({"1024"})
+	public int blockSize;
+
+	@Param({"empty", "half", "full"})
+	public String fill;
+
+	private FileSystem fs;
+
+	@Setup
+	public void setUp() {
+		fs = Volumes.create(blocksCount, blockSize);
+		if (fill.equals("empty")) {
+			return;
+		}
+		fs.allocateBlocks(blocksCount);
+		if (fill.equals("half")) {
+			// free blocks are spread over whole volume
+			for (int i = 1; i < blocksCount; i += 2) {
+				fs.freeBlock(i);
+			}
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		fs.close();
+	}
+
+	@Benchmark
+	public int getFirstFreeBlock() {
+		return fs.getFirstFreeBlock();
+	}
+
+	// volume has same free blocks after each invocation
+	@Benchmark
+	public int allocateAndFree() {
+		int index = fs.allocateBlock();
+		if (index != FileSystem.WRONG_BLOCK) {
+			fs.freeBlock(index);
+		}
+		return index;
+	}
+}
@@ -0,0 +1,197 @@
+package benchmarks;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Console application, which compares results of benchmarks with baseline.
+ * Both results are csv files of JMH, benchmark is slower, when its average
+ * time grew more than allowed part of baseline score and score errors.
+ * Application exits with status 1, if some benchmarks became slower:
+ * Compare baseline.csv current.csv [allowed part, 0.2 by default].
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public class Compare {
+
+	public static final transient double DEFAULT_ALLOWED = 0.2;
+
+	// columns of csv file of JMH
+	private static final transient String BENCHMARK = "Benchmark";
+
+	private static final transient String MODE = "Mode";
+
+	private static final transient String SCORE = "Score";
+
+	private static final transient String ERROR = "Score Error (99.9%)";
+
+	private static final transient String UNIT = "Unit";
+
+	private static final transient String PARAMETER = "Param: ";
+
+	// result of one benchmark with its parameters
+	private static class Score {
+
+		private final String mode;
+
+		private final double score;
+
+		private final double error;
+
+		private final String unit;
+
+		private Score(String mode, double score, double error, String unit) {
+			this.mode = mode;
+			this.score = score;
+			this.error = error;
+			this.unit = unit;
+		}
+	}
+
+	public static void main(String[] args) {
+		if (args.length != 2 && args.length != 3) {
+			System.err.println("Wrong parameters count!");
+			System.exit(2);
+		}
+		double allowed = DEFAULT_ALLOWED;
+		try {
+			if (args.length == 3) {
+				allowed = Double.parseDouble(args[2]);
+			}
+			Map<String, Score> baseline = read(args[0]);
+			Map<String, Score> current = read(args[1]);
+			System.exit(compare(baseline, current, allowed) == 0 ? 0 : 1);
+		} catch (IOException | IllegalArgumentException e) {
+			System.err.println(e);
+			System.exit(2);
+		}
+	}
+
+	/**
+	 * Prints change of each benchmark, which has result in baseline.
+	 *
+	 * @return count of benchmarks, which became slower
+	 */
+	static int compare(Map<String, Score> baseline,
+			Map<String, Score> current, double allowed) {
+		int slower = 0;
+		for (Map.Entry<String, Score> entry: baseline.entrySet()) {
+			Score before = entry.getValue();
+			Score after = current.get(entry.getKey());
+			if (after == null) {
+				System.out.println(entry.getKey() + ": not run.");
+				continue;
+			}
+			if (!before.unit.equals(after.unit) ||
+				!before.mode.equals(after.mode)) {
+				System.out.println(entry.getKey() + ": other mode or unit.");
+				continue;
+			}
+			// throughput is better, when it is bigger
+			boolean throughput = before.mode.equals("thrpt");
+			double change = (after.score - before.score)/before.score;
+			double margin = allowed*before.score + before.error + after.error;
+			boolean regressed = throughput ?
+				after.score < before.score - margin :
+				after.score > before.score + margin;
+			if (regressed) {
+				slower++;
+			}
+			System.out.println(String.format(Locale.ROOT,
+				"%s: %.3f -> %.3f %s (%+.1f%%)%s", entry.getKey(),
+				before.score, after.score, after.unit, 100*change,
+				regressed ? " SLOWER" : ""));
+		}
+		System.out.println(slower + " of " + baseline.size() +
+			" benchmarks became slower.");
+		return slower;
+	}
+
+	/**
+	 * Reads results by names of benchmarks with their parameters.
+	 */
+	static Map<String, Score> read(String pathName) throws IOException {
+		Map<String, Score> scores = new LinkedHashMap<String, Score>();
+		try (BufferedReader reader =
+				new BufferedReader(new FileReader(pathName))) {
+			String line = reader.readLine();
+			if (line == null) {
+				throw new IllegalArgumentException("Wrong results " +
+					pathName + "!");
+			}
+			List<String> header = split(line);
+			int benchmark = column(header, BENCHMARK);
+			int mode = column(header, MODE);
+			int score = column(header, SCORE);
+			int error = column(header, ERROR);
+			int unit = column(header, UNIT);
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty()) {
+					continue;
+				}
+				List<String> values = split(line);
+				StringBuilder name = new StringBuilder(values.get(benchmark));
+				for (int i = 0; i < header.size(); i++) {
+					if (header.get(i).startsWith(PARAMETER) &&
+						i < values.size() && !values.get(i).isEmpty()) {
+						name.append(' ').append(header.get(i)
+							.substring(PARAMETER.length()))
+							.append('=').append(values.get(i));
+					}
+				}
+				scores.put(name.toString(), new Score(values.get(mode),
+					number(values.get(score)), number(values.get(error)),
+					values.get(unit)));
+			}
+		}
+		return scores;
+	}
+
+	private static int column(List<String> header, String name) {
+		int column = header.indexOf(name);
+		if (column < 0) {
+			throw new IllegalArgumentException("There is no column " + name +
+				"!");
+		}
+		return column;
+	}
+
+	// error of single measurement is NaN
+	private static double number(String data) {
+		double parsed = Double.parseDouble(data);
+		return Double.isNaN(parsed) ? 0 : parsed;
+	}
+
+	// values of line, which are quoted, when they contain commas
+	private static List<String> split(String line) {
+		List<String> values = new ArrayList<String>();
+		StringBuilder value = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c == '"') {
+				if (quoted && i + 1 < line.length() &&
+					line.charAt(i + 1) == '"') {
+					value.append(c);
+					i++;
+				} else {
+					quoted = !quoted;
+				}
+			} else if (c == ',' && !quoted) {
+				values.add(value.toString());
+				value.setLength(0);
+			} else {
+				value.append(c);
+			}
+		}
+		values.add(value.toString());
+		return values;
+	}
+}
@@ -0,0 +1,101 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import filesystem.FileDescriptor;
+import filesystem.FileSystem;
+
+/**
+ * Benchmarks of reads and writes of whole blocks of one file, which are
+ * found by its block map, in sequential and random order.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DataPathBenchmark {
+
+	// accesses in random order, which are repeated
+	private static final transient int ORDER_SIZE = 1 << 16;
+
+	@Param({"64", "1024"})
+	public int fileBlocks;
+
+	@Param({"65536"})
+	public int blocksCount;
+
+	@Param({"1024", "4096"})
+	public int blockSize;
+
+	private FileSystem fs;
+
+	private FileDescriptor fd;
+
+	private String data;
+
+	private int[] order;
+
+	private int next;
+
+	@Setup
+	public void setUp() {
+		fs = Volumes.create(blocksCount, blockSize);
+		fd = Volumes.createFiles(fs, 1)[0];
+		data = Volumes.data(fs);
+		if (fs.resize(fd, fileBlocks) < 0) {
+			throw new IllegalStateException("Volume is too small!");
+		}
+		// blocks of holes are allocated before measurement
+		for (int i = 0; i < fileBlocks; i++) {
+			fs.writeData(fd, i, data);
+		}
+		order = Volumes.randomOrder(ORDER_SIZE, fileBlocks);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		fs.close();
+	}
+
+	@Benchmark
+	public String sequentialRead() {
+		next = (next + 1) % fileBlocks;
+		return fs.readData(fd, next);
+	}
+
+	@Benchmark
+	public String randomRead() {
+		next = (next + 1) & (ORDER_SIZE - 1);
+		return fs.readData(fd, order[next]);
+	}
+
+	@Benchmark
+	public int sequentialWrite() {
+		next = (next + 1) % fileBlocks;
+		return fs.writeData(fd, next, data);
+	}
+
+	@Benchmark
+	public int randomWrite() {
+		next = (next + 1) & (ORDER_SIZE - 1);
+		return fs.writeData(fd, order[next], data);
+	}
+}
@@ -0,0 +1,109 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import filesystem.FileDescriptor;
+import filesystem.FileSystem;
+
+/**
+ * Benchmarks of names of files in one directory: adding of link, lookups
+ * of descriptor by name and by uid and finding of name by descriptor.
+ * Names and descriptors are accessed in random order.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NamespaceBenchmark {
+
+	// accesses in random order, which are repeated
+	private static final transient int ORDER_SIZE = 1 << 16;
+
+	// root directory takes one descriptor of volume
+	@Param({"1024", "16384", "65535"})
+	public int names;
+
+	@Param({"65536"})
+	public int blocksCount;
+
+	@Param({"1024"})
+	public int blockSize;
+
+	private FileSystem fs;
+
+	private FileDescriptor[] files;
+
+	// numbers of files in order of accesses
+	private int[] numbers;
+
+	private String[] order;
+
+	private long[] uids;
+
+	private int next;
+
+	@Setup
+	public void setUp() {
+		fs = Volumes.create(blocksCount, blockSize);
+		files = Volumes.createFiles(fs, names);
+		numbers = Volumes.randomOrder(ORDER_SIZE, names);
+		order = new String[ORDER_SIZE];
+		uids = new long[ORDER_SIZE];
+		for (int i = 0; i < ORDER_SIZE; i++) {
+			order[i] = Volumes.name(numbers[i]);
+			uids[i] = files[numbers[i]].getUid();
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		fs.close();
+	}
+
+	// directory has same names after each invocation
+	@Benchmark
+	public int addLink() {
+		FileDescriptor fd = files[numbers[next()]];
+		int message = fs.addLink(fs.getRoot(), "link", fd);
+		fs.removeLink(fs.getRoot(), "link");
+		return message;
+	}
+
+	@Benchmark
+	public FileDescriptor getFileDescriptorByName() {
+		return fs.getFileDescriptor(order[next()]);
+	}
+
+	@Benchmark
+	public FileDescriptor getFileDescriptorByUid() {
+		return fs.getFileDescriptor(uids[next()]);
+	}
+
+	@Benchmark
+	public String getName() {
+		return fs.getName(files[numbers[next()]]);
+	}
+
+	private int next() {
+		next = (next + 1) & (ORDER_SIZE - 1);
+		return next;
+	}
+}
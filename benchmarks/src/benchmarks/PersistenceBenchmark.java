@@ -0,0 +1,120 @@
+package benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import filesystem.FileDescriptor;
+import filesystem.FileSystem;
+
+/**
+ * Benchmarks of saving and loading of whole volume: mount and umount of
+ * binary image, serialized volume and xml file. Quarter of blocks of volume
+ * is taken by files with one written block.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PersistenceBenchmark {
+
+	@Param({"4096", "16384"})
+	public int blocksCount;
+
+	@Param({"1024"})
+	public int blockSize;
+
+	private FileSystem fs;
+
+	private File directory;
+
+	// files, which are only read
+	private String image;
+
+	private String serialized;
+
+	private String xml;
+
+	@Setup
+	public void setUp() throws Exception {
+		fs = Volumes.create(blocksCount, blockSize);
+		String data = Volumes.data(fs);
+		for (FileDescriptor fd: Volumes.createFiles(fs, blocksCount/4)) {
+			fs.writeData(fd, 0, data);
+		}
+		directory = Volumes.createDirectory();
+		image = new File(directory, "read.img").getPath();
+		serialized = new File(directory, "read.ser").getPath();
+		xml = new File(directory, "read.xml").getPath();
+		FileSystem.writeImage(fs, image);
+		FileSystem.write(fs, serialized);
+		FileSystem.writeXML(fs, xml);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		fs.close();
+		Volumes.delete(directory);
+	}
+
+	@Benchmark
+	public void writeImage() throws Exception {
+		FileSystem.writeImage(fs, new File(directory, "write.img").getPath());
+	}
+
+	@Benchmark
+	public FileSystem readImage() throws Exception {
+		FileSystem read = FileSystem.readImage(image);
+		read.close();
+		return read;
+	}
+
+	// only header and tables are read, blocks are read on first access
+	@Benchmark
+	public FileSystem readImageLazy() throws Exception {
+		FileSystem read = FileSystem.readImage(image, true);
+		read.close();
+		return read;
+	}
+
+	@Benchmark
+	public void write() throws Exception {
+		FileSystem.write(fs, new File(directory, "write.ser").getPath());
+	}
+
+	@Benchmark
+	public FileSystem read() throws Exception {
+		FileSystem read = FileSystem.read(serialized);
+		read.close();
+		return read;
+	}
+
+	@Benchmark
+	public void writeXML() throws Exception {
+		FileSystem.writeXML(fs, new File(directory, "write.xml").getPath());
+	}
+
+	@Benchmark
+	public FileSystem readXML() throws Exception {
+		FileSystem read = FileSystem.readXML(xml);
+		read.close();
+		return read;
+	}
+}
@@ -0,0 +1,87 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import filesystem.FileDescriptor;
+import filesystem.FileSystem;
+import filesystem.SlabBlockDevice;
+
+/**
+ * Class for volumes and files, which are prepared for benchmarks.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+final class Volumes {
+
+	// seed of random accesses, so runs are compared on same data
+	static final transient long SEED = 20261017L;
+
+	private Volumes() {}
+
+	static FileSystem create(int blocksCount, int blockSize) {
+		return new FileSystem(new SlabBlockDevice(blocksCount, blockSize));
+	}
+
+	/**
+	 * Creates files with names f0, f1 and so on in root directory.
+	 *
+	 * @return descriptors of created files
+	 */
+	static FileDescriptor[] createFiles(FileSystem fs, int count) {
+		FileDescriptor[] files = new FileDescriptor[count];
+		for (int i = 0; i < count; i++) {
+			if (fs.create(name(i)) < 0) {
+				throw new IllegalStateException("Volume is too small!");
+			}
+			files[i] = fs.getFileDescriptor(name(i));
+		}
+		return files;
+	}
+
+	static String name(int number) {
+		return "f" + number;
+	}
+
+	/**
+	 * @return data, which fills block of volume
+	 */
+	static String data(FileSystem fs) {
+		// block keeps 2 bytes per char
+		char[] data = new char[fs.getDevice().blockSize()/2];
+		Random random = new Random(SEED);
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (char) ('A' + random.nextInt(26));
+		}
+		return new String(data);
+	}
+
+	/**
+	 * @return numbers from 0 to bound in random order of accesses
+	 */
+	static int[] randomOrder(int count, int bound) {
+		int[] order = new int[count];
+		Random random = new Random(SEED);
+		for (int i = 0; i < count; i++) {
+			order[i] = random.nextInt(bound);
+		}
+		return order;
+	}
+
+	static File createDirectory() throws IOException {
+		return Files.createTempDirectory("filesystem-benchmarks").toFile();
+	}
+
+	static void delete(File directory) {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file: files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+}
@@ -0,0 +1,26 @@
+/**
+ * Package contains JMH benchmarks of file system: allocation of blocks,
+ * names of files, reads and writes of blocks of files and saving and
+ * loading of whole volume. Benchmarks are separate Eclipse project, which
+ * depends on FilesystemSim project and jars of JMH 1.37 in its lib
+ * directory: jmh-core, jmh-generator-annprocess, jopt-simple and
+ * commons-math3.
+ * <p>
+ * Without Eclipse benchmarks are built and run from root of repository:
+ * <pre>
+ * mkdir -p benchmarks/bin
+ * javac -cp "lib/*:benchmarks/lib/*" -d benchmarks/bin \
+ *     $(find src benchmarks/src -name '*.java')
+ * java -cp "lib/*:benchmarks/lib/*:benchmarks/bin" org.openjdk.jmh.Main \
+ *     -rf csv -rff benchmarks/results/current.csv
+ * java -cp "benchmarks/bin" benchmarks.Compare \
+ *     benchmarks/results/baseline.csv benchmarks/results/current.csv
+ * </pre>
+ * Geometry of volumes is set by JMH parameters, for example
+ * -p blocksCount=16384 -p blockSize=4096. {@link benchmarks.Compare}
+ * reports benchmarks, which became slower than in baseline.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+package benchmarks;
@@ -0,0 +1,53 @@
+package filesystem;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of search of free blocks by allocator.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+@Name("filesystem.Allocation")
+@Label("Block Allocation")
+@Category("File System")
+@Description("Search of free blocks in bitmap of allocator")
+final class FlightAllocationEvent extends Event implements AllocationEvent {
+
+	@Label("Requested")
+	int requested;
+
+	@Label("Allocated")
+	int allocated;
+
+	@Label("Scanned")
+	@Description("Count of blocks, which bitmap words were checked")
+	long scanned;
+
+	@Label("Free")
+	@Description("Count of free blocks after allocation")
+	int free;
+
+	@Override
+	public long getScanned() {
+		return scanned;
+	}
+
+	@Override
+	public void setScanned(long scanned) {
+		this.scanned = scanned;
+	}
+
+	@Override
+	public void setValues(int requested, int allocated, long scanned,
+			int free) {
+		this.requested = requested;
+		this.allocated = allocated;
+		this.scanned = scanned;
+		this.free = free;
+	}
+}
@@ -0,0 +1,57 @@
+package filesystem;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of read or write of file data.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+@Name("filesystem.Data")
+@Label("Data Operation")
+@Category("File System")
+@Description("Read or write of file data. Offset and size are in chars " +
+	"for text operations and in bytes for buffer operations")
+final class FlightDataEvent extends Event implements DataEvent {
+
+	@Label("Operation")
+	String operation;
+
+	@Label("Inode")
+	long inode;
+
+	@Label("Offset")
+	long offset;
+
+	@Label("Size")
+	@Description("Count of read or written chars or bytes")
+	long size;
+
+	@Label("Blocks")
+	@Description("Count of blocks, which were read or written")
+	int blocks;
+
+	@Override
+	public long getOffset() {
+		return offset;
+	}
+
+	@Override
+	public void setOffset(long offset) {
+		this.offset = offset;
+	}
+
+	@Override
+	public void setValues(String operation, long inode, long size,
+			int blocks) {
+		this.operation = operation;
+		this.inode = inode;
+		this.size = size;
+		this.blocks = blocks;
+	}
+}
@@ -0,0 +1,58 @@
+package filesystem;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of operation, which changes namespace of file
+ * system.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+@Name("filesystem.Namespace")
+@Label("Namespace Operation")
+@Category("File System")
+@Description("Creation or removal of file, directory or link")
+final class FlightNamespaceEvent extends Event implements NamespaceEvent {
+
+	@Label("Operation")
+	String operation;
+
+	@Label("Path")
+	String path;
+
+	@Label("Target")
+	@Description("Target of symbolic link or existing file of hard link")
+	String target;
+
+	@Label("Inode")
+	@Description("Uid of created or removed file or 0, if it was not found")
+	long inode;
+
+	@Label("Result")
+	@Description("Returned message, 0 on success")
+	int result;
+
+	@Override
+	public long getInode() {
+		return inode;
+	}
+
+	@Override
+	public void setInode(long inode) {
+		this.inode = inode;
+	}
+
+	@Override
+	public void setValues(String operation, String path, String target,
+			int result) {
+		this.operation = operation;
+		this.path = path;
+		this.target = target;
+		this.result = result;
+	}
+}
@@ -0,0 +1,49 @@
+package filesystem;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of one phase of reading or writing of volume.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+@Name("filesystem.Persistence")
+@Label("Persistence Phase")
+@Category("File System")
+@Description("Phase of reading or writing of image, XML or serialized " +
+	"volume or of forcing of journal")
+final class FlightPersistenceEvent extends Event implements PersistenceEvent {
+
+	@Label("Operation")
+	String operation;
+
+	@Label("Phase")
+	String phase;
+
+	@Label("Path")
+	String path;
+
+	@Label("Bytes")
+	@DataAmount
+	long bytes;
+
+	@Label("Objects")
+	@Description("Count of descriptors or of replayed journal records")
+	long objects;
+
+	@Override
+	public void setValues(String operation, String phase, String path,
+			long bytes, long objects) {
+		this.operation = operation;
+		this.phase = phase;
+		this.path = path;
+		this.bytes = bytes;
+		this.objects = objects;
+	}
+}
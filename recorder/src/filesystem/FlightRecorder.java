@@ -0,0 +1,58 @@
+package filesystem;
+
+import jdk.jfr.EventType;
+
+/**
+ * Class for recorder of events of file system by flight recorder. Types of
+ * events are looked up once, so disabled event costs check of its type and
+ * is not created.
+ * <p>
+ * Recorder is separate Eclipse project, which depends on FilesystemSim
+ * project and needs JRE with flight recorder: JDK 8u262 or later. Core of
+ * file system is built without it and finds recorder on class path, so
+ * events are recorded only, when recorder is there. Without Eclipse it is
+ * built and run from root of repository:
+ * <pre>
+ * mkdir -p recorder/bin
+ * javac -cp "lib/*" -d recorder/bin $(find src recorder/src -name '*.java')
+ * java -XX:StartFlightRecording=filename=volume.jfr \
+ *     -cp "lib/*:recorder/bin" tests.Runner
+ * </pre>
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+final class FlightRecorder implements Recorder {
+
+	private final EventType namespace =
+		EventType.getEventType(FlightNamespaceEvent.class);
+
+	private final EventType data =
+		EventType.getEventType(FlightDataEvent.class);
+
+	private final EventType allocation =
+		EventType.getEventType(FlightAllocationEvent.class);
+
+	private final EventType persistence =
+		EventType.getEventType(FlightPersistenceEvent.class);
+
+	@Override
+	public NamespaceEvent namespace() {
+		return namespace.isEnabled() ? new FlightNamespaceEvent() : null;
+	}
+
+	@Override
+	public DataEvent data() {
+		return data.isEnabled() ? new FlightDataEvent() : null;
+	}
+
+	@Override
+	public AllocationEvent allocation() {
+		return allocation.isEnabled() ? new FlightAllocationEvent() : null;
+	}
+
+	@Override
+	public PersistenceEvent persistence() {
+		return persistence.isEnabled() ? new FlightPersistenceEvent() : null;
+	}
+}
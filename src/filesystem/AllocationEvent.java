@@ -0,0 +1,26 @@
+package filesystem;
+
+/**
+ * Interface for event of search of free blocks by allocator. Events are
+ * recorded by flight recorder, see {@link Events}.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+interface AllocationEvent {
+
+	void begin();
+
+	boolean shouldCommit();
+
+	void commit();
+
+	/**
+	 * @return count of blocks, which allocator has scanned before event
+	 */
+	long getScanned();
+
+	void setScanned(long scanned);
+
+	void setValues(int requested, int allocated, long scanned, int free);
+}
@@ -0,0 +1,351 @@
+package filesystem;
+
+import java.io.Serializable;
+
+/**
+ * Class for allocating free blocks of file system. Keeps packed bitmap of
+ * used blocks, so free block can be found by word, not by block. Bitmap is
+ * allocated by pages on first use of their blocks.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public class BlockAllocator implements Serializable {
+
+	private static final long serialVersionUID = 2984315607431845923L;
+
+	// bits in one bitmap word
+	private static final transient int WORD_SIZE = 64;
+
+	private static final transient int WORD_SHIFT = 6;
+
+	private static final transient long ALL_USED = -1L;
+
+	private final int blocksCount;
+
+	// bit is set when block is used
+	private PagedLongArray bitmap;
+
+	// bitmap of volumes, saved before it was paged
+	private long[] words;
+
+	private int freeCount;
+
+	// next fit: search starts from block after last allocated one
+	private int hint;
+
+	// count of blocks, which bitmap words were checked by searches
+	private transient long scanned;
+
+	public BlockAllocator(int blocksCount) {
+		if (blocksCount <= 0) {
+			throw new IllegalArgumentException("Wrong blocks count!");
+		}
+		this.blocksCount = blocksCount;
+		bitmap = new PagedLongArray(wordsCount(blocksCount));
+		freeCount = blocksCount;
+		// tail bits of last word do not represent blocks
+		int tail = blocksCount & (WORD_SIZE - 1);
+		if (tail != 0) {
+			bitmap.set(bitmap.length() - 1, ALL_USED << tail);
+		}
+	}
+
+	/**
+	 * Creates allocator with bitmap, which words are returned by
+	 * {@link #wordAt(int)}.
+	 */
+	BlockAllocator(int blocksCount, long[] words) {
+		this(blocksCount);
+		if (words == null || words.length != bitmap.length()) {
+			throw new IllegalArgumentException("Wrong bitmap!");
+		}
+		for (int i = 0; i < words.length; i++) {
+			setWord(i, words[i]);
+		}
+	}
+
+	public int blocksCount() {
+		return blocksCount;
+	}
+
+	/**
+	 * @return count of words in bitmap
+	 */
+	int wordsCount() {
+		return bitmap.length();
+	}
+
+	/**
+	 * Returns word of bitmap with specified number. Tail bits of last word
+	 * are set.
+	 */
+	long wordAt(int word) {
+		if (word < 0 || word >= bitmap.length()) {
+			throw new IllegalArgumentException("Wrong word!");
+		}
+		return bitmap.get(word);
+	}
+
+	/**
+	 * Replaces word of bitmap with specified number. Used to restore bitmap
+	 * from image.
+	 */
+	void setWord(int word, long value) {
+		if (word < 0 || word >= bitmap.length()) {
+			throw new IllegalArgumentException("Wrong word!");
+		}
+		int tail = blocksCount & (WORD_SIZE - 1);
+		if (tail != 0 && word == bitmap.length() - 1) {
+			value |= ALL_USED << tail;
+		}
+		freeCount += Long.bitCount(bitmap.get(word)) - Long.bitCount(value);
+		bitmap.set(word, value);
+	}
+
+	/**
+	 * Returns word of bitmap, which contains bit of specified block.
+	 */
+	long word(int index) {
+		checkIndex(index);
+		return bitmap.get(index >>> WORD_SHIFT);
+	}
+
+	public int freeBlocksCount() {
+		return freeCount;
+	}
+
+	public int usedBlocksCount() {
+		return blocksCount - freeCount;
+	}
+
+	/**
+	 * Returns count of blocks, which were checked by all searches of free
+	 * blocks. Blocks are counted by whole words of bitmap.
+	 */
+	public long scannedCount() {
+		return scanned;
+	}
+
+	public boolean isUsed(int index) {
+		checkIndex(index);
+		return (bitmap.get(index >>> WORD_SHIFT) & (1L << index)) != 0;
+	}
+
+	/**
+	 * Finds first used block from specified one. Words of free blocks are 
+	 * skipped, so search takes time by used blocks, not by all ones.
+	 *
+	 * @return its number or {@link FileSystem#WRONG_BLOCK}, if there is no
+	 * such block
+	 */
+	public int nextUsed(int from) {
+		if (from < 0) {
+			throw new IllegalArgumentException("Wrong index!");
+		}
+		if (from >= blocksCount) {
+			return FileSystem.WRONG_BLOCK;
+		}
+		int word = from >>> WORD_SHIFT;
+		long used = bitmap.get(word) & (ALL_USED << from);
+		while (used == 0) {
+			word = word + 1 < bitmap.length() ? 
+				bitmap.nextNonZero(word + 1) : -1;
+			if (word < 0) {
+				return FileSystem.WRONG_BLOCK;
+			}
+			used = bitmap.get(word);
+		}
+		int index = (word << WORD_SHIFT) + Long.numberOfTrailingZeros(used);
+		// tail bits of last word are not blocks
+		return index < blocksCount ? index : FileSystem.WRONG_BLOCK;
+	}
+
+	/**
+	 * Finds first free block, starting from hint, without marking it as used.
+	 */
+	public int findFree() {
+		if (freeCount == 0) {
+			return FileSystem.WRONG_BLOCK;
+		}
+		return nextFree(hint);
+	}
+
+	public int allocate() {
+		int index = findFree();
+		if (index != FileSystem.WRONG_BLOCK) {
+			mark(index);
+			hint = next(index + 1);
+		}
+		return index;
+	}
+
+	/**
+	 * Allocates specified count of blocks. Contiguous run is returned, when
+	 * there is one, otherwise first free blocks after hint are taken. Nothing
+	 * is allocated, when there are not enough free blocks.
+	 *
+	 * @return numbers of allocated blocks or empty array
+	 */
+	public int[] allocate(int count) {
+		if (count < 0) {
+			throw new IllegalArgumentException("Wrong blocks count!");
+		}
+		if (count == 0 || count > freeCount) {
+			return new int[0];
+		}
+		int[] allocated = new int[count];
+		int start = findRun(count);
+		if (start != FileSystem.WRONG_BLOCK) {
+			for (int i = 0; i < count; i++) {
+				allocated[i] = start + i;
+				mark(start + i);
+			}
+		} else {
+			int index = hint;
+			for (int i = 0; i < count; i++) {
+				index = nextFree(index);
+				allocated[i] = index;
+				mark(index);
+				index = next(index + 1);
+			}
+		}
+		hint = next(allocated[count - 1] + 1);
+		return allocated;
+	}
+
+	/**
+	 * Marks specified block as used. Used to restore bitmap from blocks.
+	 */
+	public boolean markUsed(int index) {
+		if (isUsed(index)) {
+			return false;
+		}
+		mark(index);
+		return true;
+	}
+
+	public boolean free(int index) {
+		if (!isUsed(index)) {
+			return false;
+		}
+		int word = index >>> WORD_SHIFT;
+		bitmap.set(word, bitmap.get(word) & ~(1L << index));
+		freeCount++;
+		return true;
+	}
+
+	public void free(int start, int count) {
+		for (int i = 0; i < count; i++) {
+			free(start + i);
+		}
+	}
+
+	private void mark(int index) {
+		int word = index >>> WORD_SHIFT;
+		bitmap.set(word, bitmap.get(word) | 1L << index);
+		freeCount--;
+	}
+
+	private int next(int index) {
+		return index >= blocksCount ? 0 : index;
+	}
+
+	// there must be at least one free block
+	private int nextFree(int from) {
+		int index = scanFree(from);
+		return index == FileSystem.WRONG_BLOCK ? scanFree(0) : index;
+	}
+
+	// first free block from specified one till end of bitmap
+	private int scanFree(int from) {
+		if (from >= blocksCount) {
+			return FileSystem.WRONG_BLOCK;
+		}
+		int word = from >>> WORD_SHIFT;
+		// skip blocks before start in first word
+		long free = ~bitmap.get(word) & (ALL_USED << from);
+		scanned += WORD_SIZE;
+		while (free == 0) {
+			if (++word == bitmap.length()) {
+				return FileSystem.WRONG_BLOCK;
+			}
+			free = ~bitmap.get(word);
+			scanned += WORD_SIZE;
+		}
+		// tail bits are always used, so result is in bitmap bounds
+		return (word << WORD_SHIFT) + Long.numberOfTrailingZeros(free);
+	}
+
+	// finds contiguous run of free blocks, starting from hint, with wrap
+	private int findRun(int count) {
+		int start = findRun(hint, blocksCount, count);
+		if (start == FileSystem.WRONG_BLOCK && hint > 0) {
+			start = findRun(0, hint, count);
+		}
+		return start;
+	}
+
+	// finds run, which starts in specified range of blocks
+	private int findRun(int from, int to, int count) {
+		long index = from;
+		while (index < to) {
+			int start = scanFree((int) index);
+			if (start == FileSystem.WRONG_BLOCK || start >= to) {
+				break;
+			}
+			int length = runLength(start, count);
+			if (length >= count) {
+				return start;
+			}
+			// block after run is used
+			index = (long) start + length + 1;
+		}
+		return FileSystem.WRONG_BLOCK;
+	}
+
+	// length of free run from start, but not more than limit
+	private int runLength(int start, int limit) {
+		int length = 0;
+		long index = start;
+		while (length < limit && index < blocksCount) {
+			int word = (int) (index >>> WORD_SHIFT);
+			int bit = (int) index & (WORD_SIZE - 1);
+			long used = bitmap.get(word) >>> bit;
+			int free = used == 0 ? WORD_SIZE - bit :
+				Long.numberOfTrailingZeros(used);
+			scanned += WORD_SIZE;
+			length += free;
+			index += free;
+			if (bit + free < WORD_SIZE) {
+				break;
+			}
+		}
+		return Math.min(length, limit);
+	}
+
+	// bitmaps of old volumes are moved to pages
+	private Object readResolve() {
+		if (bitmap == null) {
+			long[] old = words;
+			words = null;
+			bitmap = new PagedLongArray(wordsCount(blocksCount));
+			// tail bits are counted as free, till last word is set
+			freeCount = (int) ((long) bitmap.length()*WORD_SIZE);
+			for (int i = 0; i < old.length; i++) {
+				setWord(i, old[i]);
+			}
+		}
+		return this;
+	}
+
+	private static int wordsCount(int blocksCount) {
+		return (int) (((long) blocksCount + WORD_SIZE - 1) >>> WORD_SHIFT);
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= blocksCount) {
+			throw new IllegalArgumentException("Wrong index!");
+		}
+	}
+}
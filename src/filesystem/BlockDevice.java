@@ -0,0 +1,91 @@
+package filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Interface for storage of file system blocks. Block is addressed by its
+ * number, which is in range from zero to blocks count.
+ * <p>
+ * Block can be accessed as bytes too: char of data is two bytes in big
+ * endian order and bytes after end of data are zeros.
+ * 
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public interface BlockDevice {
+	
+	int blocksCount();
+	
+	/**
+	 * @return size of block in bytes, block keeps half as many chars
+	 */
+	default int blockSize() {
+		return DataBlock.BLOCK_BYTES;
+	}
+	
+	String read(int index);
+	
+	/**
+	 * Writes data to block with specified number.
+	 * 
+	 * @return {@link DataBlock#TRUNCATED_DATA}, if data was longer than
+	 * block, or 0 otherwise
+	 */
+	int write(int index, String data);
+	
+	void clear(int index);
+	
+	/**
+	 * Reads bytes of block from specified offset till buffer is full. Caller
+	 * should not read after end of block.
+	 */
+	default void read(int index, int offset, ByteBuffer dst) {
+		String data = read(index);
+		int length = data == null ? 0 : data.length()*2;
+		for (int i = offset; dst.hasRemaining(); i++) {
+			dst.put(i < length ? (byte) (data.charAt(i >> 1) >>> 
+				((i & 1) == 0 ? 8 : 0)) : 0);
+		}
+	}
+	
+	/**
+	 * Writes all bytes of buffer to block from specified offset, other data
+	 * of block is kept. Caller should not write after end of block.
+	 * 
+	 * @return {@link DataBlock#TRUNCATED_DATA} or 0
+	 */
+	default int write(int index, int offset, ByteBuffer src) {
+		String data = read(index);
+		int length = data == null ? 0 : data.length();
+		int end = offset + src.remaining();
+		char[] block = new char[Math.max(length, (end + 1) >> 1)];
+		if (data != null) {
+			data.getChars(0, length, block, 0);
+		}
+		for (int i = offset; i < end; i++) {
+			int b = src.get() & 0xFF;
+			char c = block[i >> 1];
+			block[i >> 1] = (i & 1) == 0 ? (char) (b << 8 | c & 0xFF) : 
+				(char) (c & 0xFF00 | b);
+		}
+		return write(index, new String(block));
+	}
+	
+	/**
+	 * Reads specified count of blocks from specified number to memory in
+	 * advance. Device, which does not keep blocks in memory, does nothing.
+	 */
+	default void prefetch(int index, int count) {}
+	
+	/**
+	 * @return true, if blocks can be read in advance
+	 */
+	default boolean canPrefetch() {
+		return false;
+	}
+	
+	void flush() throws IOException;
+	
+	void close() throws IOException;
+}
@@ -0,0 +1,94 @@
+package filesystem;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Class for index of blocks by fingerprints of their data, which is used to
+ * find block with same data, before new block is taken for it. Fingerprint
+ * is 64-bit hash, so data of found block should be compared too. Index is
+ * not synchronized, file system guards it with its bitmap.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public class BlockIndex {
+
+	private static final long SEED = 0x27D4EB2F165667C5L;
+
+	private static final long C1 = 0x87C37B91114253D5L;
+
+	private static final long C2 = 0x4CF5AD432745937FL;
+
+	// blocks by fingerprints, block with same fingerprint replaces other
+	private final Map<Long, Integer> blocks = new HashMap<Long, Integer>();
+
+	// fingerprints by blocks
+	private final Map<Integer, Long> fingerprints =
+		new HashMap<Integer, Long>();
+
+	public int size() {
+		return fingerprints.size();
+	}
+
+	/**
+	 * @return block with specified fingerprint or
+	 * {@link BlockMap#NO_BLOCK}
+	 */
+	public int find(long fingerprint) {
+		Integer index = blocks.get(fingerprint);
+		return index == null ? BlockMap.NO_BLOCK : index;
+	}
+
+	public boolean contains(int index) {
+		return fingerprints.containsKey(index);
+	}
+
+	public void put(int index, long fingerprint) {
+		remove(index);
+		Integer old = blocks.put(fingerprint, index);
+		if (old != null) {
+			fingerprints.remove(old);
+		}
+		fingerprints.put(index, fingerprint);
+	}
+
+	/**
+	 * Removes block, which data is changed or which is freed.
+	 */
+	public void remove(int index) {
+		Long fingerprint = fingerprints.remove(index);
+		if (fingerprint != null) {
+			blocks.remove(fingerprint);
+		}
+	}
+
+	/**
+	 * Computes hash of remaining bytes of buffer, position of buffer is not
+	 * changed. Words are mixed like in MurmurHash3.
+	 */
+	public static long fingerprint(ByteBuffer data) {
+		long hash = SEED ^ data.remaining();
+		int i = data.position();
+		for (; i + 8 <= data.limit(); i += 8) {
+			hash ^= mix(data.getLong(i));
+			hash = Long.rotateLeft(hash, 27)*5 + 0x52DCE729;
+		}
+		long tail = 0;
+		for (; i < data.limit(); i++) {
+			tail = tail << 8 | data.get(i) & 0xFF;
+		}
+		hash ^= mix(tail);
+		// final avalanche
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		hash *= 0xC4CEB9FE1A85EC53L;
+		return hash ^ hash >>> 33;
+	}
+
+	private static long mix(long word) {
+		return Long.rotateLeft(word*C1, 31)*C2;
+	}
+}
@@ -0,0 +1,390 @@
+package filesystem;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Class for mapping logical blocks of file to blocks of file system. Blocks
+ * are kept as extents: runs of contiguous blocks, described by first block
+ * and length. Map can have holes: logical blocks without extents, which
+ * are not stored and are read as zeros.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public class BlockMap implements Serializable {
+
+	private static final long serialVersionUID = -1842776405919862503L;
+
+	private static final transient int INITIAL_CAPACITY = 2;
+
+	// logical block in hole
+	public static final transient int NO_BLOCK = -1;
+
+	// number of first block of file system in each extent
+	private int[] starts = new int[INITIAL_CAPACITY];
+
+	// blocks count in each extent
+	private int[] lengths = new int[INITIAL_CAPACITY];
+
+	// logical number of first block in each extent
+	private int[] offsets = new int[INITIAL_CAPACITY];
+
+	private int extentsCount;
+
+	// count of logical blocks with holes
+	private int size;
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return count of blocks of file system in map
+	 */
+	public int mappedCount() {
+		int count = 0;
+		for (int i = 0; i < extentsCount; i++) {
+			count += lengths[i];
+		}
+		return count;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int extentsCount() {
+		return extentsCount;
+	}
+
+	public int extentStart(int extent) {
+		checkExtent(extent);
+		return starts[extent];
+	}
+
+	public int extentLength(int extent) {
+		checkExtent(extent);
+		return lengths[extent];
+	}
+
+	public int extentOffset(int extent) {
+		checkExtent(extent);
+		return offsets[extent];
+	}
+
+	/**
+	 * Finds extent, which contains specified logical block.
+	 *
+	 * @return extent or -1, if block is in hole
+	 */
+	public int findExtent(int logical) {
+		if (logical < 0 || logical >= size) {
+			throw new IllegalArgumentException("Wrong index!");
+		}
+		int low = before(logical + 1);
+		if (low < 0 || logical - offsets[low] >= lengths[low]) {
+			return -1;
+		}
+		return low;
+	}
+
+	/**
+	 * Finds extent, which contains specified logical block or is first one
+	 * after it.
+	 *
+	 * @return extent or extents count, if there is no such extent
+	 */
+	public int nextExtent(int logical) {
+		int low = before(logical + 1);
+		if (low >= 0 && logical - offsets[low] < lengths[low]) {
+			return low;
+		}
+		return low + 1;
+	}
+
+	/**
+	 * @return block of file system or {@link #NO_BLOCK} for hole
+	 */
+	public int get(int logical) {
+		int extent = findExtent(logical);
+		if (extent < 0) {
+			return NO_BLOCK;
+		}
+		return starts[extent] + logical - offsets[extent];
+	}
+
+	/**
+	 * Maps logical block in hole or after end of map to specified block.
+	 */
+	public void set(int logical, int block) {
+		if (logical < 0 || logical < size && findExtent(logical) >= 0) {
+			throw new IllegalArgumentException("Wrong index!");
+		}
+		// extent after block
+		int next = before(logical) + 1;
+		int previous = next - 1;
+		boolean joinsPrevious = previous >= 0 &&
+			offsets[previous] + lengths[previous] == logical &&
+			starts[previous] + lengths[previous] == block;
+		boolean joinsNext = next < extentsCount &&
+			offsets[next] == logical + 1 && starts[next] == block + 1;
+		if (joinsPrevious && joinsNext) {
+			lengths[previous] += 1 + lengths[next];
+			removeExtent(next);
+		} else if (joinsPrevious) {
+			lengths[previous]++;
+		} else if (joinsNext) {
+			starts[next]--;
+			offsets[next]--;
+			lengths[next]++;
+		} else {
+			insertExtent(next, block, 1, logical);
+		}
+		size = Math.max(size, logical + 1);
+	}
+
+	/**
+	 * Makes hole from mapped logical block.
+	 *
+	 * @return block of file system, which was mapped, or {@link #NO_BLOCK}
+	 */
+	public int unmap(int logical) {
+		int extent = findExtent(logical);
+		if (extent < 0) {
+			return NO_BLOCK;
+		}
+		int shift = logical - offsets[extent];
+		int block = starts[extent] + shift;
+		if (lengths[extent] == 1) {
+			removeExtent(extent);
+		} else if (shift == 0) {
+			starts[extent]++;
+			offsets[extent]++;
+			lengths[extent]--;
+		} else if (shift == lengths[extent] - 1) {
+			lengths[extent]--;
+		} else {
+			// split extent in two
+			insertExtent(extent + 1, block + 1, lengths[extent] - shift - 1,
+				logical + 1);
+			lengths[extent] = shift;
+		}
+		return block;
+	}
+
+	/**
+	 * Adds block after last logical block.
+	 */
+	public void add(int block) {
+		int last = extentsCount - 1;
+		if (last >= 0 && starts[last] + lengths[last] == block &&
+			offsets[last] + lengths[last] == size) {
+			lengths[last]++;
+		} else {
+			ensureCapacity(extentsCount + 1);
+			starts[extentsCount] = block;
+			lengths[extentsCount] = 1;
+			offsets[extentsCount] = size;
+			extentsCount++;
+		}
+		size++;
+	}
+
+	/**
+	 * Removes specified block of file system from map. Logical numbers of
+	 * next blocks are decreased.
+	 *
+	 * @return true, if block was found
+	 */
+	public boolean remove(int block) {
+		for (int i = 0; i < extentsCount; i++) {
+			int shift = block - starts[i];
+			if (shift < 0 || shift >= lengths[i]) {
+				continue;
+			}
+			// first extent with logical numbers after removed block
+			int next = i + 1;
+			if (lengths[i] == 1) {
+				removeExtent(i);
+				next = i;
+			} else if (shift == 0) {
+				starts[i]++;
+				lengths[i]--;
+			} else if (shift == lengths[i] - 1) {
+				lengths[i]--;
+			} else {
+				// split extent in two
+				insertExtent(i + 1, block + 1, lengths[i] - shift - 1,
+					offsets[i] + shift + 1);
+				lengths[i] = shift;
+			}
+			for (int j = next; j < extentsCount; j++) {
+				offsets[j]--;
+			}
+			size--;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Leaves only specified count of first blocks in map.
+	 */
+	public void truncate(int count) {
+		if (count < 0) {
+			throw new IllegalArgumentException("Wrong blocks count!");
+		}
+		if (count >= size) {
+			return;
+		}
+		int extent = before(count);
+		if (extent >= 0 && offsets[extent] + lengths[extent] > count) {
+			lengths[extent] = count - offsets[extent];
+		}
+		extentsCount = extent + 1;
+		size = count;
+	}
+
+	/**
+	 * Changes count of logical blocks. Added blocks are hole, so nothing is
+	 * stored for them.
+	 */
+	public void resize(int count) {
+		if (count < size) {
+			truncate(count);
+		}
+		size = count;
+	}
+
+	/**
+	 * @return blocks of file system in logical order without holes
+	 */
+	public int[] toArray() {
+		int[] blocks = new int[mappedCount()];
+		int index = 0;
+		for (int i = 0; i < extentsCount; i++) {
+			for (int j = 0; j < lengths[i]; j++) {
+				blocks[index++] = starts[i] + j;
+			}
+		}
+		return blocks;
+	}
+
+	/**
+	 * @return map with same blocks, which is changed independently
+	 */
+	public BlockMap copy() {
+		BlockMap copy = new BlockMap();
+		copy.starts = Arrays.copyOf(starts, Math.max(extentsCount, 1));
+		copy.lengths = Arrays.copyOf(lengths, Math.max(extentsCount, 1));
+		copy.offsets = Arrays.copyOf(offsets, Math.max(extentsCount, 1));
+		copy.extentsCount = extentsCount;
+		copy.size = size;
+		return copy;
+	}
+
+	@Override
+	public int hashCode() {
+		int result = 1;
+		for (int i = 0; i < extentsCount; i++) {
+			result = 37*result + starts[i];
+			result = 37*result + lengths[i];
+			result = 37*result + offsets[i];
+		}
+		return 37*result + size;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append('[');
+		for (int i = 0; i < extentsCount; i++) {
+			if (i != 0) {
+				sb.append(',');
+				sb.append(' ');
+			}
+			sb.append(starts[i]);
+			if (lengths[i] > 1) {
+				sb.append('-');
+				sb.append(starts[i] + lengths[i] - 1);
+			}
+		}
+		sb.append(']');
+		return sb.toString();
+	}
+
+	@Override
+	public boolean equals(Object object) {
+		if (object == this) {
+			return true;
+		} else {
+			if (object instanceof BlockMap) {
+				BlockMap casted = (BlockMap) object;
+				if (size != casted.size ||
+					extentsCount != casted.extentsCount) {
+					return false;
+				}
+				for (int i = 0; i < extentsCount; i++) {
+					if (starts[i] != casted.starts[i] ||
+						lengths[i] != casted.lengths[i] ||
+						offsets[i] != casted.offsets[i]) {
+						return false;
+					}
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// last extent, which starts before specified logical block, or -1
+	private int before(int logical) {
+		int low = 0;
+		int high = extentsCount - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (offsets[middle] < logical) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return low - 1;
+	}
+
+	private void insertExtent(int extent, int start, int length, int offset) {
+		ensureCapacity(extentsCount + 1);
+		int moved = extentsCount - extent;
+		System.arraycopy(starts, extent, starts, extent + 1, moved);
+		System.arraycopy(lengths, extent, lengths, extent + 1, moved);
+		System.arraycopy(offsets, extent, offsets, extent + 1, moved);
+		starts[extent] = start;
+		lengths[extent] = length;
+		offsets[extent] = offset;
+		extentsCount++;
+	}
+
+	private void removeExtent(int extent) {
+		int moved = extentsCount - extent - 1;
+		System.arraycopy(starts, extent + 1, starts, extent, moved);
+		System.arraycopy(lengths, extent + 1, lengths, extent, moved);
+		System.arraycopy(offsets, extent + 1, offsets, extent, moved);
+		extentsCount--;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > starts.length) {
+			int newCapacity = Math.max(capacity, starts.length*2);
+			starts = Arrays.copyOf(starts, newCapacity);
+			lengths = Arrays.copyOf(lengths, newCapacity);
+			offsets = Arrays.copyOf(offsets, newCapacity);
+		}
+	}
+
+	private void checkExtent(int extent) {
+		if (extent < 0 || extent >= extentsCount) {
+			throw new IllegalArgumentException("Wrong extent!");
+		}
+	}
+}
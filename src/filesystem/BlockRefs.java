@@ -0,0 +1,98 @@
+package filesystem;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Class for reference counts of blocks, which are shared by several owners,
+ * for example by files with same data or by file and snapshot. Used block 
+ * without count has one reference, so counts are kept only for shared 
+ * blocks. Counts are not synchronized, file system guards them with its 
+ * bitmap.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public class BlockRefs implements Serializable {
+
+	private static final long serialVersionUID = -6180470251949311652L;
+
+	// counts of blocks with more than one reference
+	private final Map<Integer, Integer> counts =
+		new HashMap<Integer, Integer>();
+
+	// count of references, which do not take their own blocks
+	private int savedCount;
+
+	/**
+	 * @return count of references of used block
+	 */
+	public int get(int index) {
+		Integer count = counts.get(index);
+		return count == null ? 1 : count;
+	}
+
+	public boolean isShared(int index) {
+		return counts.containsKey(index);
+	}
+
+	/**
+	 * Adds reference of used block.
+	 */
+	public void retain(int index) {
+		counts.put(index, get(index) + 1);
+		savedCount++;
+	}
+
+	/**
+	 * Removes reference of used block.
+	 *
+	 * @return true, if it was last reference and block should be freed
+	 */
+	public boolean release(int index) {
+		Integer count = counts.get(index);
+		if (count == null) {
+			return true;
+		}
+		if (count == 2) {
+			counts.remove(index);
+		} else {
+			counts.put(index, count - 1);
+		}
+		savedCount--;
+		return false;
+	}
+
+	/**
+	 * @return count of blocks with more than one reference
+	 */
+	public int sharedCount() {
+		return counts.size();
+	}
+
+	/**
+	 * @return count of blocks, which would be used more without sharing
+	 */
+	public int savedCount() {
+		return savedCount;
+	}
+
+	/**
+	 * Returns counts of shared blocks by their numbers.
+	 */
+	Map<Integer, Integer> counts() {
+		return counts;
+	}
+
+	/**
+	 * Sets count of block, read from volume image.
+	 */
+	void set(int index, int count) {
+		if (count < 2) {
+			throw new IllegalArgumentException("Wrong references count!");
+		}
+		savedCount += count - get(index);
+		counts.put(index, count);
+	}
+}
@@ -0,0 +1,577 @@
+package filesystem;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Class for cache of blocks between file system and its device. Cache has
+ * fixed count of buffers in one slab, buffer is chosen for eviction by
+ * CLOCK algorithm: buffer, which was used since last pass of clock hand, is
+ * skipped once. Pinned buffers are not evicted, block, which does not find
+ * unpinned buffer, is read and written on device directly. Block is read to
+ * pinned buffer without lock of cache, so misses do not wait for each
+ * other.
+ * <p>
+ * Changed buffers are written to device, when they are evicted, by
+ * background writer after its interval or by explicit write back. They are
+ * written without lock of cache too, only accesses of their blocks wait
+ * for them. Cache can be used by several threads.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public class BufferCache implements BlockDevice {
+
+	public static final transient int DEFAULT_BUFFERS_COUNT = 1024;
+
+	// interval of background write back in milliseconds
+	public static final transient long DEFAULT_WRITE_BACK_INTERVAL = 1000;
+
+	// buffer without block
+	private static final transient int NO_BLOCK = -1;
+
+	private final BlockDevice device;
+
+	private final int blockSize;
+
+	private final int buffersCount;
+
+	private final long interval;
+
+	// data of all buffers
+	private final byte[] slab;
+
+	// blocks of buffers by buffer numbers
+	private final int[] blocks;
+
+	// buffer numbers by blocks
+	private final Map<Integer, Integer> buffers =
+		new HashMap<Integer, Integer>();
+
+	private final int[] pins;
+
+	// buffers, which were used since last pass of clock hand
+	private final BitSet referenced = new BitSet();
+
+	private final BitSet dirty = new BitSet();
+
+	// buffers, which are read from device or written to it, they are pinned
+	private final BitSet loading = new BitSet();
+
+	private int hand;
+
+	private long hits;
+
+	private long misses;
+
+	private long evictions;
+
+	private long writeBacks;
+
+	private long prefetches;
+
+	// null, when background write back is not done
+	private Thread writer;
+
+	private boolean released;
+
+	public BufferCache(BlockDevice device) {
+		this(device, DEFAULT_BUFFERS_COUNT, DEFAULT_WRITE_BACK_INTERVAL);
+	}
+
+	public BufferCache(BlockDevice device, int buffersCount) {
+		this(device, buffersCount, DEFAULT_WRITE_BACK_INTERVAL);
+	}
+
+	/**
+	 * @param interval interval of background write back in milliseconds,
+	 * changed buffers are written only on eviction and explicit write back,
+	 * if it is 0
+	 */
+	public BufferCache(BlockDevice device, int buffersCount, long interval) {
+		if (device == null) {
+			throw new IllegalArgumentException("Wrong device!");
+		}
+		if (buffersCount <= 0 ||
+			(long) buffersCount*device.blockSize() > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Wrong buffers count!");
+		}
+		if (interval < 0) {
+			throw new IllegalArgumentException("Wrong interval!");
+		}
+		this.device = device;
+		this.blockSize = device.blockSize();
+		this.buffersCount = buffersCount;
+		this.interval = interval;
+		slab = new byte[buffersCount*blockSize];
+		blocks = new int[buffersCount];
+		pins = new int[buffersCount];
+		for (int i = 0; i < buffersCount; i++) {
+			blocks[i] = NO_BLOCK;
+		}
+		if (interval > 0) {
+			writer = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					writeBackPeriodically();
+				}
+			}, "buffer-cache-writer");
+			writer.setDaemon(true);
+			writer.start();
+		}
+	}
+
+	@Override
+	public int blocksCount() {
+		return device.blocksCount();
+	}
+
+	@Override
+	public int blockSize() {
+		return blockSize;
+	}
+
+	public BlockDevice getDevice() {
+		return device;
+	}
+
+	public int buffersCount() {
+		return buffersCount;
+	}
+
+	public synchronized long hitsCount() {
+		return hits;
+	}
+
+	public synchronized long missesCount() {
+		return misses;
+	}
+
+	public synchronized long evictionsCount() {
+		return evictions;
+	}
+
+	/**
+	 * @return count of changed buffers, which were written to device
+	 */
+	public synchronized long writeBacksCount() {
+		return writeBacks;
+	}
+
+	/**
+	 * @return count of blocks, which were read in advance
+	 */
+	public synchronized long prefetchesCount() {
+		return prefetches;
+	}
+
+	/**
+	 * @return count of buffers with blocks
+	 */
+	public synchronized int cachedCount() {
+		return buffers.size();
+	}
+
+	public synchronized int dirtyCount() {
+		return dirty.cardinality();
+	}
+
+	@Override
+	public String read(int index) {
+		while (true) {
+			int buffer = acquire(index, false);
+			if (buffer != NO_BLOCK) {
+				synchronized (this) {
+					pins[buffer]--;
+					return DataBlock.decode(view(buffer));
+				}
+			}
+			synchronized (this) {
+				if (!buffers.containsKey(index)) {
+					return device.read(index);
+				}
+			}
+		}
+	}
+
+	@Override
+	public int write(int index, String data) {
+		while (true) {
+			int buffer = acquire(index, false);
+			if (buffer != NO_BLOCK) {
+				synchronized (this) {
+					awaitWritten(buffer);
+					pins[buffer]--;
+					dirty.set(buffer);
+					return DataBlock.encode(data, view(buffer));
+				}
+			}
+			synchronized (this) {
+				if (!buffers.containsKey(index)) {
+					return device.write(index, data);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void read(int index, int offset, ByteBuffer dst) {
+		while (true) {
+			int buffer = acquire(index, false);
+			if (buffer != NO_BLOCK) {
+				synchronized (this) {
+					pins[buffer]--;
+					dst.put(slab, buffer*blockSize + offset, dst.remaining());
+					return;
+				}
+			}
+			synchronized (this) {
+				if (!buffers.containsKey(index)) {
+					device.read(index, offset, dst);
+					return;
+				}
+			}
+		}
+	}
+
+	@Override
+	public int write(int index, int offset, ByteBuffer src) {
+		while (true) {
+			int buffer = acquire(index, false);
+			if (buffer != NO_BLOCK) {
+				synchronized (this) {
+					awaitWritten(buffer);
+					pins[buffer]--;
+					dirty.set(buffer);
+					src.get(slab, buffer*blockSize + offset, src.remaining());
+					return 0;
+				}
+			}
+			synchronized (this) {
+				if (!buffers.containsKey(index)) {
+					return device.write(index, offset, src);
+				}
+			}
+		}
+	}
+
+	// buffer of cleared block keeps zeros, which need not be written
+	@Override
+	public synchronized void clear(int index) {
+		boolean interrupted = false;
+		Integer buffer;
+		while ((buffer = buffers.get(index)) != null && loading.get(buffer)) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if (buffer != null) {
+			int start = buffer*blockSize;
+			for (int i = start; i < start + blockSize; i++) {
+				slab[i] = 0;
+			}
+			dirty.clear(buffer);
+		}
+		device.clear(index);
+	}
+
+	/**
+	 * Reads blocks, which are not in cache, from device to buffers. Count is
+	 * limited by half of buffers, so blocks, which were read in advance, do
+	 * not evict each other.
+	 */
+	@Override
+	public void prefetch(int index, int count) {
+		count = Math.min(count, Math.max(buffersCount/2, 1));
+		for (int i = index; i < index + count; i++) {
+			synchronized (this) {
+				if (buffers.containsKey(i)) {
+					continue;
+				}
+			}
+			int buffer = acquire(i, true);
+			if (buffer != NO_BLOCK) {
+				unpin(i);
+			}
+		}
+	}
+
+	@Override
+	public boolean canPrefetch() {
+		return true;
+	}
+
+	/**
+	 * Keeps block in cache till it is unpinned, so several accesses of one
+	 * operation do not read it again. Block is pinned as many times as this
+	 * method is called.
+	 *
+	 * @return true, if block was pinned, or false, if all buffers are
+	 * pinned, then block should not be unpinned
+	 */
+	public boolean pin(int index) {
+		return acquire(index, false) != NO_BLOCK;
+	}
+
+	public synchronized void unpin(int index) {
+		Integer buffer = buffers.get(index);
+		if (buffer == null || pins[buffer] == 0) {
+			throw new IllegalStateException("Block is not pinned!");
+		}
+		pins[buffer]--;
+	}
+
+	/**
+	 * Writes changed buffers to device without its flush. Buffer, which is
+	 * written by eviction, is waited for.
+	 */
+	public void writeBack() {
+		int buffer = 0;
+		while (true) {
+			synchronized (this) {
+				boolean interrupted = false;
+				while ((buffer = dirty.nextSetBit(buffer)) >= 0 &&
+						loading.get(buffer)) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+				if (interrupted) {
+					Thread.currentThread().interrupt();
+				}
+				if (buffer < 0) {
+					return;
+				}
+				pins[buffer]++;
+				loading.set(buffer);
+			}
+			writeBuffer(buffer);
+			buffer++;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		writeBack();
+		device.flush();
+	}
+
+	/**
+	 * Stops background writer and writes changed buffers, device stays
+	 * opened, cache should not be used after it.
+	 */
+	public void release() {
+		Thread stopped;
+		synchronized (this) {
+			released = true;
+			stopped = writer;
+			writer = null;
+			notifyAll();
+		}
+		if (stopped != null) {
+			boolean interrupted = false;
+			while (stopped.isAlive()) {
+				try {
+					stopped.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		writeBack();
+	}
+
+	@Override
+	public void close() throws IOException {
+		release();
+		device.close();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "Buffer cache with " + buffers.size() + " of " + buffersCount +
+			" buffers, " + dirty.cardinality() + " changed, " + hits +
+			" hits, " + misses + " misses, " + prefetches + " prefetches";
+	}
+
+	// pinned buffer with block or NO_BLOCK, if all buffers are pinned, block
+	// is read from device on miss without lock of cache, while others wait
+	// for it
+	private int acquire(int index, boolean prefetched) {
+		if (index < 0 || index >= device.blocksCount()) {
+			throw new IllegalArgumentException("Wrong index!");
+		}
+		int buffer;
+		while (true) {
+			synchronized (this) {
+				boolean interrupted = false;
+				Integer found;
+				while ((found = buffers.get(index)) != null &&
+						loading.get(found)) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+				if (interrupted) {
+					Thread.currentThread().interrupt();
+				}
+				if (found != null) {
+					if (!prefetched) {
+						hits++;
+					}
+					referenced.set(found);
+					pins[found]++;
+					return found;
+				}
+				buffer = victim();
+				if (buffer == NO_BLOCK) {
+					return NO_BLOCK;
+				}
+				if (!dirty.get(buffer)) {
+					if (blocks[buffer] != NO_BLOCK) {
+						buffers.remove(blocks[buffer]);
+						evictions++;
+					}
+					if (prefetched) {
+						prefetches++;
+					} else {
+						misses++;
+					}
+					blocks[buffer] = index;
+					buffers.put(index, buffer);
+					referenced.set(buffer);
+					pins[buffer]++;
+					loading.set(buffer);
+					break;
+				}
+				// changed victim is written without lock of cache, then block
+				// is searched again, because other thread could read it
+				pins[buffer]++;
+				loading.set(buffer);
+			}
+			writeBuffer(buffer);
+		}
+		boolean loaded = false;
+		try {
+			device.read(index, 0, view(buffer));
+			loaded = true;
+		} finally {
+			synchronized (this) {
+				loading.clear(buffer);
+				if (!loaded) {
+					buffers.remove(index);
+					blocks[buffer] = NO_BLOCK;
+					pins[buffer]--;
+				}
+				notifyAll();
+			}
+		}
+		return buffer;
+	}
+
+	// clock hand passes buffers twice at most, first pass clears their
+	// references
+	private int victim() {
+		for (int i = 0; i < 2*buffersCount; i++) {
+			int buffer = hand;
+			hand = (hand + 1) % buffersCount;
+			if (blocks[buffer] == NO_BLOCK) {
+				return buffer;
+			}
+			if (pins[buffer] > 0) {
+				continue;
+			}
+			if (referenced.get(buffer)) {
+				referenced.clear(buffer);
+				continue;
+			}
+			return buffer;
+		}
+		return NO_BLOCK;
+	}
+
+	// buffer, which was pinned before write back took it, is changed only
+	// after it is written, so changes are not lost with its dirty flag
+	private void awaitWritten(int buffer) {
+		boolean interrupted = false;
+		while (loading.get(buffer)) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// writes changed buffer, which is pinned and marked as loading, without
+	// lock of cache, others wait for its block
+	private void writeBuffer(int buffer) {
+		boolean written = false;
+		try {
+			device.write(blocks[buffer], 0, view(buffer));
+			written = true;
+		} finally {
+			synchronized (this) {
+				if (written) {
+					dirty.clear(buffer);
+					writeBacks++;
+				}
+				loading.clear(buffer);
+				pins[buffer]--;
+				notifyAll();
+			}
+		}
+	}
+
+	private ByteBuffer view(int buffer) {
+		return ByteBuffer.wrap(slab, buffer*blockSize, blockSize);
+	}
+
+	// monitor is notified by loads too, so time of next write back is kept,
+	// buffers are written without lock of cache
+	private void writeBackPeriodically() {
+		long next = System.currentTimeMillis() + interval;
+		while (true) {
+			synchronized (this) {
+				if (released) {
+					return;
+				}
+				long delay = next - System.currentTimeMillis();
+				if (delay > 0) {
+					try {
+						wait(delay);
+					} catch (InterruptedException e) {
+						return;
+					}
+					continue;
+				}
+			}
+			try {
+				writeBack();
+			} catch (UncheckedIOException e) {
+				// buffers stay changed and are written later
+			}
+			next = System.currentTimeMillis() + interval;
+		}
+	}
+}
@@ -0,0 +1,335 @@
+package filesystem;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Class for device, which keeps each block in memory as compressed extent,
+ * so volume with compressible data takes less memory and its image is
+ * smaller. Extent has header with method and length of its data, block,
+ * which is not compressed well, is kept raw. Blocks, which were read or
+ * written last, are kept uncompressed in small cache.
+ * <p>
+ * Blocks are compressed by {@link Deflater}, device can be used by several
+ * threads.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public class CompressedBlockDevice implements BlockDevice, Serializable {
+
+	private static final long serialVersionUID = -2318504651620449726L;
+
+	public static final transient int DEFAULT_CACHE_SIZE = 64;
+
+	// methods of extents
+	static final transient byte RAW = 0;
+
+	static final transient byte DEFLATED = 1;
+
+	// method and length of data
+	static final transient int EXTENT_HEADER = 5;
+
+	private final int blocksCount;
+
+	private final int blockSize;
+
+	private final int cacheSize;
+
+	// extents of blocks, null for block, which was not written
+	private final byte[][] extents;
+
+	// bytes of all extents with headers
+	private long storedBytes;
+
+	// uncompressed blocks in order of access
+	private transient LinkedHashMap<Integer, byte[]> cache;
+
+	private transient Deflater deflater;
+
+	private transient Inflater inflater;
+
+	public CompressedBlockDevice(int blocksCount) {
+		this(blocksCount, DataBlock.BLOCK_BYTES);
+	}
+
+	public CompressedBlockDevice(int blocksCount, int blockSize) {
+		this(blocksCount, blockSize, DEFAULT_CACHE_SIZE);
+	}
+
+	public CompressedBlockDevice(int blocksCount, int blockSize,
+			int cacheSize) {
+		if (blocksCount <= 0) {
+			throw new IllegalArgumentException("Wrong blocks count!");
+		}
+		if (blockSize < SlabBlockDevice.MIN_BLOCK_SIZE ||
+			blockSize > SlabBlockDevice.MAX_BLOCK_SIZE ||
+			Integer.bitCount(blockSize) != 1) {
+			throw new IllegalArgumentException("Wrong block size!");
+		}
+		if (cacheSize <= 0) {
+			throw new IllegalArgumentException("Wrong cache size!");
+		}
+		this.blocksCount = blocksCount;
+		this.blockSize = blockSize;
+		this.cacheSize = cacheSize;
+		extents = new byte[blocksCount][];
+		init();
+	}
+
+	@Override
+	public int blocksCount() {
+		return blocksCount;
+	}
+
+	@Override
+	public int blockSize() {
+		return blockSize;
+	}
+
+	public int getCacheSize() {
+		return cacheSize;
+	}
+
+	/**
+	 * @return bytes of written blocks, which are kept compressed
+	 */
+	public synchronized long storedBytes() {
+		return storedBytes;
+	}
+
+	/**
+	 * @return bytes of written blocks without compression
+	 */
+	public synchronized long rawBytes() {
+		long written = 0;
+		for (byte[] extent: extents) {
+			if (extent != null) {
+				written += blockSize;
+			}
+		}
+		return written;
+	}
+
+	@Override
+	public synchronized String read(int index) {
+		byte[] data = data(index);
+		return data == null ? null : DataBlock.decode(ByteBuffer.wrap(data));
+	}
+
+	@Override
+	public synchronized int write(int index, String data) {
+		checkIndex(index);
+		byte[] block = new byte[blockSize];
+		int message = DataBlock.encode(data, ByteBuffer.wrap(block));
+		store(index, block);
+		return message;
+	}
+
+	@Override
+	public synchronized void read(int index, int offset, ByteBuffer dst) {
+		byte[] data = data(index);
+		if (data == null) {
+			while (dst.hasRemaining()) {
+				dst.put((byte) 0);
+			}
+			return;
+		}
+		dst.put(data, offset, dst.remaining());
+	}
+
+	@Override
+	public synchronized int write(int index, int offset, ByteBuffer src) {
+		byte[] data = data(index);
+		// cached block is not changed, it can be returned to reader
+		byte[] block = data == null ? new byte[blockSize] : data.clone();
+		src.get(block, offset, src.remaining());
+		store(index, block);
+		return 0;
+	}
+
+	@Override
+	public synchronized void clear(int index) {
+		checkIndex(index);
+		if (extents[index] != null) {
+			storedBytes -= extents[index].length;
+			extents[index] = null;
+		}
+		cache.remove(index);
+	}
+
+	/**
+	 * Decompresses blocks to cache. Count is limited by half of cache.
+	 */
+	@Override
+	public void prefetch(int index, int count) {
+		count = Math.min(count, Math.max(cacheSize/2, 1));
+		for (int i = index; i < index + count; i++) {
+			synchronized (this) {
+				data(i);
+			}
+		}
+	}
+
+	@Override
+	public boolean canPrefetch() {
+		return true;
+	}
+
+	@Override
+	public void flush() {}
+
+	@Override
+	public synchronized void close() {
+		cache.clear();
+	}
+
+	/**
+	 * Returns extent of block, which is not copied, so it should not be
+	 * changed.
+	 *
+	 * @return extent or null, if block was not written
+	 */
+	synchronized byte[] extent(int index) {
+		checkIndex(index);
+		return extents[index];
+	}
+
+	/**
+	 * Sets extent of block, read from volume image, without its
+	 * decompression.
+	 */
+	synchronized void putExtent(int index, byte[] extent) {
+		checkIndex(index);
+		checkExtent(extent, blockSize);
+		clear(index);
+		extents[index] = extent;
+		storedBytes += extent.length;
+	}
+
+	/**
+	 * Packs block to extent, which is raw, if data is not compressed well.
+	 */
+	static byte[] compress(byte[] block, Deflater deflater) {
+		deflater.reset();
+		deflater.setInput(block);
+		deflater.finish();
+		// compressed data should be shorter than raw one with header
+		byte[] data = new byte[block.length - EXTENT_HEADER];
+		int length = 0;
+		while (!deflater.finished() && length < data.length) {
+			length += deflater.deflate(data, length, data.length - length);
+		}
+		boolean deflated = deflater.finished();
+		ByteBuffer extent = ByteBuffer.allocate(EXTENT_HEADER +
+			(deflated ? length : block.length));
+		extent.put(deflated ? DEFLATED : RAW);
+		extent.putInt(deflated ? length : block.length);
+		extent.put(deflated ? data : block, 0, extent.remaining());
+		return extent.array();
+	}
+
+	/**
+	 * Unpacks extent to block with specified size.
+	 *
+	 * @throws IllegalArgumentException, if extent is damaged
+	 */
+	static byte[] decompress(byte[] extent, int blockSize,
+			Inflater inflater) {
+		checkExtent(extent, blockSize);
+		byte[] block = new byte[blockSize];
+		if (extent[0] == RAW) {
+			System.arraycopy(extent, EXTENT_HEADER, block, 0, blockSize);
+			return block;
+		}
+		inflater.reset();
+		inflater.setInput(extent, EXTENT_HEADER,
+			extent.length - EXTENT_HEADER);
+		try {
+			if (inflater.inflate(block) != blockSize ||
+				!inflater.finished()) {
+				throw new IllegalArgumentException("Wrong extent!");
+			}
+		} catch (DataFormatException e) {
+			throw new IllegalArgumentException("Wrong extent!", e);
+		}
+		return block;
+	}
+
+	// block is compressed, when it is written, and stays in cache
+	private void store(int index, byte[] block) {
+		byte[] extent = compress(block, deflater);
+		if (extents[index] != null) {
+			storedBytes -= extents[index].length;
+		}
+		extents[index] = extent;
+		storedBytes += extent.length;
+		cache.put(index, block);
+	}
+
+	// uncompressed block, which should not be changed, or null
+	private byte[] data(int index) {
+		checkIndex(index);
+		byte[] data = cache.get(index);
+		if (data == null && extents[index] != null) {
+			data = decompress(extents[index], blockSize, inflater);
+			cache.put(index, data);
+		}
+		return data;
+	}
+
+	private void init() {
+		deflater = new Deflater(Deflater.BEST_SPEED);
+		inflater = new Inflater();
+		cache = new LinkedHashMap<Integer, byte[]>(16, 0.75f, true) {
+
+			private static final long serialVersionUID =
+				5714384590672291736L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<Integer, byte[]> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+		in.defaultReadObject();
+		init();
+	}
+
+	// xml reader does not call readObject
+	private Object readResolve() {
+		if (cache == null) {
+			init();
+		}
+		return this;
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= blocksCount) {
+			throw new IllegalArgumentException("Wrong index!");
+		}
+	}
+
+	private static void checkExtent(byte[] extent, int blockSize) {
+		if (extent == null || extent.length < EXTENT_HEADER) {
+			throw new IllegalArgumentException("Wrong extent!");
+		}
+		int length = ByteBuffer.wrap(extent, 1, 4).getInt();
+		if (length != extent.length - EXTENT_HEADER ||
+			extent[0] == RAW && length != blockSize ||
+			extent[0] != RAW && extent[0] != DEFLATED) {
+			throw new IllegalArgumentException("Wrong extent!");
+		}
+	}
+}
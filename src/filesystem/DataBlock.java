@@ -1,6 +1,7 @@
 package filesystem;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 
 /**
  * Class represents each block in file system.
@@ -18,6 +19,12 @@ public class DataBlock implements Serializable {
 	
 	// char (2 B) * block size (512) = data block (1 KB)
 	public static final transient int BLOCK_SIZE = 512;
+	
+	// default size of block, which is stored as bytes
+	public static final transient int BLOCK_BYTES = BLOCK_SIZE*2;
+	
+	// pads data, shorter than block
+	private static final transient char PADDING = '\0';
 
 	private boolean used = false;
 	
@@ -92,4 +99,39 @@ public class DataBlock implements Serializable {
 		}
 		return dataArray;
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * Writes data to remaining part of buffer, char is two bytes and bytes 
+	 * after data are zeros. Position of buffer is not changed.
+	 * 
+	 * @return {@link #TRUNCATED_DATA}, if data was longer than buffer, or 0
+	 */
+	static int encode(String data, ByteBuffer block) {
+		int start = block.position();
+		int length = Math.min(data.length(), block.remaining()/2);
+		for (int i = 0; i < length; i++) {
+			block.putChar(start + i*2, data.charAt(i));
+		}
+		for (int i = start + length*2; i < block.limit(); i++) {
+			block.put(i, (byte) 0);
+		}
+		return length < data.length() ? TRUNCATED_DATA : 0;
+	}
+	
+	/**
+	 * Reads data from remaining part of buffer without zero chars at its 
+	 * end. Position of buffer is not changed.
+	 */
+	static String decode(ByteBuffer block) {
+		int start = block.position();
+		int length = block.remaining()/2;
+		while (length > 0 && block.getChar(start + (length - 1)*2) == PADDING) {
+			length--;
+		}
+		char[] data = new char[length];
+		for (int i = 0; i < length; i++) {
+			data[i] = block.getChar(start + i*2);
+		}
+		return new String(data);
+	}
+}
@@ -0,0 +1,23 @@
+package filesystem;
+
+/**
+ * Interface for event of read or write of file data. Events are recorded
+ * by flight recorder, see {@link Events}.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+interface DataEvent {
+
+	void begin();
+
+	boolean shouldCommit();
+
+	void commit();
+
+	long getOffset();
+
+	void setOffset(long offset);
+
+	void setValues(String operation, long inode, long size, int blocks);
+}
@@ -0,0 +1,343 @@
+package filesystem;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Class for caching results of path resolution. It keeps full paths of
+ * resolved files, paths of directories by their uid's and targets of
+ * symbolic links. Least recently used entries are evicted.
+ * <p>
+ * Cache can be used by several threads. Every invalidation changes its
+ * generation, so results, which were found before change of names, are not
+ * remembered after it. Paths are kept in tree of their names, so change of
+ * file drops only entries of its subtree, not all ones.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public class DentryCache {
+
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	// nodes of paths without symbolic links and dots
+	private final Map<String, Node> paths;
+
+	// other paths, they are stale after every change of names
+	private final Map<String, Linked> linkedPaths;
+
+	private final Map<Long, String> names;
+
+	private final Map<Long, String> targets;
+
+	// tree of names of cached paths and paths of cached names
+	private final Node root = new Node(null, null);
+
+	// count of invalidations
+	private long generation;
+
+	public DentryCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public DentryCache(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Wrong capacity!");
+		}
+		paths = new PathMap(capacity);
+		linkedPaths = new LruMap<String, Linked>(capacity);
+		names = new NameMap(capacity);
+		targets = new LruMap<Long, String>(capacity);
+	}
+
+	/**
+	 * @return uid of file with specified full path or null
+	 */
+	public synchronized Long getUid(String path) {
+		Node node = paths.get(path);
+		if (node != null) {
+			return node.uid;
+		}
+		Linked linked = linkedPaths.get(path);
+		if (linked == null) {
+			return null;
+		}
+		if (linked.generation != generation) {
+			linkedPaths.remove(path);
+			return null;
+		}
+		return linked.uid;
+	}
+
+	/**
+	 * Remembers resolved path.
+	 *
+	 * @param linked true, if symbolic links were followed during resolution
+	 * @param generation generation of cache before resolution
+	 */
+	public synchronized void putUid(String path, long uid, boolean linked,
+			long generation) {
+		if (generation != this.generation) {
+			return;
+		}
+		if (linked || !isCanonical(path)) {
+			linkedPaths.put(path, new Linked(uid, generation));
+		} else {
+			Node node = node(path, true);
+			node.path = path;
+			node.uid = uid;
+			paths.put(path, node);
+		}
+	}
+
+	public synchronized String getName(long uid) {
+		return names.get(uid);
+	}
+
+	public synchronized void putName(long uid, String path, long generation) {
+		if (generation != this.generation || !isCanonical(path)) {
+			return;
+		}
+		unname(uid);
+		Node node = node(path, true);
+		if (node.named != null) {
+			unname(node.named);
+		}
+		node.path = path;
+		node.named = uid;
+		names.put(uid, path);
+	}
+
+	public synchronized String getTarget(long uid) {
+		return targets.get(uid);
+	}
+
+	public synchronized void putTarget(long uid, String target,
+			long generation) {
+		if (generation == this.generation) {
+			targets.put(uid, target);
+		}
+	}
+
+	public synchronized long generation() {
+		return generation;
+	}
+
+	/**
+	 * Drops all entries, which can depend on file with specified full path.
+	 */
+	public synchronized void invalidate(String path, long uid) {
+		if (!isCanonical(path)) {
+			clear();
+			return;
+		}
+		generation++;
+		Node node = node(path, false);
+		if (node != null) {
+			remove(node);
+		}
+		unname(uid);
+		targets.remove(uid);
+	}
+
+	public synchronized void clear() {
+		generation++;
+		paths.clear();
+		linkedPaths.clear();
+		names.clear();
+		targets.clear();
+		root.children = null;
+		root.uid = null;
+		root.named = null;
+	}
+
+	// finds node of canonical path, missing nodes are added, if it is needed
+	private Node node(String path, boolean add) {
+		Node node = root;
+		if (path.length() == 1) {
+			return node;
+		}
+		for (String name: path.substring(1).split(FileSystem.DIVIDER)) {
+			Node child = node.children == null ? null :
+				node.children.get(name);
+			if (child == null) {
+				if (!add) {
+					return null;
+				}
+				child = new Node(node, name);
+				if (node.children == null) {
+					node.children = new HashMap<String, Node>();
+				}
+				node.children.put(name, child);
+			}
+			node = child;
+		}
+		return node;
+	}
+
+	// drops paths and names of node and of all nodes under it
+	private void remove(Node node) {
+		Deque<Node> stack = new ArrayDeque<Node>();
+		stack.push(node);
+		while (!stack.isEmpty()) {
+			Node next = stack.pop();
+			if (next.uid != null) {
+				paths.remove(next.path);
+				next.uid = null;
+			}
+			if (next.named != null) {
+				names.remove(next.named);
+				next.named = null;
+			}
+			if (next.children != null) {
+				for (Node child: next.children.values()) {
+					stack.push(child);
+				}
+			}
+		}
+		if (node == root) {
+			root.children = null;
+		} else {
+			node.parent.children.remove(node.name);
+			prune(node.parent);
+		}
+	}
+
+	// drops cached name of file
+	private void unname(long uid) {
+		String path = names.remove(uid);
+		Node node = path == null ? null : node(path, false);
+		if (node != null) {
+			node.named = null;
+			prune(node);
+		}
+	}
+
+	// removes nodes without paths, names and children from node to root
+	private void prune(Node node) {
+		while (node != root && node.uid == null && node.named == null &&
+			(node.children == null || node.children.isEmpty())) {
+			node.parent.children.remove(node.name);
+			node = node.parent;
+		}
+	}
+
+	// path is absolute and has no empty components, dots or end divider
+	private static boolean isCanonical(String path) {
+		if (!path.startsWith(FileSystem.DIVIDER)) {
+			return false;
+		}
+		if (path.length() == 1) {
+			return true;
+		}
+		if (path.endsWith(FileSystem.DIVIDER)) {
+			return false;
+		}
+		for (String name: path.substring(1).split(FileSystem.DIVIDER)) {
+			if (name.isEmpty() || name.equals(FileSystem.CURRENT) ||
+				name.equals(FileSystem.PARENT)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static class LruMap<K, V> extends LinkedHashMap<K, V> {
+
+		private static final long serialVersionUID = 2519264880744151802L;
+
+		private final int capacity;
+
+		private LruMap(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+			if (size() > capacity) {
+				evicted(eldest);
+				return true;
+			}
+			return false;
+		}
+
+		// called before eldest entry is removed
+		void evicted(Map.Entry<K, V> eldest) {
+		}
+	}
+
+	private class PathMap extends LruMap<String, Node> {
+
+		private static final long serialVersionUID = -3016738463914538761L;
+
+		private PathMap(int capacity) {
+			super(capacity);
+		}
+
+		@Override
+		void evicted(Map.Entry<String, Node> eldest) {
+			Node node = eldest.getValue();
+			node.uid = null;
+			prune(node);
+		}
+	}
+
+	private class NameMap extends LruMap<Long, String> {
+
+		private static final long serialVersionUID = 5527394602156383012L;
+
+		private NameMap(int capacity) {
+			super(capacity);
+		}
+
+		@Override
+		void evicted(Map.Entry<Long, String> eldest) {
+			Node node = node(eldest.getValue(), false);
+			if (node != null) {
+				node.named = null;
+				prune(node);
+			}
+		}
+	}
+
+	// name in tree of cached paths
+	private static final class Node {
+
+		private final Node parent;
+
+		private final String name;
+
+		private Map<String, Node> children;
+
+		// full path, when node is cached
+		private String path;
+
+		// uid of file with this path, when path is cached
+		private Long uid;
+
+		// uid of file, which cached name is this path
+		private Long named;
+
+		private Node(Node parent, String name) {
+			this.parent = parent;
+			this.name = name;
+		}
+	}
+
+	// path, which was resolved in specified generation
+	private static final class Linked {
+
+		private final long uid;
+
+		private final long generation;
+
+		private Linked(long uid, long generation) {
+			this.uid = uid;
+			this.generation = generation;
+		}
+	}
+}
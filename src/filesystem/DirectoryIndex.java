@@ -0,0 +1,229 @@
+package filesystem;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class for entries of one directory, which maps names of files to their
+ * uid's. Small directories are kept in open addressing hash table, large
+ * ones are moved to B-tree.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public class DirectoryIndex implements Serializable {
+
+	private static final long serialVersionUID = 5265904788128812037L;
+
+	private static final transient int INITIAL_CAPACITY = 8;
+
+	// directory with more entries is moved to tree
+	private static final transient int TREE_THRESHOLD = 64;
+
+	// directory with less entries is moved back to hash table
+	private static final transient int HASH_THRESHOLD = 32;
+
+	// hash table, null when tree is used
+	private String[] names = new String[INITIAL_CAPACITY];
+
+	private long[] uids = new long[INITIAL_CAPACITY];
+
+	private int size;
+
+	// tree, null when hash table is used
+	private NameTree tree;
+
+	public int size() {
+		return tree == null ? size : tree.size();
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * @return uid of file with specified name or {@link NameTree#ABSENT}
+	 */
+	public long get(String name) {
+		if (tree != null) {
+			return tree.get(name);
+		}
+		int mask = names.length - 1;
+		for (int i = slot(name, mask); names[i] != null; i = (i + 1) & mask) {
+			if (names[i].equals(name)) {
+				return uids[i];
+			}
+		}
+		return NameTree.ABSENT;
+	}
+
+	public boolean contains(String name) {
+		return get(name) != NameTree.ABSENT;
+	}
+
+	/**
+	 * @return previous uid for name or {@link NameTree#ABSENT}
+	 */
+	public long put(String name, long uid) {
+		if (name == null || name.isEmpty() || uid == NameTree.ABSENT) {
+			throw new IllegalArgumentException("Wrong entry!");
+		}
+		if (tree != null) {
+			return tree.put(name, uid);
+		}
+		if (size == TREE_THRESHOLD && !contains(name)) {
+			toTree();
+			return tree.put(name, uid);
+		}
+		if ((size + 1)*2 > names.length) {
+			resize(names.length*2);
+		}
+		int mask = names.length - 1;
+		int i = slot(name, mask);
+		while (names[i] != null) {
+			if (names[i].equals(name)) {
+				long old = uids[i];
+				uids[i] = uid;
+				return old;
+			}
+			i = (i + 1) & mask;
+		}
+		names[i] = name;
+		uids[i] = uid;
+		size++;
+		return NameTree.ABSENT;
+	}
+
+	/**
+	 * @return removed uid or {@link NameTree#ABSENT}
+	 */
+	public long remove(String name) {
+		if (tree != null) {
+			long old = tree.remove(name);
+			if (tree.size() < HASH_THRESHOLD) {
+				toHash();
+			}
+			return old;
+		}
+		int mask = names.length - 1;
+		int i = slot(name, mask);
+		while (!name.equals(names[i])) {
+			if (names[i] == null) {
+				return NameTree.ABSENT;
+			}
+			i = (i + 1) & mask;
+		}
+		long old = uids[i];
+		// move next names back, so there are no holes in their chains
+		int free = i;
+		for (int j = (i + 1) & mask; names[j] != null; j = (j + 1) & mask) {
+			int home = slot(names[j], mask);
+			if (((j - home) & mask) >= ((j - free) & mask)) {
+				names[free] = names[j];
+				uids[free] = uids[j];
+				free = j;
+			}
+		}
+		names[free] = null;
+		uids[free] = NameTree.ABSENT;
+		size--;
+		return old;
+	}
+
+	/**
+	 * Returns names of all entries. Names of large directory are sorted.
+	 */
+	public List<String> names() {
+		List<String> list = new ArrayList<String>(size());
+		if (tree != null) {
+			tree.collect(list);
+		} else {
+			for (int i = 0; i < names.length; i++) {
+				if (names[i] != null) {
+					list.add(names[i]);
+				}
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * @return index with same entries, which is changed independently
+	 */
+	public DirectoryIndex copy() {
+		DirectoryIndex copy = new DirectoryIndex();
+		if (tree != null) {
+			for (String name: names()) {
+				copy.put(name, get(name));
+			}
+		} else {
+			copy.names = names.clone();
+			copy.uids = uids.clone();
+			copy.size = size;
+		}
+		return copy;
+	}
+
+	/**
+	 * Finds name of entry with specified uid.
+	 *
+	 * @return found name or null
+	 */
+	public String findName(long uid) {
+		for (String name: names()) {
+			if (get(name) == uid) {
+				return name;
+			}
+		}
+		return null;
+	}
+
+	private void toTree() {
+		tree = new NameTree();
+		for (int i = 0; i < names.length; i++) {
+			if (names[i] != null) {
+				tree.put(names[i], uids[i]);
+			}
+		}
+		names = null;
+		uids = null;
+		size = 0;
+	}
+
+	private void toHash() {
+		List<String> list = new ArrayList<String>(tree.size());
+		tree.collect(list);
+		NameTree old = tree;
+		tree = null;
+		names = new String[INITIAL_CAPACITY];
+		uids = new long[INITIAL_CAPACITY];
+		size = 0;
+		for (String name: list) {
+			put(name, old.get(name));
+		}
+	}
+
+	private void resize(int capacity) {
+		String[] oldNames = names;
+		long[] oldUids = uids;
+		names = new String[capacity];
+		uids = new long[capacity];
+		int mask = capacity - 1;
+		for (int i = 0; i < oldNames.length; i++) {
+			if (oldNames[i] != null) {
+				int j = slot(oldNames[i], mask);
+				while (names[j] != null) {
+					j = (j + 1) & mask;
+				}
+				names[j] = oldNames[i];
+				uids[j] = oldUids[i];
+			}
+		}
+	}
+
+	private static int slot(String name, int mask) {
+		int hash = name.hashCode();
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+}
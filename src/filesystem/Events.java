@@ -0,0 +1,190 @@
+package filesystem;
+
+import java.io.File;
+
+/**
+ * Class for beginning and committing of flight recorder events of file
+ * system. Events are created by recorder, which is loaded once from class
+ * path, and only, when recorder has them enabled. Fields of events are
+ * filled only for events, which will be recorded. Recorder is built
+ * separately, because flight recorder appeared in JDK 8u262, so without it
+ * events are not used. Recording is started with
+ * -XX:StartFlightRecording=filename=volume.jfr.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+final class Events {
+
+	// class of recorder, which is built with flight recorder
+	private static final transient String RECORDER_CLASS =
+		"filesystem.FlightRecorder";
+
+	// null, if recorder or flight recorder is not on class path
+	private static final transient Recorder RECORDER = load();
+
+	private Events() {
+	}
+
+	/**
+	 * Begins event of namespace operation. Uid of removed file is found
+	 * before it is removed.
+	 *
+	 * @return begun event or null, if it is disabled
+	 */
+	static NamespaceEvent beginNamespace(FileSystem fs, String path,
+			boolean removal) {
+		NamespaceEvent event = RECORDER == null ? null : RECORDER.namespace();
+		if (event == null) {
+			return null;
+		}
+		if (removal) {
+			event.setInode(uid(fs, path));
+		}
+		event.begin();
+		return event;
+	}
+
+	static void commit(NamespaceEvent event, FileSystem fs,
+			Operation operation, String path, String target, int result) {
+		if (event == null) {
+			return;
+		}
+		event.end();
+		if (!event.shouldCommit()) {
+			return;
+		}
+		event.setValues(operation.toString(), path, target, result);
+		if (event.getInode() == 0 && result == 0) {
+			event.setInode(uid(fs, path));
+		}
+		event.commit();
+	}
+
+	/**
+	 * Begins event of read or write, which starts from specified offset.
+	 *
+	 * @return begun event or null, if it is disabled
+	 */
+	static DataEvent beginData(long offset) {
+		DataEvent event = RECORDER == null ? null : RECORDER.data();
+		if (event == null) {
+			return null;
+		}
+		event.setOffset(offset);
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Commits event of read or write of specified size. Offset, size and
+	 * size of block are in the same units.
+	 */
+	static void commit(DataEvent event, Operation operation, long inode,
+			long size, int blockSize) {
+		if (event == null || !event.shouldCommit()) {
+			return;
+		}
+		long offset = event.getOffset();
+		event.setValues(operation.toString(), inode, size, size <= 0 ? 0 :
+			(int) ((offset + size - 1)/blockSize - offset/blockSize + 1));
+		event.commit();
+	}
+
+	/**
+	 * Begins event of allocation by allocator, which has scanned specified
+	 * count of blocks before it.
+	 *
+	 * @return begun event or null, if it is disabled
+	 */
+	static AllocationEvent beginAllocation(long scanned) {
+		AllocationEvent event = RECORDER == null ? null :
+			RECORDER.allocation();
+		if (event == null) {
+			return null;
+		}
+		event.setScanned(scanned);
+		event.begin();
+		return event;
+	}
+
+	static void commit(AllocationEvent event, int requested, int allocated,
+			long scanned, int free) {
+		if (event == null || !event.shouldCommit()) {
+			return;
+		}
+		event.setValues(requested, allocated, scanned - event.getScanned(),
+			free);
+		event.commit();
+	}
+
+	/**
+	 * Begins event of phase of reading or writing of volume.
+	 *
+	 * @return begun event or null, if it is disabled
+	 */
+	static PersistenceEvent beginPersistence() {
+		PersistenceEvent event = RECORDER == null ? null :
+			RECORDER.persistence();
+		if (event == null) {
+			return null;
+		}
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Commits event of phase with count of descriptors of file system as
+	 * count of objects and with size of specified file, if count of bytes
+	 * is negative.
+	 */
+	static void commit(PersistenceEvent event, Operation operation,
+			String phase, String path, long bytes, FileSystem fs) {
+		if (event == null) {
+			return;
+		}
+		event.end();
+		if (!event.shouldCommit()) {
+			return;
+		}
+		record(event, operation, phase, path,
+			bytes < 0 ? new File(path).length() : bytes,
+			fs == null ? 0 : fs.descriptorsCount());
+	}
+
+	static void commit(PersistenceEvent event, Operation operation,
+			String phase, String path, long bytes, long objects) {
+		if (event == null) {
+			return;
+		}
+		event.end();
+		if (!event.shouldCommit()) {
+			return;
+		}
+		record(event, operation, phase, path, bytes, objects);
+	}
+
+	private static void record(PersistenceEvent event, Operation operation,
+			String phase, String path, long bytes, long objects) {
+		event.setValues(operation.toString(), phase, path, bytes, objects);
+		event.commit();
+	}
+
+	// uid of file with specified path or 0, if there is no such file
+	private static long uid(FileSystem fs, String path) {
+		FileDescriptor fd = fs.lookup(path);
+		return fd == null ? 0 : fd.getUid();
+	}
+
+	private static Recorder load() {
+		try {
+			return (Recorder) Class.forName(RECORDER_CLASS)
+				.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			return null;
+		} catch (LinkageError e) {
+			// recorder is there, but flight recorder is not
+			return null;
+		}
+	}
+}
@@ -3,8 +3,8 @@ package filesystem;
 import java.io.Serializable;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * Class for representing file descriptor.
@@ -17,61 +17,181 @@ public class FileDescriptor implements Serializable {
 
 	private static final long serialVersionUID = 7017738593299405382L;
 	
-	// maximum blocks count in file descriptor
-	// data block (1 KB) * maximum blocks count (1024) = maximum file size (1 MB)
-	public static final transient int MAX_BLOCKS_COUNT = 1024;
-	
 	// maximum links on these file descriptor
 	public static final transient int MAX_LINKS_COUNT = 8;
 	
-	// maximum count of files in file system (1 block = 1 file as minimum) 
-	public static final transient int MAX_DESCRIPTORS_COUNT = 
-		FileSystem.MAX_BLOCKS_COUNT;
-	
 	public static final transient int WRONG_DESCRIPTOR = -3;
 	
+	private static final AtomicIntegerFieldUpdater<FileDescriptor> 
+		OPEN_COUNT = AtomicIntegerFieldUpdater.newUpdater(
+		FileDescriptor.class, "openCount");
+	
 	private static final String[] MONTH = {"January", "February", "March", 
 		"April", "May", "June", "July", "August", "September", "October", 
 		"November", "December"};
 
 	private long uid;
 	
+	// creation time in milliseconds
+	private long created;
+	
 	private boolean directory;
 	
-	private List<Integer> blocks = new LinkedList<Integer>();
+	// symbolic link is file, which contains path in its first block
+	private boolean symlink;
+	
+	private BlockMap map = new BlockMap();
+	
+	// blocks of volumes, saved before block maps were added
+	private List<Integer> blocks;
 	
 	private int hardLinksCount = 1;
+	
+	// entries of directory, null for file
+	private DirectoryIndex entries;
+	
+	// uid of parent directory, directory can not have hard links
+	private long parent;
+	
+	// count of opens of file by all sessions, changed without locks
+	private volatile int openCount;
 
-	public FileDescriptor(boolean directory) {
-		uid = createUniqueId();
+	public FileDescriptor(long uid, boolean directory) {
+		if (uid <= 0) {
+			throw new IllegalArgumentException("Wrong uid!");
+		}
+		this.uid = uid;
 		this.directory = directory;
+		created = System.currentTimeMillis();
+		if (directory) {
+			entries = new DirectoryIndex();
+		}
+	}
+	
+	/**
+	 * Creates descriptor with state, read from volume image.
+	 */
+	FileDescriptor(long uid, boolean directory, boolean symlink, 
+			long created, int hardLinksCount, long parent) {
+		this(uid, directory);
+		this.symlink = symlink;
+		this.created = created;
+		this.hardLinksCount = hardLinksCount;
+		this.parent = parent;
+	}
+	
+	/**
+	 * Creates descriptor with same state, which is not opened. Its blocks
+	 * and entries are changed independently of this descriptor.
+	 */
+	FileDescriptor copy() {
+		FileDescriptor copy = new FileDescriptor(uid, directory, symlink, 
+			created, hardLinksCount, parent);
+		copy.map = map.copy();
+		if (directory) {
+			copy.entries = entries.copy();
+		}
+		return copy;
 	}
 	
 	public long getUid() {
 		return uid;
 	}
 	
+	public long getCreated() {
+		return created;
+	}
+	
+	/**
+	 * Adds block after last logical block. Maximum file size of volume is
+	 * checked by file system.
+	 * 
+	 * @return false, if logical numbers of blocks are exhausted
+	 */
 	public boolean addBlock(int number) {
-		if (blocks.size() < MAX_BLOCKS_COUNT) {
-			return blocks.add(number);
+		if (map.size() < Geometry.MAX_FILE_BLOCKS) {
+			map.add(number);
+			return true;
 		}
 		return false;
 	}
 	
 	public void removeBlock(int number) {
-		blocks.remove(new Integer(number));
+		map.remove(number);
 	}
 	
-	public List<Integer> getBlocks() {
-		return blocks;
+	/**
+	 * @return block of file system or {@link BlockMap#NO_BLOCK}, if block 
+	 * of file is in hole
+	 */
+	public int getBlock(int index) {
+		return map.get(index);
 	}
 	
+	public BlockMap getBlocks() {
+		return map;
+	}
+	
+	/**
+	 * @return count of blocks in file with holes
+	 */
 	public int blocksCount() {
-		return blocks.size();
+		return map.size();
 	}
 	
 	public boolean isEmpty() {
-		return blocks.size() == 0;
+		return directory ? entries.isEmpty() : map.isEmpty();
+	}
+	
+	public DirectoryIndex getEntries() {
+		return entries;
+	}
+	
+	public long getParent() {
+		return parent;
+	}
+	
+	public void setParent(long parent) {
+		this.parent = parent;
+	}
+	
+	public int getOpenCount() {
+		return openCount;
+	}
+	
+	public boolean isOpened() {
+		return openCount > 0;
+	}
+	
+	/**
+	 * @return count of opens after this one
+	 */
+	public int incrementOpenCount() {
+		return OPEN_COUNT.incrementAndGet(this);
+	}
+	
+	/**
+	 * @return count of opens after this close or -1, if file was not opened
+	 */
+	public int decrementOpenCount() {
+		while (true) {
+			int count = openCount;
+			if (count == 0) {
+				return -1;
+			}
+			if (OPEN_COUNT.compareAndSet(this, count, count - 1)) {
+				return count - 1;
+			}
+		}
+	}
+	
+	/**
+	 * Closes all opens of removed file.
+	 * 
+	 * @return count of opens before it
+	 */
+	int resetOpenCount() {
+		return OPEN_COUNT.getAndSet(this, 0);
 	}
 
 	public boolean incrementHardLinksCount() {
@@ -104,20 +224,33 @@ public class FileDescriptor implements Serializable {
 	public boolean isFile() {
 		return !directory;
 	}
+	
+	public boolean isSymlink() {
+		return symlink;
+	}
+	
+	public void setSymlink(boolean symlink) {
+		if (directory) {
+			throw new IllegalArgumentException("Directory can not be link!");
+		}
+		this.symlink = symlink;
+	}
 
 	@Override
 	public int hashCode() {
 		int result = 3;
-		return (int) (37*result + blocks.hashCode() + uid + hardLinksCount + 
+		return (int) (37*result + map.hashCode() + uid + hardLinksCount + 
 			(directory ? 1 : 0));
 	}
 	
 	@Override
 	public String toString() {
 		return "File descriptor " + uid + " with type " + 
-			(directory ? "directory" : "file") + " and blocks " + blocks +
+			(directory ? "directory" : symlink ? "symlink" : "file") + 
+			" and blocks " + map + (map.mappedCount() < map.size() ? 
+			" of " + map.size() : "") +
 			" and hard links count " + hardLinksCount + " and creating data " + 
-			convertDate(uid);
+			convertDate(created);
 	}
 	
 	@Override
@@ -135,8 +268,24 @@ public class FileDescriptor implements Serializable {
 		return false;
 	}
 	
-	private static long createUniqueId() {
-		return System.currentTimeMillis();
+	private Object readResolve() {
+		// descriptors, saved before creation time was added, had it as uid
+		if (created == 0) {
+			created = uid;
+		}
+		// descriptors, saved before block maps were added
+		if (map == null) {
+			map = new BlockMap();
+			for (Integer number: blocks) {
+				map.add(number);
+			}
+			blocks = null;
+		}
+		// directories, saved before entries were added
+		if (directory && entries == null) {
+			entries = new DirectoryIndex();
+		}
+		return this;
 	}
 	
 	private static String convertDate(long time) {
@@ -3,19 +3,45 @@ package filesystem;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.util.Collection;
-import java.util.HashMap;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import com.thoughtworks.xstream.XStream;
 
 /**
  * Class for representing file system.
+ * <p>
+ * File system can be used by several threads. Changes of names take lock of
+ * directory, changes of data take lock of file, so operations with 
+ * different directories and files are done in parallel, and files are read 
+ * in parallel too. Bitmap, tables of descriptors and counters are changed 
+ * in short sections, guarded by one monitor. Checkpoint waits, while all
+ * started operations are done.
+ * <p>
+ * Snapshot of volume is created at once, because it shares blocks and 
+ * descriptors with volume. Descriptor is copied for snapshots before its 
+ * first change, and shared block is copied to new one before it is written.
+ * Deduplicated volume shares blocks of files with same data in same way.
  * 
  * @author Mir4ik
  * @version 0.1 14.11.2013
@@ -28,148 +54,2528 @@ public class FileSystem implements Serializable {
 	
 	public static final transient int TRUNCATED_FILENAME = -2;
 	
+	public static final transient int NO_SUCH_FILE = -5;
+	
+	public static final transient int FILE_EXISTS = -6;
+	
+	public static final transient int NOT_EMPTY = -7;
+	
+	public static final transient int WRONG_TYPE = -8;
+	
+	public static final transient int TOO_MANY_LINKS = -9;
+	
+	public static final transient int BUSY = -10;
+	
 	public static final transient String DIVIDER = "/";
 	
-	public static final transient String ROOT = "root";
+	public static final transient String CURRENT = ".";
+	
+	public static final transient String PARENT = "..";
+	
+	// name of root in volumes, saved before directory tree was added
+	public static final transient String ROOT = "root";
+	
+	// maximum file name length
+	public static final transient int MAX_FILE_NAME_SIZE = 255;
+	
+	// maximum count of symbolic links, followed in one path
+	public static final transient int MAX_SYMLINKS_DEPTH = 8;
+	
+	// maximum count of descriptors, kept in memory by lazily mounted volume
+	public static final transient int DESCRIPTORS_CACHE_SIZE = 4096;
+	
+	// chars after end of data in block, like mapped device marks them
+	private static final transient char PADDING = '\0';
+	
+	// journal of image is kept in file with its name and this extension
+	public static final transient String JOURNAL_EXTENSION = ".journal";
+	
+	// threads, which read blocks of sequentially read files in advance
+	public static final transient int PREFETCH_THREADS = 2;
+	
+	// reads in advance, which wait for thread, newer ones are dropped
+	public static final transient int PREFETCH_QUEUE_SIZE = 64;
+
+	// storage of all blocks in file system
+	private BlockDevice device;
+	
+	// count and size of blocks and limits of volume, set on its creation
+	private Geometry geometry;
+	
+	// blocks of volumes, saved before devices were added
+	private DataBlock[] blocks;
+	
+	// bitmap of used blocks
+	private BlockAllocator allocator;
+	
+	// descriptors of all files by their uid's
+	private InodeTable inodes = new InodeTable();
+	
+	// uid for next created descriptor, uid's are never reused
+	private long nextUid = 1;
+	
+	private transient int descriptorsCount;
+	
+	// uid's of descriptors, loaded from image of lazily mounted volume, in 
+	// order of access, null for volume, which is loaded whole
+	private transient LinkedHashMap<Long, Boolean> loaded;
+	
+	// image, which was last read or written, null if there is no one
+	private transient VolumeImage image;
+	
+	// blocks, changed since last checkpoint
+	private transient BitSet dirtyBlocks = new BitSet();
+	
+	// uid's of descriptors, changed or removed since last checkpoint
+	private transient Set<Long> dirtyDescriptors = new HashSet<Long>();
+	
+	private transient volatile boolean dirtyOpened;
+	
+	// journal of operations since last checkpoint, null if it is not used
+	private transient volatile Journal journal;
+	
+	// sequence number of last operation, which was journaled or replayed
+	private transient long sequence;
+	
+	// operation returns only after its record is forced
+	private transient volatile boolean synchronous = true;
+	
+	// operations of thread are in batch, which forces their records once
+	private transient ThreadLocal<Boolean> batched = 
+		new ThreadLocal<Boolean>();
+	
+	// operations take it for reading, checkpoint takes it for writing
+	private transient ReentrantReadWriteLock volumeLock = 
+		new ReentrantReadWriteLock();
+	
+	// locks of directories for their names and of files for their data
+	private transient InodeLocks locks = new InodeLocks();
+	
+	// guards bitmap, tables of descriptors and counters
+	private transient Object metadata = new Object();
+	
+	private FileDescriptor root = createDescriptor(true);
+	
+	private volatile FileDescriptor currentDirectory = root;
+	
+	// uid's of opened files of volumes, saved before open counts were added
+	private Set<Long> opened;
+	
+	// count of files, which are opened at least once
+	private transient AtomicInteger openedCount = new AtomicInteger();
+	
+	// count of names of all files, including root
+	private int linksCount = 1;
+	
+	// names of volumes, saved before directory tree was added
+	private Map<String, FileDescriptor> links;
+	
+	private transient DentryCache cache = new DentryCache();
+	
+	// snapshots, which are not released, in order of their creation
+	private transient List<Snapshot> snapshots = 
+		new CopyOnWriteArrayList<Snapshot>();
+	
+	// id of next created snapshot
+	private transient int nextSnapshotId = 1;
+	
+	// reference counts of blocks, shared by files and snapshots
+	private BlockRefs refs = new BlockRefs();
+	
+	private transient volatile boolean dirtyRefs;
+	
+	// written blocks are shared with blocks, which have same data
+	private transient volatile boolean deduplicated;
+	
+	// blocks by fingerprints of their data, which are not changed, while 
+	// they are in index
+	private transient BlockIndex fingerprints = new BlockIndex();
+	
+	// count of written blocks, which were shared or became holes
+	private transient long deduplicatedCount;
+	
+	// cache of blocks, null if blocks are accessed on device directly
+	private transient volatile BufferCache buffers;
+	
+	// executor of reads in advance, created on first of them
+	private transient ExecutorService prefetcher;
+	
+	// latencies of operations and counters of blocks and bytes
+	private transient FileSystemStats stats = new FileSystemStats(this);
+	
+	public FileSystem() {
+		this(new SlabBlockDevice(Geometry.DEFAULT_BLOCKS_COUNT));
+	}
+	
+	/**
+	 * Creates file system on device with default limits of 
+	 * {@link Geometry#Geometry(BlockDevice)}.
+	 */
+	public FileSystem(BlockDevice device) {
+		this(device, device == null ? null : new Geometry(device));
+	}
+	
+	/**
+	 * Creates file system with specified geometry, which should have count
+	 * and size of blocks of device.
+	 */
+	public FileSystem(BlockDevice device, Geometry geometry) {
+		if (device == null) {
+			throw new IllegalArgumentException("Wrong device!");
+		}
+		if (geometry == null || !geometry.fits(device)) {
+			throw new IllegalArgumentException("Wrong geometry!");
+		}
+		this.device = device;
+		this.geometry = geometry;
+		allocator = new BlockAllocator(device.blocksCount());
+		root.setParent(root.getUid());
+	}
+	
+	/**
+	 * Creates file system with state, read from volume image.
+	 */
+	FileSystem(BlockDevice device, Geometry geometry, 
+			BlockAllocator allocator, InodeTable inodes, long rootUid, 
+			long nextUid, int linksCount) {
+		if (!geometry.fits(device) || 
+			geometry.getBlocksCount() != allocator.blocksCount()) {
+			throw new IllegalArgumentException("Wrong geometry!");
+		}
+		this.device = device;
+		this.geometry = geometry;
+		this.allocator = allocator;
+		this.inodes = inodes;
+		this.nextUid = nextUid;
+		this.linksCount = linksCount;
+		descriptorsCount = inodes.size();
+		root = inodes.get(rootUid);
+		if (root == null || !root.isDirectory()) {
+			throw new IllegalArgumentException("Wrong root!");
+		}
+		currentDirectory = root;
+	}
+	
+	/**
+	 * Makes file system to load other descriptors from specified image on 
+	 * first access.
+	 */
+	void loadLazily(VolumeImage image, int descriptorsCount) {
+		this.image = image;
+		this.descriptorsCount = descriptorsCount;
+		loaded = new LinkedHashMap<Long, Boolean>(16, 0.75f, true);
+		for (FileDescriptor fd: inodes.values()) {
+			loaded.put(fd.getUid(), Boolean.TRUE);
+		}
+	}
+	
+	public boolean isLazy() {
+		return loaded != null;
+	}
+	
+	public int getFirstFreeBlock() {
+		synchronized (metadata) {
+			return allocator.findFree();
+		}
+	}
+	
+	public int allocateBlock() {
+		synchronized (metadata) {
+			AllocationEvent event = Events.beginAllocation(
+				allocator.scannedCount());
+			int index = allocator.allocate();
+			if (index != WRONG_BLOCK) {
+				dirtyBlocks.set(index);
+				stats.allocated(1);
+			}
+			Events.commit(event, 1, index == WRONG_BLOCK ? 0 : 1, 
+				allocator.scannedCount(), allocator.freeBlocksCount());
+			return index;
+		}
+	}
+	
+	public int[] allocateBlocks(int count) {
+		synchronized (metadata) {
+			AllocationEvent event = Events.beginAllocation(
+				allocator.scannedCount());
+			int[] indexes = allocator.allocate(count);
+			for (int index: indexes) {
+				dirtyBlocks.set(index);
+			}
+			stats.allocated(indexes.length);
+			Events.commit(event, count, indexes.length, 
+				allocator.scannedCount(), allocator.freeBlocksCount());
+			return indexes;
+		}
+	}
+	
+	/**
+	 * Removes one reference of block. Block is freed with its last 
+	 * reference.
+	 */
+	public void freeBlock(int index) {
+		synchronized (metadata) {
+			if (!refs.release(index)) {
+				dirtyRefs = true;
+				return;
+			}
+			fingerprints.remove(index);
+		}
+		// block is cleared, before it can be allocated again
+		blocks().clear(index);
+		synchronized (metadata) {
+			allocator.free(index);
+			dirtyBlocks.set(index);
+		}
+		stats.freed(1);
+	}
+	
+	/**
+	 * Adds block to end of file.
+	 * 
+	 * @return false, if file has maximum count of blocks
+	 */
+	public boolean addBlock(FileDescriptor fd, int index) {
+		locks.lockExclusive(fd.getUid());
+		try {
+			if (fd.blocksCount() >= geometry.getFileBlocks()) {
+				return false;
+			}
+			preserve(fd);
+			markDirty(fd);
+			return fd.addBlock(index);
+		} finally {
+			locks.unlockExclusive(fd.getUid());
+		}
+	}
+	
+	/**
+	 * Changes count of blocks in file. Added blocks are hole, which is read
+	 * as zeros, so they take no space till they are written.
+	 * 
+	 * @return {@link #WRONG_BLOCK}, if file was removed, or 0
+	 */
+	public int resize(FileDescriptor fd, int count) {
+		if (count < 0 || count > geometry.getFileBlocks()) {
+			throw new IllegalArgumentException("Wrong blocks count!");
+		}
+		long start = System.nanoTime();
+		int message;
+		enter();
+		locks.lockExclusive(fd.getUid());
+		try {
+			message = resizeFile(fd, count);
+		} finally {
+			locks.unlockExclusive(fd.getUid());
+			leave();
+			stats.record(Operation.RESIZE, start);
+		}
+		commit(message);
+		return message;
+	}
+	
+	/**
+	 * Writes data to block of file with specified number. Block in hole is
+	 * allocated.
+	 * 
+	 * @return {@link #WRONG_BLOCK}, if file has no such block or there are
+	 * not enough free blocks, {@link DataBlock#TRUNCATED_DATA} or 0
+	 */
+	public int writeData(FileDescriptor fd, int number, String data) {
+		long start = System.nanoTime();
+		DataEvent event = Events.beginData((long) number*blockChars());
+		int message;
+		enter();
+		locks.lockExclusive(fd.getUid());
+		try {
+			if (number < 0 || number >= fd.blocksCount()) {
+				return WRONG_BLOCK;
+			}
+			preserve(fd);
+			if (copyShared(fd, number, number + 1) == WRONG_BLOCK || 
+				fillHoles(fd, number, number + 1) == WRONG_BLOCK) {
+				return WRONG_BLOCK;
+			}
+			message = writeBlock(fd.getBlock(number), data);
+			deduplicate(fd, number, number + 1);
+			journal(Journal.WRITE, fd.getUid(), number, data);
+		} finally {
+			locks.unlockExclusive(fd.getUid());
+			leave();
+			stats.record(Operation.WRITE_DATA, start);
+		}
+		stats.written(2L*Math.min(data.length(), blockChars()));
+		Events.commit(event, Operation.WRITE_DATA, fd.getUid(), 
+			Math.min(data.length(), blockChars()), blockChars());
+		commit(message);
+		return message;
+	}
+	
+	/**
+	 * Reads data from position of opened file and moves position after it.
+	 * 
+	 * @return data, which is shorter than specified size at end of file
+	 */
+	String read(OpenFile file, int size) {
+		if (size < 0) {
+			throw new IllegalArgumentException("Wrong size!");
+		}
+		long start = System.nanoTime();
+		DataEvent event = Events.beginData(file.getPosition());
+		FileDescriptor fd = file.getFileDescriptor();
+		int blockSize = blockChars();
+		StringBuilder data = new StringBuilder();
+		enter();
+		locks.lockShared(fd.getUid());
+		try {
+			int position = file.getPosition();
+			// position in chars is int
+			int end = (int) Math.min(Math.min((long) position + size, 
+				(long) fd.blocksCount()*blockSize), Integer.MAX_VALUE);
+			if (position < end) {
+				readAhead(file, position/blockSize, (end - 1)/blockSize);
+			}
+			while (position < end) {
+				int offset = position % blockSize;
+				int count = Math.min(blockSize - offset, 
+					end - position);
+				int index = file.block(position/blockSize);
+				String block = index == BlockMap.NO_BLOCK ? null : 
+					blocks().read(index);
+				int length = block == null ? 0 : block.length();
+				if (offset < length) {
+					data.append(block, offset, Math.min(length, 
+						offset + count));
+				}
+				for (int i = Math.max(length, offset); i < offset + count; 
+						i++) {
+					data.append(PADDING);
+				}
+				position += count;
+			}
+			file.setPosition(position);
+		} finally {
+			locks.unlockShared(fd.getUid());
+			leave();
+			stats.record(Operation.READ, start);
+		}
+		stats.read(2L*data.length());
+		Events.commit(event, Operation.READ, fd.getUid(), data.length(), 
+			blockSize);
+		return data.toString();
+	}
+	
+	/**
+	 * Writes data on position of opened file and moves position after it.
+	 * File is extended, if it is needed.
+	 * 
+	 * @return {@link #WRONG_BLOCK}, if there are not enough free blocks, 
+	 * file is too big or was removed, or 0
+	 */
+	int write(OpenFile file, String data) {
+		long start = System.nanoTime();
+		DataEvent event = Events.beginData(file.getPosition());
+		FileDescriptor fd = file.getFileDescriptor();
+		int blockSize = blockChars();
+		enter();
+		locks.lockExclusive(fd.getUid());
+		try {
+			int position = file.getPosition();
+			long end = (long) position + data.length();
+			if (end > (long) geometry.getFileBlocks()*blockSize || 
+				end > Integer.MAX_VALUE) {
+				return WRONG_BLOCK;
+			}
+			int count = (int) ((end + blockSize - 1)/
+				blockSize);
+			int size = fd.blocksCount();
+			if (fd.isNoHardLinksCount()) {
+				return WRONG_BLOCK;
+			}
+			preserve(fd);
+			if (!data.isEmpty() && (copyShared(fd, position/blockSize, 
+				count) == WRONG_BLOCK || fillHoles(fd, position/blockSize, 
+				count) == WRONG_BLOCK)) {
+				return WRONG_BLOCK;
+			}
+			// extension is replayed with record of write
+			if (count > size) {
+				fd.getBlocks().resize(count);
+				markDirty(fd);
+			}
+			if (!data.isEmpty() || count > size) {
+				journal(Journal.WRITE_CHARS, fd.getUid(), position, data);
+			}
+			int first = position/blockSize;
+			int written = 0;
+			while (written < data.length()) {
+				int number = position/blockSize;
+				int offset = position % blockSize;
+				int length = Math.min(blockSize - offset, 
+					data.length() - written);
+				int index = file.block(number);
+				String block = data.substring(written, written + length);
+				// part of block is written with rest of its old data, block
+				// stays in cache between its read and write
+				BufferCache pinned = length < blockSize ? buffers : null;
+				if (pinned != null && !pinned.pin(index)) {
+					pinned = null;
+				}
+				try {
+					if (length < blockSize) {
+						block = splice(blocks().read(index), offset, block);
+					}
+					writeBlock(index, block);
+				} finally {
+					if (pinned != null) {
+						pinned.unpin(index);
+					}
+				}
+				position += length;
+				written += length;
+			}
+			deduplicate(fd, first, count);
+			file.setPosition(position);
+		} finally {
+			locks.unlockExclusive(fd.getUid());
+			leave();
+			stats.record(Operation.WRITE, start);
+		}
+		stats.written(2L*data.length());
+		Events.commit(event, Operation.WRITE, fd.getUid(), data.length(), 
+			blockSize);
+		commit(0);
+		return 0;
+	}
+	
+	/**
+	 * Reads bytes of file from specified position till buffers are full or
+	 * file ends. Position of opened file is not changed.
+	 * 
+	 * @return count of read bytes, which is less than remaining bytes of 
+	 * buffers at end of file, or -1, if position is at end of file
+	 */
+	long read(OpenFile file, long position, ByteBuffer[] dsts) {
+		if (position < 0) {
+			throw new IllegalArgumentException("Wrong position!");
+		}
+		long start = System.nanoTime();
+		DataEvent event = Events.beginData(position);
+		FileDescriptor fd = file.getFileDescriptor();
+		int blockSize = device.blockSize();
+		long read = 0;
+		enter();
+		locks.lockShared(fd.getUid());
+		try {
+			long size = (long) fd.blocksCount()*blockSize;
+			if (position >= size) {
+				return remaining(dsts) > 0 ? -1 : 0;
+			}
+			long last = Math.min(position + remaining(dsts), size) - 1;
+			if (last >= position) {
+				readAhead(file, (int) (position/blockSize), 
+					(int) (last/blockSize));
+			}
+			for (ByteBuffer dst: dsts) {
+				int limit = dst.limit();
+				while (dst.hasRemaining() && position < size) {
+					int offset = (int) (position % blockSize);
+					int count = (int) Math.min(Math.min(
+						blockSize - offset, dst.remaining()), 
+						size - position);
+					int index = file.block((int) (position/blockSize));
+					// buffer is limited by part of one block
+					dst.limit(dst.position() + count);
+					if (index == BlockMap.NO_BLOCK) {
+						while (dst.hasRemaining()) {
+							dst.put((byte) 0);
+						}
+					} else {
+						blocks().read(index, offset, dst);
+					}
+					dst.limit(limit);
+					position += count;
+					read += count;
+				}
+			}
+		} finally {
+			locks.unlockShared(fd.getUid());
+			leave();
+			stats.record(Operation.READ, start);
+		}
+		stats.read(read);
+		Events.commit(event, Operation.READ, fd.getUid(), read, blockSize);
+		return read;
+	}
+	
+	/**
+	 * Writes all bytes of buffers to file from specified position. File is 
+	 * extended, if it is needed, and blocks in holes are allocated. Position
+	 * of opened file is not changed.
+	 * 
+	 * @return count of written bytes or {@link #WRONG_BLOCK}, if there are 
+	 * not enough free blocks, file is too big or was removed
+	 */
+	long write(OpenFile file, long position, ByteBuffer[] srcs) {
+		if (position < 0) {
+			throw new IllegalArgumentException("Wrong position!");
+		}
+		long start = System.nanoTime();
+		DataEvent event = Events.beginData(position);
+		FileDescriptor fd = file.getFileDescriptor();
+		int blockSize = device.blockSize();
+		long written = remaining(srcs);
+		enter();
+		locks.lockExclusive(fd.getUid());
+		try {
+			long end = position + written;
+			if (end > (long) geometry.getFileBlocks()*blockSize || 
+				fd.isNoHardLinksCount()) {
+				return WRONG_BLOCK;
+			}
+			int count = (int) ((end + blockSize - 1)/
+				blockSize);
+			preserve(fd);
+			// extension is replayed with record of write
+			if (written > 0 && (copyShared(fd, (int) (position/blockSize), 
+				count) == WRONG_BLOCK || fillHoles(fd, 
+				(int) (position/blockSize), count) == WRONG_BLOCK)) {
+				return WRONG_BLOCK;
+			}
+			if (written > 0) {
+				journal(fd.getUid(), position, srcs);
+			}
+			for (ByteBuffer src: srcs) {
+				int limit = src.limit();
+				while (src.hasRemaining()) {
+					int offset = (int) (position % blockSize);
+					int length = Math.min(blockSize - offset, 
+						src.remaining());
+					int index = file.block(
+						(int) (position/blockSize));
+					synchronized (metadata) {
+						dirtyBlocks.set(index);
+					}
+					src.limit(src.position() + length);
+					blocks().write(index, offset, src);
+					src.limit(limit);
+					position += length;
+				}
+			}
+			if (written > 0) {
+				deduplicate(fd, (int) ((end - written)/blockSize), count);
+			}
+		} finally {
+			locks.unlockExclusive(fd.getUid());
+			leave();
+			stats.record(Operation.WRITE, start);
+		}
+		stats.written(written);
+		Events.commit(event, Operation.WRITE, fd.getUid(), written, blockSize);
+		commit(0);
+		return written;
+	}
+	
+	/**
+	 * Reads data from block of file with specified number.
+	 * 
+	 * @return data or null, if file has no such block
+	 */
+	public String readData(FileDescriptor fd, int number) {
+		long start = System.nanoTime();
+		DataEvent event = Events.beginData((long) number*blockChars());
+		String data;
+		enter();
+		locks.lockShared(fd.getUid());
+		try {
+			if (number < 0 || number >= fd.blocksCount()) {
+				return null;
+			}
+			int index = fd.getBlock(number);
+			data = index == BlockMap.NO_BLOCK ? "" : blocks().read(index);
+		} finally {
+			locks.unlockShared(fd.getUid());
+			leave();
+			stats.record(Operation.READ_DATA, start);
+		}
+		stats.read(2L*data.length());
+		Events.commit(event, Operation.READ_DATA, fd.getUid(), data.length(), 
+			blockChars());
+		return data;
+	}
+	
+	/**
+	 * Leaves only specified count of first blocks in file and frees others.
+	 */
+	public void truncateBlocks(FileDescriptor fd, int count) {
+		locks.lockExclusive(fd.getUid());
+		try {
+			BlockMap map = fd.getBlocks();
+			if (count >= map.size()) {
+				return;
+			}
+			preserve(fd);
+			for (int i = 0; i < map.extentsCount(); i++) {
+				if (map.extentOffset(i) + map.extentLength(i) <= count) {
+					continue;
+				}
+				int skipped = Math.max(count - map.extentOffset(i), 0);
+				int start = map.extentStart(i) + skipped;
+				int length = map.extentLength(i) - skipped;
+				// blocks, which are shared, are kept for their other owners
+				for (int j = 0; j < length; j++) {
+					freeBlock(start + j);
+				}
+			}
+			map.truncate(count);
+			markDirty(fd);
+		} finally {
+			locks.unlockExclusive(fd.getUid());
+		}
+	}
+	
+	public int freeBlocksCount() {
+		synchronized (metadata) {
+			return allocator.freeBlocksCount();
+		}
+	}
+	
+	public String readBlock(int index) {
+		return blocks().read(index);
+	}
+	
+	public int writeBlock(int index, String data) {
+		synchronized (metadata) {
+			dirtyBlocks.set(index);
+			fingerprints.remove(index);
+		}
+		return blocks().write(index, data);
+	}
+	
+	public BlockDevice getDevice() {
+		return device;
+	}
+	
+	public Geometry getGeometry() {
+		return geometry;
+	}
+	
+	/**
+	 * @return latencies of operations and counters of volume
+	 */
+	public FileSystemStats getStats() {
+		return stats;
+	}
+	
+	/**
+	 * @return cache of blocks or null, if volume has not it
+	 */
+	public BufferCache getBufferCache() {
+		return buffers;
+	}
+	
+	/**
+	 * Puts cache with specified count of buffers between volume and its 
+	 * device or removes cache, if count is 0. Changed buffers of old cache 
+	 * are written to device, like checkpoint it waits for all started 
+	 * operations.
+	 */
+	public void setBuffersCount(int count) {
+		if (count < 0) {
+			throw new IllegalArgumentException("Wrong buffers count!");
+		}
+		volumeLock.writeLock().lock();
+		try {
+			if (buffers != null) {
+				buffers.release();
+			}
+			buffers = count == 0 ? null : new BufferCache(device, count);
+		} finally {
+			volumeLock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Writes changed buffers to device, so it can be read directly, caller
+	 * should hold write lock of volume.
+	 */
+	void writeBack() {
+		if (buffers != null) {
+			buffers.writeBack();
+		}
+	}
+	
+	/**
+	 * @return cache of blocks or device, if volume has not cache
+	 */
+	BlockDevice blocks() {
+		BufferCache cached = buffers;
+		return cached == null ? device : cached;
+	}
+	
+	BlockAllocator getAllocator() {
+		return allocator;
+	}
+	
+	InodeTable getInodes() {
+		return inodes;
+	}
+	
+	long getNextUid() {
+		return nextUid;
+	}
+	
+	/**
+	 * Sets uid of next created file. Used by journal replay, so created
+	 * file gets uid from its record.
+	 */
+	void setNextUid(long nextUid) {
+		synchronized (metadata) {
+			this.nextUid = nextUid;
+		}
+	}
+	
+	/**
+	 * Returns uid's of opened files, uid is repeated for each open.
+	 */
+	List<Long> getOpened() {
+		List<Long> uids = new ArrayList<Long>();
+		synchronized (metadata) {
+			// opened descriptors of lazily read volume are not evicted
+			for (FileDescriptor fd: inodes.values()) {
+				for (int i = 0; i < fd.getOpenCount(); i++) {
+					uids.add(fd.getUid());
+				}
+			}
+		}
+		return uids;
+	}
+	
+	Journal getJournal() {
+		return journal;
+	}
+	
+	long getSequence() {
+		return sequence;
+	}
+	
+	void setSequence(long sequence) {
+		this.sequence = sequence;
+	}
+	
+	public boolean isSynchronous() {
+		return synchronous;
+	}
+	
+	/**
+	 * Sets, whether each operation waits for its journal record to be 
+	 * forced. Otherwise records are forced together by {@link #sync()}.
+	 */
+	public void setSynchronous(boolean synchronous) {
+		this.synchronous = synchronous;
+	}
+	
+	/**
+	 * Forces records of all journaled operations.
+	 */
+	public void sync() throws IOException {
+		Journal journal = this.journal;
+		if (journal != null) {
+			long start = System.nanoTime();
+			PersistenceEvent event = Events.beginPersistence();
+			journal.sync();
+			stats.record(Operation.SYNC, start);
+			Events.commit(event, Operation.SYNC, "force", 
+				journal.getPathName(), 0, 0);
+		}
+	}
+	
+	/**
+	 * Runs operations of current thread as one batch: volume is entered 
+	 * once and journal records of operations are forced together after the
+	 * last of them. Operations, which need whole volume, like checkpoint or
+	 * snapshot, can not be done in batch.
+	 */
+	public void batch(Runnable operations) {
+		if (operations == null) {
+			throw new IllegalArgumentException("Wrong operations!");
+		}
+		Boolean outer = batched.get();
+		enter();
+		try {
+			batched.set(Boolean.TRUE);
+			operations.run();
+		} finally {
+			if (outer == null) {
+				batched.remove();
+			}
+			leave();
+		}
+		// nested batch is forced by outer one
+		if (outer == null) {
+			commit(0);
+		}
+	}
+	
+	VolumeImage getImage() {
+		return image;
+	}
+	
+	BitSet getDirtyBlocks() {
+		return dirtyBlocks;
+	}
+	
+	Set<Long> getDirtyDescriptors() {
+		return dirtyDescriptors;
+	}
+	
+	boolean isDirtyOpened() {
+		return dirtyOpened;
+	}
+	
+	BlockRefs getRefs() {
+		return refs;
+	}
+	
+	void setRefs(BlockRefs refs) {
+		this.refs = refs;
+	}
+	
+	boolean isDirtyRefs() {
+		return dirtyRefs;
+	}
+	
+	/**
+	 * Remembers image, which has all changes of file system.
+	 */
+	void checkpointed(VolumeImage image) throws IOException {
+		if (this.image != null && this.image != image) {
+			this.image.close();
+		}
+		this.image = image;
+		if (device instanceof ImageBlockDevice) {
+			((ImageBlockDevice) device).checkpointed(image);
+		}
+		dirtyBlocks.clear();
+		dirtyDescriptors.clear();
+		dirtyOpened = false;
+		dirtyRefs = false;
+		if (loaded != null) {
+			evict();
+		}
+	}
+	
+	/**
+	 * Returns uid's of all descriptors, including not loaded ones.
+	 */
+	List<Long> descriptorUids() throws IOException {
+		List<Long> uids = new ArrayList<Long>(descriptorsCount);
+		for (FileDescriptor fd: inodes.values()) {
+			uids.add(fd.getUid());
+		}
+		if (loaded != null) {
+			for (long uid: image.descriptorUids()) {
+				if (inodes.get(uid) == null && 
+					!dirtyDescriptors.contains(uid)) {
+					uids.add(uid);
+				}
+			}
+		}
+		return uids;
+	}
+	
+	/**
+	 * Returns descriptor without keeping it in memory, if it is not loaded.
+	 */
+	FileDescriptor peekDescriptor(long uid) throws IOException {
+		FileDescriptor fd = inodes.get(uid);
+		if (fd == null && loaded != null && !dirtyDescriptors.contains(uid)) {
+			fd = image.loadDescriptor(uid);
+		}
+		return fd;
+	}
+	
+	/**
+	 * Opens file once more. Count of opens is changed without locks.
+	 * 
+	 * @return true, if file was not opened before
+	 */
+	public boolean addOpen(FileDescriptor fd) {
+		dirtyOpened = true;
+		if (fd.incrementOpenCount() != 1) {
+			return false;
+		}
+		openedCount.incrementAndGet();
+		if (loaded != null) {
+			// descriptor could be evicted, after it was found
+			markLoaded(fd);
+		}
+		return true;
+	}
+	
+	/**
+	 * Closes one open of file.
+	 * 
+	 * @return false, if file was not opened
+	 */
+	public boolean removeOpen(FileDescriptor fd) {
+		int count = fd.decrementOpenCount();
+		if (count < 0) {
+			return false;
+		}
+		dirtyOpened = true;
+		if (count == 0) {
+			openedCount.decrementAndGet();
+		}
+		return true;
+	}
+	
+	public boolean addOpen(long uid) {
+		FileDescriptor fd = getFileDescriptor(uid);
+		return fd != null && addOpen(fd);
+	}
+	
+	public boolean removeOpen(long uid) {
+		FileDescriptor fd = getFileDescriptor(uid);
+		return fd != null && removeOpen(fd);
+	}
+	
+	public int openedCount() {
+		return openedCount.get();
+	}
+	
+	public boolean isOpened(long uid) {
+		FileDescriptor fd = getFileDescriptor(uid);
+		return fd != null && fd.isOpened();
+	}
+	
+	/**
+	 * Creates session with its own table of opened files.
+	 */
+	public Session openSession() {
+		return new Session(this);
+	}
+	
+	/**
+	 * Creates snapshot of volume after all started operations. Nothing is
+	 * copied, so snapshot is created at once.
+	 */
+	public Snapshot snapshot() {
+		long start = System.nanoTime();
+		volumeLock.writeLock().lock();
+		try {
+			Snapshot snapshot;
+			synchronized (metadata) {
+				snapshot = new Snapshot(this, nextSnapshotId++, 
+					root.getUid(), currentDirectory.getUid(), nextUid, 
+					linksCount, sequence);
+			}
+			snapshots.add(snapshot);
+			return snapshot;
+		} finally {
+			volumeLock.writeLock().unlock();
+			stats.record(Operation.SNAPSHOT, start);
+		}
+	}
+	
+	/**
+	 * @return snapshots, which are not released, in order of their creation
+	 */
+	public List<Snapshot> getSnapshots() {
+		return new ArrayList<Snapshot>(snapshots);
+	}
+	
+	/**
+	 * @return snapshot with specified id or null, if it was released
+	 */
+	public Snapshot getSnapshot(int id) {
+		for (Snapshot snapshot: snapshots) {
+			if (snapshot.getId() == id) {
+				return snapshot;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * @return count of blocks, which are shared by files and snapshots
+	 */
+	public int sharedBlocksCount() {
+		synchronized (metadata) {
+			return refs.sharedCount();
+		}
+	}
+	
+	/**
+	 * @return count of blocks, which are not used, because files and 
+	 * snapshots share blocks
+	 */
+	public int savedBlocksCount() {
+		synchronized (metadata) {
+			return refs.savedCount();
+		}
+	}
+	
+	public boolean isDeduplicated() {
+		return deduplicated;
+	}
+	
+	/**
+	 * Sets, whether written blocks are shared with used blocks, which have 
+	 * same data, and blocks of zeros are freed. Used blocks are read to find
+	 * their fingerprints, when deduplication is turned on, like checkpoint 
+	 * they wait for all started operations.
+	 */
+	public void setDeduplicated(boolean deduplicated) {
+		volumeLock.writeLock().lock();
+		try {
+			if (deduplicated && !this.deduplicated) {
+				ByteBuffer data = ByteBuffer.allocate(device.blockSize());
+				for (int i = allocator.nextUsed(0); i >= 0; 
+						i = allocator.nextUsed(i + 1)) {
+					data.clear();
+					blocks().read(i, 0, data);
+					data.flip();
+					if (!isZeros(data)) {
+						fingerprints.put(i, BlockIndex.fingerprint(data));
+					}
+				}
+			} else if (!deduplicated) {
+				// writes do not keep index, which is not used
+				fingerprints = new BlockIndex();
+			}
+			this.deduplicated = deduplicated;
+		} finally {
+			volumeLock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * @return count of written blocks, which were shared with others or 
+	 * freed as zeros, since volume was mounted
+	 */
+	public long deduplicatedCount() {
+		synchronized (metadata) {
+			return deduplicatedCount;
+		}
+	}
+	
+	/**
+	 * @return count of blocks, which can be found by their data
+	 */
+	public int fingerprintsCount() {
+		synchronized (metadata) {
+			return fingerprints.size();
+		}
+	}
+	
+	/**
+	 * Returns copy of descriptor in its state at creation of snapshot.
+	 */
+	FileDescriptor snapshotDescriptor(Snapshot snapshot, long uid) {
+		enter();
+		try {
+			FileDescriptor fd = snapshot.getPreserved(uid);
+			if (fd != null) {
+				return fd;
+			}
+			FileDescriptor current = getFileDescriptor(uid);
+			if (current == null) {
+				// descriptor could be removed after it was checked
+				return snapshot.getPreserved(uid);
+			}
+			locks.lockShared(uid);
+			try {
+				// descriptor is preserved under its lock before change
+				fd = snapshot.getPreserved(uid);
+				return fd != null ? fd : current.copy();
+			} finally {
+				locks.unlockShared(uid);
+			}
+		} finally {
+			leave();
+		}
+	}
+	
+	/**
+	 * Frees blocks, which were kept only by released snapshot.
+	 */
+	void released(Snapshot snapshot) {
+		volumeLock.writeLock().lock();
+		try {
+			if (!snapshots.remove(snapshot)) {
+				return;
+			}
+			for (FileDescriptor fd: snapshot.preservedDescriptors()) {
+				for (int index: fd.getBlocks().toArray()) {
+					freeBlock(index);
+				}
+			}
+		} finally {
+			volumeLock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Creates file with specified path and one empty block.
+	 */
+	public int create(String path) {
+		long start = System.nanoTime();
+		NamespaceEvent event = Events.beginNamespace(this, path, false);
+		int message;
+		enter();
+		try {
+			message = createFile(path, "", false);
+		} finally {
+			leave();
+			stats.record(Operation.CREATE, start);
+		}
+		Events.commit(event, this, Operation.CREATE, path, null, message);
+		commit(message);
+		return message;
+	}
+	
+	/**
+	 * Creates symbolic link with specified path. Its block contains path
+	 * of file, on which it points.
+	 */
+	public int symlink(String target, String path) {
+		long start = System.nanoTime();
+		NamespaceEvent event = Events.beginNamespace(this, path, false);
+		int message;
+		enter();
+		try {
+			message = createFile(path, target, true);
+		} finally {
+			leave();
+			stats.record(Operation.SYMLINK, start);
+		}
+		Events.commit(event, this, Operation.SYMLINK, path, target, message);
+		commit(message);
+		return message;
+	}
+	
+	public int mkdir(String path) {
+		long start = System.nanoTime();
+		NamespaceEvent event = Events.beginNamespace(this, path, false);
+		int message;
+		enter();
+		try {
+			message = makeDirectory(path);
+		} finally {
+			leave();
+			stats.record(Operation.MKDIR, start);
+		}
+		Events.commit(event, this, Operation.MKDIR, path, null, message);
+		commit(message);
+		return message;
+	}
+	
+	/**
+	 * Creates hard link with specified path on existing file.
+	 */
+	public int link(String existing, String path) {
+		long start = System.nanoTime();
+		NamespaceEvent event = Events.beginNamespace(this, path, false);
+		int message;
+		enter();
+		try {
+			message = linkFile(existing, path);
+		} finally {
+			leave();
+			stats.record(Operation.LINK, start);
+		}
+		Events.commit(event, this, Operation.LINK, path, existing, message);
+		commit(message);
+		return message;
+	}
+	
+	/**
+	 * Creates hard link with specified path on file with specified uid. Used
+	 * by journal replay, because old path of file can be taken by other 
+	 * file.
+	 */
+	int link(long uid, String path) {
+		int message;
+		enter();
+		try {
+			FileDescriptor fd = getFileDescriptor(uid);
+			message = fd == null ? NO_SUCH_FILE : linkFile(fd, path);
+		} finally {
+			leave();
+		}
+		commit(message);
+		return message;
+	}
+	
+	/**
+	 * Removes link with specified path. File is removed with its last link.
+	 */
+	public int unlink(String path) {
+		long start = System.nanoTime();
+		NamespaceEvent event = Events.beginNamespace(this, path, true);
+		int message;
+		enter();
+		try {
+			message = unlinkFile(path);
+		} finally {
+			leave();
+			stats.record(Operation.UNLINK, start);
+		}
+		Events.commit(event, this, Operation.UNLINK, path, null, message);
+		commit(message);
+		return message;
+	}
+	
+	/**
+	 * Removes empty directory with specified path.
+	 */
+	public int rmdir(String path) {
+		long start = System.nanoTime();
+		NamespaceEvent event = Events.beginNamespace(this, path, true);
+		int message;
+		enter();
+		try {
+			message = removeDirectory(path);
+		} finally {
+			leave();
+			stats.record(Operation.RMDIR, start);
+		}
+		Events.commit(event, this, Operation.RMDIR, path, null, message);
+		commit(message);
+		return message;
+	}
+	
+	/**
+	 * Adds entry with specified name to directory.
+	 * 
+	 * @return {@link #TRUNCATED_FILENAME}, if name was truncated, or 0
+	 */
+	public int addLink(FileDescriptor directory, String name, 
+			FileDescriptor fd) {
+		if (name == null || name.isEmpty() || name.equals(CURRENT) || 
+			name.equals(PARENT) || name.contains(DIVIDER)) {
+			throw new IllegalArgumentException("Wrong name!");
+		}
+		String newName = truncate(name);
+		locks.lockExclusive(directory.getUid());
+		try {
+			preserve(directory);
+			// file keeps directory of its first link
+			if (fd.getParent() == 0 || fd.isDirectory()) {
+				preserve(fd);
+				fd.setParent(directory.getUid());
+			}
+			markDirty(fd);
+			markDirty(directory);
+			synchronized (metadata) {
+				linksCount++;
+			}
+			// file is visible for others after it is ready
+			directory.getEntries().put(newName, fd.getUid());
+		} finally {
+			locks.unlockExclusive(directory.getUid());
+		}
+		if (name.length() != newName.length()) {
+			return TRUNCATED_FILENAME;
+		}
+		return 0;
+	}
+	
+	public void removeLink(FileDescriptor directory, String name) {
+		locks.lockExclusive(directory.getUid());
+		try {
+			preserve(directory);
+			if (directory.getEntries().remove(name) != NameTree.ABSENT) {
+				markDirty(directory);
+				synchronized (metadata) {
+					linksCount--;
+				}
+			}
+		} finally {
+			locks.unlockExclusive(directory.getUid());
+		}
+	}
+	
+	public int linksCount() {
+		synchronized (metadata) {
+			return linksCount;
+		}
+	}
+	
+	/**
+	 * Creates descriptor with new uid.
+	 * 
+	 * @return created descriptor or null, if maximum count of descriptors 
+	 * was reached
+	 */
+	public FileDescriptor createDescriptor(boolean directory) {
+		synchronized (metadata) {
+			// root is created before geometry is set
+			if (geometry != null && 
+				descriptorsCount >= geometry.getDescriptorsCount()) {
+				return null;
+			}
+			FileDescriptor fd = new FileDescriptor(nextUid++, directory);
+			descriptorsCount++;
+			markDirty(fd);
+			return fd;
+		}
+	}
+	
+	public void removeDescriptor(FileDescriptor fd) {
+		if (fd.equals(root)) {
+			return;
+		}
+		synchronized (metadata) {
+			inodes.remove(fd.getUid());
+			descriptorsCount--;
+			dirtyDescriptors.add(fd.getUid());
+			if (loaded != null) {
+				loaded.remove(fd.getUid());
+			}
+		}
+	}
+	
+	public int descriptorsCount() {
+		synchronized (metadata) {
+			return descriptorsCount;
+		}
+	}
+	
+	public FileDescriptor getFileDescriptor(long uid) {
+		synchronized (metadata) {
+			FileDescriptor fd = inodes.get(uid);
+			if (loaded == null || uid == NameTree.ABSENT) {
+				return fd;
+			}
+			if (fd != null) {
+				loaded.get(uid);
+				return fd;
+			}
+			// descriptor, which is changed, is in memory or was removed
+			if (dirtyDescriptors.contains(uid)) {
+				return null;
+			}
+		}
+		// other threads do not wait, while descriptor is read from image
+		FileDescriptor fd;
+		try {
+			fd = image.loadDescriptor(uid);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		if (fd == null) {
+			return null;
+		}
+		synchronized (metadata) {
+			// other thread has read it too or has removed it
+			FileDescriptor loadedFd = inodes.get(uid);
+			if (loadedFd != null || dirtyDescriptors.contains(uid)) {
+				return loadedFd;
+			}
+			inodes.put(fd);
+			loaded.put(uid, Boolean.TRUE);
+			return fd;
+		}
+	}
+
+	public FileDescriptor getFileDescriptor(String filename) {
+		return lookup(filename);
+	}
+	
+	/**
+	 * Finds file by its path. Path is resolved by components from root, if
+	 * it starts with divider, or from current directory otherwise. Symbolic
+	 * links are followed in all components except last.
+	 * 
+	 * @return found descriptor or null
+	 */
+	public FileDescriptor lookup(String path) {
+		if (path == null || path.isEmpty()) {
+			return null;
+		}
+		enter();
+		try {
+			FileDescriptor current = currentDirectory;
+			String key = absolutePath(current, path);
+			Long uid = key == null ? null : cache.getUid(key);
+			FileDescriptor fd = uid == null ? null : getFileDescriptor(uid);
+			if (fd == null) {
+				long generation = cache.generation();
+				boolean[] linked = new boolean[1];
+				fd = walk(current, path, linked, 0);
+				if (fd != null && key != null) {
+					cache.putUid(key, fd.getUid(), linked[0], generation);
+				}
+			}
+			return fd;
+		} finally {
+			leave();
+		}
+	}
+	
+	/**
+	 * Finds file by its path like {@link #lookup(String)}, but follows last
+	 * component too, if it is symbolic link.
+	 * 
+	 * @return found descriptor or null, if there is no file or links make
+	 * loop
+	 */
+	public FileDescriptor resolve(String path) {
+		FileDescriptor fd = lookup(path);
+		if (fd != null && fd.isSymlink()) {
+			fd = follow(fd, 0);
+		}
+		return fd;
+	}
+	
+	/**
+	 * Returns full path of directory or of first link of file.
+	 */
+	public String getName(FileDescriptor fd) {
+		if (fd.equals(root)) {
+			return DIVIDER;
+		}
+		String path = cache.getName(fd.getUid());
+		if (path != null) {
+			return path;
+		}
+		long generation = cache.generation();
+		FileDescriptor parent = getFileDescriptor(fd.getParent());
+		if (parent == null) {
+			return null;
+		}
+		String name;
+		locks.lockShared(parent.getUid());
+		try {
+			name = parent.getEntries().findName(fd.getUid());
+		} finally {
+			locks.unlockShared(parent.getUid());
+		}
+		String parentPath = getName(parent);
+		if (name == null || parentPath == null) {
+			return null;
+		}
+		path = join(parentPath, name);
+		cache.putName(fd.getUid(), path, generation);
+		return path;
+	}
+	
+	/**
+	 * Returns path, on which symbolic link points.
+	 */
+	public String getTarget(FileDescriptor fd) {
+		if (!fd.isSymlink() || fd.isEmpty()) {
+			return null;
+		}
+		String target = cache.getTarget(fd.getUid());
+		if (target == null) {
+			long generation = cache.generation();
+			target = readData(fd, 0);
+			if (target != null) {
+				cache.putTarget(fd.getUid(), target, generation);
+			}
+		}
+		return target;
+	}
+	
+	public FileDescriptor getRoot() {
+		return root;
+	}
+	
+	public FileDescriptor getCurrentDirectory() {
+		return currentDirectory;
+	}
+	
+	public void setCurrentDirectory(FileDescriptor currentDirectory) {
+		if (currentDirectory == null) {
+			currentDirectory = root;
+		}
+		this.currentDirectory = currentDirectory;
+	}
+	
+	public String truncate(String name) {
+		if (name.length() > MAX_FILE_NAME_SIZE) {
+			name = name.substring(0, MAX_FILE_NAME_SIZE);
+		}
+		return name;
+	}
 	
-	// maximum file name length
-	public static final transient int MAX_FILE_NAME_SIZE = 255;
+	// resolves path by components, starting from specified directory, 
+	// caller should not hold locks of descriptors
+	private FileDescriptor walk(FileDescriptor start, String path, 
+			boolean[] linked, int depth) {
+		FileDescriptor fd = path.startsWith(DIVIDER) ? root : start;
+		String[] names = path.split(DIVIDER);
+		for (int i = 0; i < names.length; i++) {
+			String name = names[i];
+			if (name.isEmpty() || name.equals(CURRENT)) {
+				continue;
+			}
+			if (fd.isFile()) {
+				return null;
+			}
+			if (name.equals(PARENT)) {
+				fd = getFileDescriptor(fd.getParent());
+			} else {
+				long uid;
+				locks.lockShared(fd.getUid());
+				try {
+					uid = fd.getEntries().get(truncate(name));
+				} finally {
+					locks.unlockShared(fd.getUid());
+				}
+				fd = getFileDescriptor(uid);
+			}
+			if (fd == null) {
+				return null;
+			}
+			if (fd.isSymlink() && i < names.length - 1) {
+				linked[0] = true;
+				fd = follow(fd, depth);
+				if (fd == null) {
+					return null;
+				}
+			}
+		}
+		return fd;
+	}
 	
-	// for debugging
-	private static final transient int SCALE = 1;
+	// finds file, on which link points, relative to directory of link
+	private FileDescriptor follow(FileDescriptor link, int depth) {
+		FileDescriptor fd = link;
+		while (fd.isSymlink()) {
+			// links make loop
+			if (depth++ == MAX_SYMLINKS_DEPTH) {
+				return null;
+			}
+			String target = getTarget(fd);
+			FileDescriptor directory = getFileDescriptor(fd.getParent());
+			if (target == null || target.isEmpty() || directory == null) {
+				return null;
+			}
+			fd = walk(directory, target, new boolean[1], depth);
+			if (fd == null) {
+				return null;
+			}
+		}
+		return fd;
+	}
 	
-	// maximum count of blocks in file system
-	public static final transient int MAX_BLOCKS_COUNT = 65536/SCALE;
-
-	// array of all blocks in file system
-	private DataBlock[] blocks = new DataBlock[MAX_BLOCKS_COUNT];
+	// path with truncated names is not cached, because invalidation uses
+	// stored names
+	private String absolutePath(FileDescriptor current, String path) {
+		int length = 0;
+		for (int i = 0; i < path.length(); i++) {
+			length = path.startsWith(DIVIDER, i) ? 0 : length + 1;
+			if (length > MAX_FILE_NAME_SIZE) {
+				return null;
+			}
+		}
+		if (path.startsWith(DIVIDER)) {
+			return path;
+		}
+		String currentPath = getName(current);
+		return currentPath == null ? null : join(currentPath, path);
+	}
 	
-	private FileDescriptor root = new FileDescriptor(true);
+	private static String join(String directory, String name) {
+		return directory.endsWith(DIVIDER) ? directory + name : 
+			directory + DIVIDER + name;
+	}
 	
-	private FileDescriptor currentDirectory = root;
+	// drops cached paths, which depend on changed name in directory, path
+	// of directory is found before its lock is taken
+	private void invalidate(String directoryPath, String name, long uid) {
+		if (directoryPath == null) {
+			cache.clear();
+		} else {
+			cache.invalidate(join(directoryPath, name), uid);
+		}
+	}
 	
-	// set of uid's of opened files
-	private Set<Long> opened = new HashSet<Long>();
+	private void markLoaded(FileDescriptor fd) {
+		synchronized (metadata) {
+			if (inodes.get(fd.getUid()) == null && 
+				!dirtyDescriptors.contains(fd.getUid())) {
+				inodes.put(fd);
+			}
+			loaded.put(fd.getUid(), Boolean.TRUE);
+		}
+	}
 	
-	// map with file names as keys and descriptors as values
-	private Map<String, FileDescriptor> links = 
-		new HashMap<String, FileDescriptor>();
+	// descriptor is kept in memory, till its changes are saved by checkpoint
+	private void markDirty(FileDescriptor fd) {
+		synchronized (metadata) {
+			dirtyDescriptors.add(fd.getUid());
+			if (inodes.get(fd.getUid()) == null) {
+				inodes.put(fd);
+			}
+			if (loaded != null) {
+				loaded.put(fd.getUid(), Boolean.TRUE);
+			}
+		}
+	}
 	
-	public FileSystem() {
-		for (int i = 0; i < blocks.length; i++) {
-			blocks[i] = new DataBlock();
+	// volume, which is saved as object, should be in memory whole
+	private void loadAll() throws IOException {
+		if (loaded == null) {
+			return;
+		}
+		for (long uid: descriptorUids()) {
+			if (inodes.get(uid) == null) {
+				inodes.put(peekDescriptor(uid));
+			}
 		}
-		links.put(ROOT, root);
+		loaded = null;
+		if (device instanceof ImageBlockDevice) {
+			// changed buffers are copied with other blocks
+			writeBack();
+			// compressed volume stays compressed in memory
+			device = ((ImageBlockDevice) device).isCompressed() ?
+				copyBlocks(device, new CompressedBlockDevice(
+					device.blocksCount(), device.blockSize()), allocator) :
+				copyToSlab(device, allocator);
+			// cache is moved to new device
+			if (buffers != null) {
+				buffers.release();
+				buffers = new BufferCache(device, buffers.buffersCount());
+			}
+		}
+		// image can not read anything now, so next checkpoint rewrites it
+		image.close();
+		image = null;
 	}
 	
-	public int getFirstFreeBlock() {
-		for (int i = 0; i < blocks.length; i++) {
-			if (!blocks[i].isUsed()) {
-				return i;
+	// drops least recently used descriptors, which are not changed, only
+	// when no operation is done, because they keep found descriptors
+	private void evict() {
+		Iterator<Long> uids = loaded.keySet().iterator();
+		while (loaded.size() > DESCRIPTORS_CACHE_SIZE && uids.hasNext()) {
+			long uid = uids.next();
+			if (!dirtyDescriptors.contains(uid) && uid != root.getUid() &&
+				uid != currentDirectory.getUid() && 
+				!inodes.get(uid).isOpened()) {
+				uids.remove();
+				inodes.remove(uid);
 			}
 		}
-		return WRONG_BLOCK;
 	}
 	
-	public DataBlock getBlock(int index) {
-		if (index < 0 || index >= MAX_BLOCKS_COUNT) {
-			throw new IllegalArgumentException("Wrong index!");
+	// copies used blocks to slab with same size of blocks
+	static BlockDevice copyToSlab(BlockDevice device, 
+			BlockAllocator allocator) {
+		return copyBlocks(device, new SlabBlockDevice(device.blocksCount(), 
+			device.blockSize()), allocator);
+	}
+	
+	// copies used blocks to other device with same size of blocks
+	private static BlockDevice copyBlocks(BlockDevice from, BlockDevice to,
+			BlockAllocator allocator) {
+		byte[] data = new byte[from.blockSize()];
+		for (int i = allocator.nextUsed(0); i >= 0; 
+				i = allocator.nextUsed(i + 1)) {
+			from.read(i, 0, ByteBuffer.wrap(data));
+			to.write(i, 0, ByteBuffer.wrap(data));
 		}
-		return blocks[index];
+		return to;
 	}
 	
-	public boolean addOpen(long uid) {
-		return opened.add(uid);
+	// size of block in chars
+	private int blockChars() {
+		return device.blockSize()/2;
 	}
 	
-	public boolean removeOpen(long uid) {
-		return opened.remove(uid);
+	// replaces part of old data of block, which is padded, if it is short
+	private static String splice(String old, int offset, String data) {
+		StringBuilder block = new StringBuilder(offset + data.length());
+		if (old != null) {
+			block.append(old, 0, Math.min(old.length(), offset));
+		}
+		while (block.length() < offset) {
+			block.append(PADDING);
+		}
+		block.append(data);
+		if (old != null && old.length() > block.length()) {
+			block.append(old, block.length(), old.length());
+		}
+		return block.toString();
 	}
 	
-	public int openedCount() {
-		return opened.size();
+	// operation with name, which was truncated, is done too
+	private static boolean isDone(int message) {
+		return message >= 0 || message == TRUNCATED_FILENAME;
 	}
 	
-	public boolean isOpened(long uid) {
-		return opened.contains(uid);
+	// operations are done in parallel, but not with checkpoint
+	void enter() {
+		volumeLock.readLock().lock();
 	}
 	
-	public int addLink(String name, FileDescriptor fd) {
-		if (name.isEmpty() || name == null || name.equals(ROOT)) {
-			throw new IllegalArgumentException("Wrong name!");
+	void leave() {
+		volumeLock.readLock().unlock();
+		boolean overflow;
+		synchronized (metadata) {
+			overflow = loaded != null && 
+				loaded.size() > DESCRIPTORS_CACHE_SIZE;
 		}
-		if (links.size() == FileDescriptor.MAX_DESCRIPTORS_COUNT) {
-			return FileDescriptor.WRONG_DESCRIPTOR;
+		// descriptors are evicted, when there are no other operations
+		if (overflow && volumeLock.writeLock().tryLock()) {
+			try {
+				synchronized (metadata) {
+					evict();
+				}
+			} finally {
+				volumeLock.writeLock().unlock();
+			}
 		}
-		String newName = fd.isDirectory() ? name : truncate(name);
-		links.put(newName, fd);
-		if (name.length() != newName.length()) {
-			return TRUNCATED_FILENAME;
+	}
+	
+	// appends record of operation, while its locks are held, so records of
+	// operations with same files are in order of these operations
+	// namespace record keeps directory, in which name was resolved, and uid
+	// of file, so replay does not depend on current directory and order of
+	// uids
+	private void journal(int operation, long directory, String name, 
+			String second, long uid) {
+		if (journal == null) {
+			return;
+		}
+		try {
+			appended(journal.append(operation, directory, name, second, 
+				uid));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	private void journal(int operation, long uid, int number, String data) {
+		if (journal == null) {
+			return;
+		}
+		try {
+			appended(journal.append(operation, uid, number, data));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	private void journal(long uid, long position, ByteBuffer[] data) {
+		if (journal == null) {
+			return;
+		}
+		try {
+			appended(journal.append(Journal.WRITE_BYTES, uid, position, 
+				data));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	private void appended(long sequence) {
+		synchronized (metadata) {
+			this.sequence = Math.max(this.sequence, sequence);
+		}
+	}
+	
+	// waits for record of done operation after its locks are released, so
+	// records of several threads are forced together
+	private void commit(int message) {
+		Journal journal = this.journal;
+		if (journal == null || !synchronous || !isDone(message) || 
+			batched.get() != null) {
+			return;
+		}
+		long start = System.nanoTime();
+		PersistenceEvent event = Events.beginPersistence();
+		try {
+			journal.sync();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		stats.record(Operation.SYNC, start);
+		Events.commit(event, Operation.SYNC, "force", journal.getPathName(), 
+			0, 0);
+	}
+	
+	// journal of image is cleared, because image has all changes
+	private void clearJournal(String imagePathName) throws IOException {
+		String pathName = imagePathName + JOURNAL_EXTENSION;
+		if (journal != null && !journal.getPathName().equals(pathName)) {
+			// old image still needs its records
+			journal.close();
+			journal = null;
+		}
+		if (journal == null) {
+			journal = new Journal(pathName);
+		}
+		journal.clear(sequence);
+	}
+	
+	// creates file with one block, which contains specified data
+	private int createFile(String path, String data, boolean symlink) {
+		FileDescriptor parent = lookupParent(path);
+		if (parent == null) {
+			return NO_SUCH_FILE;
+		}
+		String parentPath = getName(parent);
+		String name = lastName(path);
+		locks.lockExclusive(parent.getUid());
+		try {
+			// directory was removed after lookup
+			if (parent.isNoHardLinksCount()) {
+				return NO_SUCH_FILE;
+			}
+			if (parent.getEntries().contains(truncate(name))) {
+				return FILE_EXISTS;
+			}
+			int index = allocateBlock();
+			if (index == WRONG_BLOCK) {
+				return WRONG_BLOCK;
+			}
+			FileDescriptor fd = createDescriptor(false);
+			if (fd == null) {
+				freeBlock(index);
+				return FileDescriptor.WRONG_DESCRIPTOR;
+			}
+			// file is not visible for others yet, so its lock is not taken
+			writeBlock(index, data);
+			fd.addBlock(index);
+			fd.setSymlink(symlink);
+			int message = addLink(parent, name, fd);
+			if (symlink) {
+				invalidate(parentPath, truncate(name), 0);
+				journal(Journal.SYMLINK, parent.getUid(), data, name, 
+					fd.getUid());
+			} else {
+				journal(Journal.CREATE, parent.getUid(), name, null, 
+					fd.getUid());
+			}
+			return message;
+		} finally {
+			locks.unlockExclusive(parent.getUid());
+		}
+	}
+	
+	private int makeDirectory(String path) {
+		FileDescriptor parent = lookupParent(path);
+		if (parent == null) {
+			return NO_SUCH_FILE;
+		}
+		locks.lockExclusive(parent.getUid());
+		try {
+			if (parent.isNoHardLinksCount()) {
+				return NO_SUCH_FILE;
+			}
+			if (parent.getEntries().contains(truncate(lastName(path)))) {
+				return FILE_EXISTS;
+			}
+			FileDescriptor fd = createDescriptor(true);
+			if (fd == null) {
+				return FileDescriptor.WRONG_DESCRIPTOR;
+			}
+			int message = addLink(parent, lastName(path), fd);
+			journal(Journal.MKDIR, parent.getUid(), lastName(path), null, 
+				fd.getUid());
+			return message;
+		} finally {
+			locks.unlockExclusive(parent.getUid());
+		}
+	}
+	
+	private int linkFile(String existing, String path) {
+		FileDescriptor fd = lookup(existing);
+		if (fd == null) {
+			return NO_SUCH_FILE;
+		}
+		return linkFile(fd, path);
+	}
+	
+	private int linkFile(FileDescriptor fd, String path) {
+		if (fd.isDirectory()) {
+			return WRONG_TYPE;
+		}
+		FileDescriptor parent = lookupParent(path);
+		if (parent == null) {
+			return NO_SUCH_FILE;
+		}
+		String parentPath = getName(parent);
+		String name = lastName(path);
+		locks.lockExclusive(parent.getUid(), fd.getUid());
+		try {
+			if (parent.isNoHardLinksCount() || fd.isNoHardLinksCount()) {
+				return NO_SUCH_FILE;
+			}
+			if (parent.getEntries().contains(truncate(name))) {
+				return FILE_EXISTS;
+			}
+			preserve(fd);
+			if (!fd.incrementHardLinksCount()) {
+				return TOO_MANY_LINKS;
+			}
+			markDirty(fd);
+			int message = addLink(parent, name, fd);
+			invalidate(parentPath, truncate(name), fd.getUid());
+			journal(Journal.LINK, parent.getUid(), name, null, fd.getUid());
+			return message;
+		} finally {
+			locks.unlockExclusive(parent.getUid(), fd.getUid());
+		}
+	}
+	
+	private int unlinkFile(String path) {
+		FileDescriptor parent = lookupParent(path);
+		if (parent == null) {
+			return NO_SUCH_FILE;
+		}
+		String parentPath = getName(parent);
+		String name = truncate(lastName(path));
+		while (true) {
+			long uid;
+			locks.lockShared(parent.getUid());
+			try {
+				uid = parent.getEntries().get(name);
+			} finally {
+				locks.unlockShared(parent.getUid());
+			}
+			if (uid == NameTree.ABSENT) {
+				return NO_SUCH_FILE;
+			}
+			locks.lockExclusive(parent.getUid(), uid);
+			try {
+				// name was changed, while file was not locked
+				if (parent.getEntries().get(name) != uid) {
+					continue;
+				}
+				FileDescriptor fd = getFileDescriptor(uid);
+				if (fd == null) {
+					return NO_SUCH_FILE;
+				}
+				if (fd.isDirectory()) {
+					return WRONG_TYPE;
+				}
+				removeLink(parent, name);
+				invalidate(parentPath, name, uid);
+				preserve(fd);
+				fd.decrementHardLinksCount();
+				markDirty(fd);
+				if (fd.isNoHardLinksCount()) {
+					truncateBlocks(fd, 0);
+					// handles of removed file can not read or write it
+					if (fd.resetOpenCount() > 0) {
+						openedCount.decrementAndGet();
+						dirtyOpened = true;
+					}
+					removeDescriptor(fd);
+				}
+				journal(Journal.UNLINK, parent.getUid(), name, null, uid);
+				return 0;
+			} finally {
+				locks.unlockExclusive(parent.getUid(), uid);
+			}
+		}
+	}
+	
+	private int removeDirectory(String path) {
+		FileDescriptor fd = lookup(path);
+		if (fd == null) {
+			return NO_SUCH_FILE;
+		}
+		if (fd.isFile()) {
+			return WRONG_TYPE;
+		}
+		if (fd.equals(root) || fd.equals(currentDirectory)) {
+			return BUSY;
+		}
+		FileDescriptor parent = getFileDescriptor(fd.getParent());
+		// parent was removed after lookup
+		if (parent == null) {
+			return NO_SUCH_FILE;
+		}
+		String parentPath = getName(parent);
+		locks.lockExclusive(parent.getUid(), fd.getUid());
+		try {
+			if (fd.isNoHardLinksCount()) {
+				return NO_SUCH_FILE;
+			}
+			if (!fd.isEmpty()) {
+				return NOT_EMPTY;
+			}
+			String name = parent.getEntries().findName(fd.getUid());
+			removeLink(parent, name);
+			invalidate(parentPath, name, fd.getUid());
+			// directory is marked as removed for operations, which have 
+			// found it already
+			preserve(fd);
+			fd.decrementHardLinksCount();
+			removeDescriptor(fd);
+			journal(Journal.RMDIR, parent.getUid(), name, null, 
+				fd.getUid());
+			return 0;
+		} finally {
+			locks.unlockExclusive(parent.getUid(), fd.getUid());
+		}
+	}
+	
+	private int resizeFile(FileDescriptor fd, int count) {
+		if (fd.isNoHardLinksCount()) {
+			return WRONG_BLOCK;
+		}
+		if (count > fd.blocksCount()) {
+			preserve(fd);
+			fd.getBlocks().resize(count);
+			markDirty(fd);
+		} else {
+			truncateBlocks(fd, count);
+		}
+		journal(Journal.RESIZE, fd.getUid(), count, null);
+		return 0;
+	}
+	
+	// allocates blocks for holes in specified range of file, which is 
+	// extended, if it is needed, change is not journaled
+	private int fillHoles(FileDescriptor fd, int from, int to) {
+		BlockMap map = fd.getBlocks();
+		int holes = 0;
+		for (int i = from; i < to; i++) {
+			if (i >= map.size() || map.get(i) == BlockMap.NO_BLOCK) {
+				holes++;
+			}
+		}
+		if (holes == 0) {
+			return 0;
+		}
+		// nothing is allocated, if there are not enough free blocks
+		int[] added = allocateBlocks(holes);
+		if (added.length == 0) {
+			return WRONG_BLOCK;
+		}
+		int next = 0;
+		for (int i = from; i < to; i++) {
+			if (i >= map.size() || map.get(i) == BlockMap.NO_BLOCK) {
+				map.set(i, added[next++]);
+			}
+		}
+		markDirty(fd);
+		return 0;
+	}
+	
+	// copies descriptor for snapshots, which have not copied it yet, caller 
+	// should hold exclusive lock of descriptor
+	private void preserve(FileDescriptor fd) {
+		for (Snapshot snapshot: snapshots) {
+			if (snapshot.preserve(fd)) {
+				// blocks of descriptor are shared with snapshot
+				BlockMap map = fd.getBlocks();
+				synchronized (metadata) {
+					for (int i = 0; i < map.extentsCount(); i++) {
+						int start = map.extentStart(i);
+						for (int j = 0; j < map.extentLength(i); j++) {
+							refs.retain(start + j);
+						}
+					}
+					dirtyRefs = true;
+				}
+			}
+		}
+	}
+	
+	// moves shared blocks in specified range of file to new blocks with
+	// same data, so they can be written, others are removed from index of
+	// fingerprints, change is not journaled
+	private int copyShared(FileDescriptor fd, int from, int to) {
+		BlockMap map = fd.getBlocks();
+		to = Math.min(to, map.size());
+		int shared = 0;
+		// block, which is found in index, is shared or is not written yet
+		synchronized (metadata) {
+			if (refs.sharedCount() == 0 && fingerprints.size() == 0) {
+				return 0;
+			}
+			for (int i = from; i < to; i++) {
+				int index = map.get(i);
+				if (index == BlockMap.NO_BLOCK) {
+					continue;
+				}
+				if (refs.isShared(index)) {
+					shared++;
+				} else {
+					fingerprints.remove(index);
+				}
+			}
 		}
+		if (shared == 0) {
+			return 0;
+		}
+		// nothing is copied, if there are not enough free blocks
+		int[] added = allocateBlocks(shared);
+		if (added.length == 0) {
+			return WRONG_BLOCK;
+		}
+		ByteBuffer data = ByteBuffer.allocate(device.blockSize());
+		int next = 0;
+		for (int i = from; i < to; i++) {
+			int index = map.get(i);
+			boolean copied;
+			synchronized (metadata) {
+				copied = index != BlockMap.NO_BLOCK && refs.isShared(index);
+			}
+			if (copied) {
+				int copy = added[next++];
+				data.clear();
+				blocks().read(index, 0, data);
+				data.flip();
+				blocks().write(copy, 0, data);
+				map.unmap(i);
+				map.set(i, copy);
+				freeBlock(index);
+			}
+		}
+		// blocks, which stopped being shared after they were counted
+		for (int i = next; i < added.length; i++) {
+			freeBlock(added[i]);
+		}
+		markDirty(fd);
 		return 0;
 	}
 	
-	public void removeLink(String name) {
-		if (name.equals(ROOT)) {
+	// starts read in advance of blocks, which follow sequential reads of 
+	// file, caller should hold lock of file
+	private void readAhead(OpenFile file, int first, int last) {
+		if (!blocks().canPrefetch()) {
+			return;
+		}
+		int[] window = file.getReadAhead().advance(first, last);
+		if (window == null) {
 			return;
 		}
-		links.remove(name);
+		// blocks are read by contiguous runs of block map
+		BlockMap map = file.getFileDescriptor().getBlocks();
+		int from = window[0];
+		int to = Math.min(window[1], map.size());
+		final List<int[]> runs = new ArrayList<int[]>();
+		for (int i = from < to ? map.nextExtent(from) : map.extentsCount(); 
+				i < map.extentsCount() && map.extentOffset(i) < to; i++) {
+			int start = Math.max(from, map.extentOffset(i));
+			int end = Math.min(to, map.extentOffset(i) + map.extentLength(i));
+			runs.add(new int[] {map.extentStart(i) + start - 
+				map.extentOffset(i), end - start});
+		}
+		if (runs.isEmpty()) {
+			return;
+		}
+		prefetcher().execute(new Runnable() {
+			
+			@Override
+			public void run() {
+				enter();
+				try {
+					for (int[] run: runs) {
+						blocks().prefetch(run[0], run[1]);
+					}
+				} catch (RuntimeException e) {
+					// block, which was not read in advance, is read again
+					// by file read, which reports error
+				} finally {
+					leave();
+				}
+			}
+		});
 	}
 	
-	public int linksCount() {
-		return links.size();
+	private ExecutorService prefetcher() {
+		synchronized (metadata) {
+			if (prefetcher == null) {
+				prefetcher = new ThreadPoolExecutor(PREFETCH_THREADS, 
+					PREFETCH_THREADS, 0, TimeUnit.MILLISECONDS, 
+					new ArrayBlockingQueue<Runnable>(PREFETCH_QUEUE_SIZE), 
+					new ThreadFactory() {
+						
+						@Override
+						public Thread newThread(Runnable task) {
+							Thread thread = new Thread(task, "prefetch");
+							thread.setDaemon(true);
+							return thread;
+						}
+					}, new ThreadPoolExecutor.DiscardPolicy());
+			}
+			return prefetcher;
+		}
 	}
 	
-	public FileDescriptor getFileDescriptor(long uid) {
-		Collection<FileDescriptor> descriptors = links.values();
-		for (FileDescriptor fd: descriptors) {
-			if (fd.getUid() == uid) {
-				return fd;
+	// shares written blocks in specified range of file with used blocks, 
+	// which have same data, and frees blocks of zeros, change is not 
+	// journaled
+	private void deduplicate(FileDescriptor fd, int from, int to) {
+		if (!deduplicated) {
+			return;
+		}
+		BlockMap map = fd.getBlocks();
+		to = Math.min(to, map.size());
+		ByteBuffer data = ByteBuffer.allocate(device.blockSize());
+		ByteBuffer other = ByteBuffer.allocate(device.blockSize());
+		boolean changed = false;
+		for (int i = from; i < to; i++) {
+			int index = map.get(i);
+			if (index == BlockMap.NO_BLOCK) {
+				continue;
+			}
+			data.clear();
+			blocks().read(index, 0, data);
+			data.flip();
+			int found = BlockMap.NO_BLOCK;
+			if (!isZeros(data)) {
+				long fingerprint = BlockIndex.fingerprint(data);
+				synchronized (metadata) {
+					found = fingerprints.find(fingerprint);
+					if (found != BlockMap.NO_BLOCK && found != index) {
+						other.clear();
+						blocks().read(found, 0, other);
+						other.flip();
+					}
+					if (found == BlockMap.NO_BLOCK || found == index ||
+						!data.equals(other)) {
+						fingerprints.put(index, fingerprint);
+						continue;
+					}
+					refs.retain(found);
+					dirtyRefs = true;
+					deduplicatedCount++;
+				}
+			} else {
+				synchronized (metadata) {
+					deduplicatedCount++;
+				}
 			}
+			map.unmap(i);
+			if (found != BlockMap.NO_BLOCK) {
+				map.set(i, found);
+			}
+			freeBlock(index);
+			changed = true;
+		}
+		if (changed) {
+			markDirty(fd);
 		}
-		return null;
 	}
-
-	public FileDescriptor getFileDescriptor(String filename) {
-		return links.get(filename);
+	
+	private static boolean isZeros(ByteBuffer data) {
+		for (int i = data.position(); i < data.limit(); i++) {
+			if (data.get(i) != 0) {
+				return false;
+			}
+		}
+		return true;
 	}
 	
-	public String getName(FileDescriptor fd) {
-		Set<String> keys = links.keySet();
-		for (String key: keys) {
-			if (links.get(key).getUid() == fd.getUid()) {
-				return key;
+	private static long remaining(ByteBuffer[] buffers) {
+		long remaining = 0;
+		for (ByteBuffer buffer: buffers) {
+			remaining += buffer.remaining();
+		}
+		return remaining;
+	}
+	
+	// finds directory, which should contain last name of path
+	private FileDescriptor lookupParent(String path) {
+		if (lastName(path).isEmpty() || lastName(path).equals(CURRENT) ||
+			lastName(path).equals(PARENT)) {
+			return null;
+		}
+		String trimmed = trimDividers(path);
+		int lastIndex = trimmed.lastIndexOf(DIVIDER);
+		FileDescriptor parent;
+		if (lastIndex < 0) {
+			parent = currentDirectory;
+		} else if (lastIndex == 0) {
+			parent = root;
+		} else {
+			parent = resolve(trimmed.substring(0, lastIndex));
+		}
+		return parent != null && parent.isDirectory() ? parent : null;
+	}
+	
+	private static String lastName(String path) {
+		String trimmed = trimDividers(path);
+		return trimmed.substring(trimmed.lastIndexOf(DIVIDER) + 1);
+	}
+	
+	// removes dividers from the end of path, but not from root
+	private static String trimDividers(String path) {
+		int end = path.length();
+		while (end > 1 && path.startsWith(DIVIDER, end - 1)) {
+			end--;
+		}
+		return path.substring(0, end);
+	}
+	
+	public void close() throws IOException {
+		// snapshots wait for their writes, which need volume
+		for (Snapshot snapshot: snapshots) {
+			snapshot.release();
+		}
+		// reads in advance wait for volume, so they are stopped before it
+		ExecutorService stopped;
+		synchronized (metadata) {
+			stopped = prefetcher;
+			prefetcher = null;
+		}
+		if (stopped != null) {
+			stopped.shutdownNow();
+			try {
+				stopped.awaitTermination(1, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
 			}
 		}
-		return null;
+		volumeLock.writeLock().lock();
+		try {
+			if (journal != null) {
+				journal.close();
+			}
+			if (buffers != null) {
+				buffers.release();
+			}
+			device.close();
+			if (image != null) {
+				image.close();
+			}
+		} finally {
+			volumeLock.writeLock().unlock();
+		}
 	}
 	
-	public FileDescriptor getCurrentDirectory() {
-		return currentDirectory;
+	private Object readResolve() {
+		cache = new DentryCache();
+		stats = new FileSystemStats(this);
+		batched = new ThreadLocal<Boolean>();
+		volumeLock = new ReentrantReadWriteLock();
+		locks = new InodeLocks();
+		metadata = new Object();
+		dirtyBlocks = new BitSet();
+		dirtyDescriptors = new HashSet<Long>();
+		snapshots = new CopyOnWriteArrayList<Snapshot>();
+		nextSnapshotId = 1;
+		fingerprints = new BlockIndex();
+		// volumes, saved before blocks were shared
+		if (refs == null) {
+			refs = new BlockRefs();
+		}
+		// volumes, saved before bitmap and devices were added
+		if (device == null) {
+			device = new HeapBlockDevice(blocks);
+			allocator = new BlockAllocator(blocks.length);
+			for (int i = 0; i < blocks.length; i++) {
+				if (blocks[i].isUsed()) {
+					allocator.markUsed(i);
+				}
+			}
+			blocks = null;
+		}
+		// volumes, saved before blocks were kept as bytes
+		if (device instanceof HeapBlockDevice) {
+			device = copyToSlab(device, allocator);
+		}
+		// volumes, saved before geometry was added, get default limits
+		if (geometry == null) {
+			geometry = new Geometry(device);
+		}
+		// volumes, saved before inode table was added
+		if (inodes == null) {
+			inodes = new InodeTable();
+			for (FileDescriptor fd: links.values()) {
+				inodes.put(fd);
+				nextUid = Math.max(nextUid, fd.getUid() + 1);
+			}
+		}
+		descriptorsCount = inodes.size();
+		// volumes, saved before open counts were added
+		if (opened != null) {
+			for (long uid: opened) {
+				FileDescriptor fd = inodes.get(uid);
+				if (fd != null && !fd.isOpened()) {
+					fd.incrementOpenCount();
+				}
+			}
+			opened = null;
+		}
+		openedCount = new AtomicInteger();
+		for (FileDescriptor fd: inodes.values()) {
+			if (fd.isOpened()) {
+				openedCount.incrementAndGet();
+			}
+		}
+		// volumes, saved before directory tree was added
+		if (links != null) {
+			migrateLinks();
+			links = null;
+		}
+		return this;
 	}
 	
-	public void setCurrentDirectory(FileDescriptor currentDirectory) {
-		if (currentDirectory == null) {
-			currentDirectory = root;
+	// directories of old volumes keep names of their files in blocks
+	private void migrateLinks() {
+		linksCount = links.size();
+		root.setParent(root.getUid());
+		Set<Long> found = new HashSet<Long>();
+		found.add(root.getUid());
+		migrateDirectory(root, found);
+		// files, which are not found from root, are placed to root
+		for (Map.Entry<String, FileDescriptor> entry: links.entrySet()) {
+			FileDescriptor fd = entry.getValue();
+			String name = lastName(entry.getKey());
+			if (!found.contains(fd.getUid()) && !name.isEmpty() &&
+				!root.getEntries().contains(truncate(name))) {
+				root.getEntries().put(truncate(name), fd.getUid());
+				fd.setParent(root.getUid());
+				found.add(fd.getUid());
+				if (fd.isDirectory()) {
+					migrateDirectory(fd, found);
+				}
+			}
 		}
-		this.currentDirectory = currentDirectory;
 	}
 	
-	public String truncate(String name) {
-		if (name.length() > MAX_FILE_NAME_SIZE) {
-			name = name.substring(0, MAX_FILE_NAME_SIZE);
+	private void migrateDirectory(FileDescriptor directory, Set<Long> found) {
+		int[] numbers = directory.getBlocks().toArray();
+		String[] keys = new String[numbers.length];
+		for (int i = 0; i < numbers.length; i++) {
+			keys[i] = blocks().read(numbers[i]);
+		}
+		truncateBlocks(directory, 0);
+		for (String key: keys) {
+			FileDescriptor fd = key == null ? null : links.get(key);
+			if (fd == null || lastName(key).isEmpty()) {
+				continue;
+			}
+			String name = truncate(lastName(key));
+			if (directory.getEntries().contains(name)) {
+				continue;
+			}
+			directory.getEntries().put(name, fd.getUid());
+			if (fd.getParent() == 0) {
+				fd.setParent(directory.getUid());
+			}
+			if (found.add(fd.getUid()) && fd.isDirectory()) {
+				migrateDirectory(fd, found);
+			}
 		}
-		return name;
 	}
 	
 	public static FileSystem read(String pathName) throws Exception {
 		if (pathName == null || pathName.isEmpty()) {
 			throw new IllegalArgumentException("Wrong pathname!");
 		}
+		long start = System.nanoTime();
+		PersistenceEvent event = Events.beginPersistence();
 		ObjectInputStream is = 
 			new ObjectInputStream(new FileInputStream(pathName));
 		FileSystem fs = (FileSystem) is.readObject();
 		is.close();
+		Events.commit(event, Operation.READ_SERIALIZED, "deserialize", 
+			pathName, -1, fs);
+		fs.stats.record(Operation.READ_SERIALIZED, start);
 		return fs;
 	}
 	
@@ -177,19 +2583,131 @@ public class FileSystem implements Serializable {
 		if (pathName == null || pathName.isEmpty()) {
 			throw new IllegalArgumentException("Wrong pathname!");
 		}
-		ObjectOutputStream os = 
-			new ObjectOutputStream(new FileOutputStream(pathName));
-		os.writeObject(fs);
-		os.flush();
-		os.close();
+		long start = System.nanoTime();
+		fs.volumeLock.writeLock().lock();
+		try {
+			PersistenceEvent event = Events.beginPersistence();
+			fs.loadAll();
+			Events.commit(event, Operation.WRITE_SERIALIZED, "load", pathName, 
+				0, fs);
+			event = Events.beginPersistence();
+			fs.writeBack();
+			Events.commit(event, Operation.WRITE_SERIALIZED, "write back", 
+				pathName, 0, fs);
+			event = Events.beginPersistence();
+			ObjectOutputStream os = 
+				new ObjectOutputStream(new FileOutputStream(pathName));
+			os.writeObject(fs);
+			os.flush();
+			os.close();
+			Events.commit(event, Operation.WRITE_SERIALIZED, "serialize", 
+				pathName, -1, fs);
+		} finally {
+			fs.volumeLock.writeLock().unlock();
+			fs.stats.record(Operation.WRITE_SERIALIZED, start);
+		}
+	}
+	
+	public static FileSystem readImage(String pathName) throws Exception {
+		return readImage(pathName, false);
+	}
+	
+	/**
+	 * Reads binary image. Blocks and descriptors of lazily read volume are
+	 * read from image on first access.
+	 */
+	public static FileSystem readImage(String pathName, boolean lazy) 
+			throws Exception {
+		if (pathName == null || pathName.isEmpty()) {
+			throw new IllegalArgumentException("Wrong pathname!");
+		}
+		long start = System.nanoTime();
+		PersistenceEvent event = Events.beginPersistence();
+		FileSystem fs = VolumeImage.read(pathName, lazy);
+		Events.commit(event, Operation.READ_IMAGE, "read", pathName, -1, fs);
+		event = Events.beginPersistence();
+		Journal journal = new Journal(pathName + JOURNAL_EXTENSION);
+		int replayed;
+		try {
+			replayed = journal.replay(fs);
+		} catch (IOException e) {
+			journal.close();
+			throw e;
+		}
+		Events.commit(event, Operation.READ_IMAGE, "replay", 
+			journal.getPathName(), new File(journal.getPathName()).length(), 
+			replayed);
+		fs.journal = journal;
+		fs.stats.record(Operation.READ_IMAGE, start);
+		return fs;
+	}
+	
+	public static void writeImage(FileSystem fs, String pathName) 
+			throws Exception {
+		if (pathName == null || pathName.isEmpty()) {
+			throw new IllegalArgumentException("Wrong pathname!");
+		}
+		long start = System.nanoTime();
+		fs.volumeLock.writeLock().lock();
+		try {
+			PersistenceEvent event = Events.beginPersistence();
+			fs.writeBack();
+			Events.commit(event, Operation.WRITE_IMAGE, "write back", 
+				pathName, 0, fs);
+			event = Events.beginPersistence();
+			VolumeImage.write(fs, pathName);
+			Events.commit(event, Operation.WRITE_IMAGE, "write", pathName, -1, 
+				fs);
+			event = Events.beginPersistence();
+			fs.clearJournal(pathName);
+			Events.commit(event, Operation.WRITE_IMAGE, "clear journal", 
+				pathName + JOURNAL_EXTENSION, 0, 0);
+		} finally {
+			fs.volumeLock.writeLock().unlock();
+			fs.stats.record(Operation.WRITE_IMAGE, start);
+		}
+	}
+	
+	/**
+	 * Saves only changes since last checkpoint, if image was read or written
+	 * by this file system, or whole image otherwise.
+	 */
+	public static void checkpoint(FileSystem fs, String pathName) 
+			throws Exception {
+		if (pathName == null || pathName.isEmpty()) {
+			throw new IllegalArgumentException("Wrong pathname!");
+		}
+		long start = System.nanoTime();
+		fs.volumeLock.writeLock().lock();
+		try {
+			PersistenceEvent event = Events.beginPersistence();
+			fs.writeBack();
+			Events.commit(event, Operation.CHECKPOINT, "write back", 
+				pathName, 0, fs);
+			event = Events.beginPersistence();
+			VolumeImage.checkpoint(fs, pathName);
+			Events.commit(event, Operation.CHECKPOINT, "write", pathName, -1, 
+				fs);
+			event = Events.beginPersistence();
+			fs.clearJournal(pathName);
+			Events.commit(event, Operation.CHECKPOINT, "clear journal", 
+				pathName + JOURNAL_EXTENSION, 0, 0);
+		} finally {
+			fs.volumeLock.writeLock().unlock();
+			fs.stats.record(Operation.CHECKPOINT, start);
+		}
 	}
 	
 	public static FileSystem readXML(String pathName) throws Exception {
 		if (pathName == null || pathName.isEmpty()) {
 			throw new IllegalArgumentException("Wrong pathname!");
 		}
+		long start = System.nanoTime();
+		PersistenceEvent event = Events.beginPersistence();
 		XStream xml = new XStream();
 		FileSystem fs = (FileSystem) xml.fromXML(new File(pathName));
+		Events.commit(event, Operation.READ_XML, "parse", pathName, -1, fs);
+		fs.stats.record(Operation.READ_XML, start);
 		return fs;
 	}
 	
@@ -197,11 +2715,31 @@ public class FileSystem implements Serializable {
 		if (pathName == null || pathName.isEmpty()) {
 			throw new IllegalArgumentException("Wrong pathname!");
 		}
-		XStream xml = new XStream();
-		String data = xml.toXML(fs);
+		long start = System.nanoTime();
+		String data;
+		fs.volumeLock.writeLock().lock();
+		try {
+			PersistenceEvent event = Events.beginPersistence();
+			fs.loadAll();
+			Events.commit(event, Operation.WRITE_XML, "load", pathName, 0, fs);
+			event = Events.beginPersistence();
+			fs.writeBack();
+			Events.commit(event, Operation.WRITE_XML, "write back", pathName, 
+				0, fs);
+			event = Events.beginPersistence();
+			XStream xml = new XStream();
+			data = xml.toXML(fs);
+			Events.commit(event, Operation.WRITE_XML, "serialize", pathName, 
+				2L*data.length(), fs);
+		} finally {
+			fs.volumeLock.writeLock().unlock();
+		}
+		PersistenceEvent event = Events.beginPersistence();
 		FileOutputStream os = new FileOutputStream(pathName);
 		os.write(data.getBytes());
 		os.flush();
 		os.close();
+		Events.commit(event, Operation.WRITE_XML, "write", pathName, -1, fs);
+		fs.stats.record(Operation.WRITE_XML, start);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,129 @@
+package filesystem;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class for statistics of file system: latencies of its operations,
+ * counters of allocated and freed blocks and of read and written bytes and
+ * current space and count of opened files. Operations are recorded without
+ * locks and allocation of objects.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public class FileSystemStats extends Metrics implements FileSystemStatsMXBean {
+
+	// type of registered bean
+	public static final transient String TYPE = "FileSystem";
+
+	private final FileSystem fs;
+
+	private final AtomicLong blocksAllocated = new AtomicLong();
+
+	private final AtomicLong blocksFreed = new AtomicLong();
+
+	private final AtomicLong bytesRead = new AtomicLong();
+
+	private final AtomicLong bytesWritten = new AtomicLong();
+
+	FileSystemStats(FileSystem fs) {
+		super(Operation.names());
+		this.fs = fs;
+	}
+
+	public void record(Operation operation, long start) {
+		record(operation.ordinal(), start);
+	}
+
+	public LatencyHistogram getHistogram(Operation operation) {
+		return getHistogram(operation.ordinal());
+	}
+
+	void allocated(int count) {
+		blocksAllocated.addAndGet(count);
+	}
+
+	void freed(int count) {
+		blocksFreed.addAndGet(count);
+	}
+
+	void read(long bytes) {
+		if (bytes > 0) {
+			bytesRead.addAndGet(bytes);
+		}
+	}
+
+	void written(long bytes) {
+		if (bytes > 0) {
+			bytesWritten.addAndGet(bytes);
+		}
+	}
+
+	@Override
+	public long getBlocksAllocated() {
+		return blocksAllocated.get();
+	}
+
+	@Override
+	public long getBlocksFreed() {
+		return blocksFreed.get();
+	}
+
+	@Override
+	public int getFreeBlocksCount() {
+		return fs.freeBlocksCount();
+	}
+
+	@Override
+	public int getBlocksCount() {
+		return fs.getDevice().blocksCount();
+	}
+
+	@Override
+	public long getBytesRead() {
+		return bytesRead.get();
+	}
+
+	@Override
+	public long getBytesWritten() {
+		return bytesWritten.get();
+	}
+
+	@Override
+	public int getOpenedFilesCount() {
+		return fs.openedCount();
+	}
+
+	@Override
+	public int getDescriptorsCount() {
+		return fs.descriptorsCount();
+	}
+
+	@Override
+	public int getLinksCount() {
+		return fs.linksCount();
+	}
+
+	@Override
+	public void reset() {
+		super.reset();
+		blocksAllocated.set(0);
+		blocksFreed.set(0);
+		bytesRead.set(0);
+		bytesWritten.set(0);
+	}
+
+	@Override
+	protected Class<?> mxBeanInterface() {
+		return FileSystemStatsMXBean.class;
+	}
+
+	@Override
+	public String toString() {
+		return super.toString() + getBlocksAllocated() + " blocks " +
+			"allocated, " + getBlocksFreed() + " freed, " +
+			getFreeBlocksCount() + " of " + getBlocksCount() + " are free, " +
+			getBytesRead() + " bytes read, " + getBytesWritten() +
+			" written, " + getOpenedFilesCount() + " files opened";
+	}
+}
@@ -0,0 +1,31 @@
+package filesystem;
+
+/**
+ * Interface for JMX view of statistics of file system.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public interface FileSystemStatsMXBean extends MetricsMXBean {
+
+	long getBlocksAllocated();
+
+	long getBlocksFreed();
+
+	int getFreeBlocksCount();
+
+	int getBlocksCount();
+
+	long getBytesRead();
+
+	long getBytesWritten();
+
+	/**
+	 * @return count of files, which are opened at least once
+	 */
+	int getOpenedFilesCount();
+
+	int getDescriptorsCount();
+
+	int getLinksCount();
+}
@@ -0,0 +1,156 @@
+package filesystem;
+
+import java.io.Serializable;
+
+/**
+ * Class for geometry of volume: count and size of its blocks, maximum count
+ * of descriptors and maximum count of blocks in one file. Geometry is set,
+ * when volume is created, and is saved with it, so limits of volume do not
+ * depend on code, which mounts it.
+ * <p>
+ * Blocks are numbered by int, so volume has less than 2^31 blocks, and
+ * their bytes are addressed by long offsets, so device can have many GB.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public final class Geometry implements Serializable {
+
+	private static final long serialVersionUID = 3630950432571683119L;
+
+	// count of blocks of volume, which is created without device
+	public static final transient int DEFAULT_BLOCKS_COUNT = 65536;
+
+	// maximum blocks count in file of volumes, created without geometry
+	// block (1 KB) * maximum blocks count (1024) = maximum file size (1 MB)
+	public static final transient int DEFAULT_FILE_BLOCKS = 1024;
+
+	public static final transient int MAX_BLOCKS_COUNT = Integer.MAX_VALUE;
+
+	// logical blocks of file are numbered by int too
+	public static final transient int MAX_FILE_BLOCKS = Integer.MAX_VALUE;
+
+	private final int blocksCount;
+
+	// size of block in bytes
+	private final int blockSize;
+
+	// maximum count of descriptors, including root
+	private final int descriptorsCount;
+
+	// maximum count of blocks in file with holes
+	private final int fileBlocks;
+
+	public Geometry(int blocksCount, int blockSize, int descriptorsCount,
+			int fileBlocks) {
+		if (blocksCount <= 0) {
+			throw new IllegalArgumentException("Wrong blocks count!");
+		}
+		if (blockSize <= 0 || blockSize % 2 != 0) {
+			throw new IllegalArgumentException("Wrong block size!");
+		}
+		if (descriptorsCount <= 0) {
+			throw new IllegalArgumentException("Wrong descriptors count!");
+		}
+		if (fileBlocks <= 0) {
+			throw new IllegalArgumentException("Wrong file blocks count!");
+		}
+		this.blocksCount = blocksCount;
+		this.blockSize = blockSize;
+		this.descriptorsCount = descriptorsCount;
+		this.fileBlocks = fileBlocks;
+	}
+
+	/**
+	 * Creates geometry of device with default limits: one descriptor for
+	 * each block, because file takes one block as minimum, and maximum file
+	 * of {@link #DEFAULT_FILE_BLOCKS}.
+	 */
+	public Geometry(BlockDevice device) {
+		this(device.blocksCount(), device.blockSize(), device.blocksCount(),
+			DEFAULT_FILE_BLOCKS);
+	}
+
+	/**
+	 * Creates geometry with maximum file size in bytes, which is rounded
+	 * up to whole blocks.
+	 */
+	public static Geometry withFileSize(int blocksCount, int blockSize,
+			int descriptorsCount, long fileSize) {
+		if (blockSize <= 0 || fileSize <= 0 ||
+			(fileSize + blockSize - 1)/blockSize > MAX_FILE_BLOCKS) {
+			throw new IllegalArgumentException("Wrong file size!");
+		}
+		return new Geometry(blocksCount, blockSize, descriptorsCount,
+			(int) ((fileSize + blockSize - 1)/blockSize));
+	}
+
+	public int getBlocksCount() {
+		return blocksCount;
+	}
+
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	public int getDescriptorsCount() {
+		return descriptorsCount;
+	}
+
+	public int getFileBlocks() {
+		return fileBlocks;
+	}
+
+	/**
+	 * @return maximum file size in bytes
+	 */
+	public long getMaxFileSize() {
+		return (long) fileBlocks*blockSize;
+	}
+
+	/**
+	 * @return size of device in bytes
+	 */
+	public long getDeviceSize() {
+		return (long) blocksCount*blockSize;
+	}
+
+	/**
+	 * @return true, if geometry has count and size of blocks of device
+	 */
+	public boolean fits(BlockDevice device) {
+		return device.blocksCount() == blocksCount &&
+			device.blockSize() == blockSize;
+	}
+
+	@Override
+	public int hashCode() {
+		int result = 7;
+		result = 37*result + blocksCount;
+		result = 37*result + blockSize;
+		result = 37*result + descriptorsCount;
+		return 37*result + fileBlocks;
+	}
+
+	@Override
+	public boolean equals(Object object) {
+		if (object == this) {
+			return true;
+		}
+		if (object instanceof Geometry) {
+			Geometry casted = (Geometry) object;
+			return blocksCount == casted.blocksCount &&
+				blockSize == casted.blockSize &&
+				descriptorsCount == casted.descriptorsCount &&
+				fileBlocks == casted.fileBlocks;
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return blocksCount + " blocks of " + blockSize + " bytes, " +
+			descriptorsCount + " descriptors and files of " + fileBlocks +
+			" blocks";
+	}
+}
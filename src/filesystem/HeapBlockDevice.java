@@ -0,0 +1,75 @@
+package filesystem;
+
+import java.io.Serializable;
+
+/**
+ * Class for device, which keeps all blocks in memory. Block object is
+ * created on first write and dropped, when block is cleared. Volumes keep
+ * blocks in {@link SlabBlockDevice}, this device is left for volumes, which
+ * were saved before, and is replaced, when they are read.
+ * 
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public class HeapBlockDevice implements BlockDevice, Serializable {
+
+	private static final long serialVersionUID = -2361489637126853367L;
+	
+	private DataBlock[] blocks;
+	
+	public HeapBlockDevice(int blocksCount) {
+		if (blocksCount <= 0) {
+			throw new IllegalArgumentException("Wrong blocks count!");
+		}
+		blocks = new DataBlock[blocksCount];
+	}
+	
+	public HeapBlockDevice(DataBlock[] blocks) {
+		if (blocks == null || blocks.length == 0) {
+			throw new IllegalArgumentException("Wrong blocks!");
+		}
+		this.blocks = blocks;
+	}
+	
+	@Override
+	public int blocksCount() {
+		return blocks.length;
+	}
+	
+	public DataBlock getBlock(int index) {
+		checkIndex(index);
+		if (blocks[index] == null) {
+			blocks[index] = new DataBlock();
+		}
+		return blocks[index];
+	}
+	
+	@Override
+	public String read(int index) {
+		checkIndex(index);
+		return blocks[index] == null ? null : blocks[index].toString();
+	}
+	
+	@Override
+	public int write(int index, String data) {
+		return getBlock(index).addData(data);
+	}
+	
+	@Override
+	public void clear(int index) {
+		checkIndex(index);
+		blocks[index] = null;
+	}
+	
+	@Override
+	public void flush() {}
+	
+	@Override
+	public void close() {}
+	
+	private void checkIndex(int index) {
+		if (index < 0 || index >= blocks.length) {
+			throw new IllegalArgumentException("Wrong index!");
+		}
+	}
+}
@@ -0,0 +1,205 @@
+package filesystem;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Class for device of lazily mounted volume. Blocks are read from image on
+ * first access and kept in cache with bounded size. Changed blocks stay in
+ * memory till checkpoint writes them to image. Device can be used by 
+ * several threads.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public class ImageBlockDevice implements BlockDevice {
+
+	public static final int DEFAULT_CACHE_SIZE = 4096;
+
+	private final int blocksCount;
+
+	private final int blockSize;
+
+	private final int cacheSize;
+
+	private VolumeImage image;
+
+	// blocks, changed since last checkpoint, null for cleared block
+	private final Map<Integer, byte[]> changed = new HashMap<Integer, byte[]>();
+
+	// blocks, read from image, in order of access
+	private final LinkedHashMap<Integer, byte[]> cache;
+
+	public ImageBlockDevice(VolumeImage image, int blocksCount, 
+			int blockSize) {
+		this(image, blocksCount, blockSize, DEFAULT_CACHE_SIZE);
+	}
+
+	public ImageBlockDevice(VolumeImage image, int blocksCount,
+			int blockSize, final int cacheSize) {
+		if (image == null) {
+			throw new IllegalArgumentException("Wrong image!");
+		}
+		if (blocksCount <= 0) {
+			throw new IllegalArgumentException("Wrong blocks count!");
+		}
+		if (cacheSize <= 0) {
+			throw new IllegalArgumentException("Wrong cache size!");
+		}
+		this.image = image;
+		this.blocksCount = blocksCount;
+		this.blockSize = blockSize;
+		this.cacheSize = cacheSize;
+		cache = new LinkedHashMap<Integer, byte[]>(16, 0.75f, true) {
+
+			private static final long serialVersionUID =
+				-3185306414592457802L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<Integer, byte[]> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	@Override
+	public int blocksCount() {
+		return blocksCount;
+	}
+
+	public int getCacheSize() {
+		return cacheSize;
+	}
+
+	@Override
+	public int blockSize() {
+		return blockSize;
+	}
+
+	@Override
+	public synchronized String read(int index) {
+		byte[] data = data(index);
+		return data == null ? null : DataBlock.decode(ByteBuffer.wrap(data));
+	}
+
+	@Override
+	public synchronized int write(int index, String data) {
+		byte[] block = new byte[blockSize];
+		int message = DataBlock.encode(data, ByteBuffer.wrap(block));
+		cache.remove(index);
+		changed.put(index, block);
+		return message;
+	}
+
+	@Override
+	public synchronized void read(int index, int offset, ByteBuffer dst) {
+		byte[] data = data(index);
+		if (data == null) {
+			while (dst.hasRemaining()) {
+				dst.put((byte) 0);
+			}
+			return;
+		}
+		dst.put(data, offset, dst.remaining());
+	}
+
+	@Override
+	public synchronized int write(int index, int offset, ByteBuffer src) {
+		byte[] data = data(index);
+		// block is changed in place, when it is changed already
+		if (data == null || !changed.containsKey(index)) {
+			data = data == null ? new byte[blockSize] : data.clone();
+			cache.remove(index);
+			changed.put(index, data);
+		}
+		src.get(data, offset, src.remaining());
+		return 0;
+	}
+
+	@Override
+	public synchronized void clear(int index) {
+		checkIndex(index);
+		cache.remove(index);
+		changed.put(index, null);
+	}
+
+	/**
+	 * Reads blocks, which are not in memory, from image to cache. Count is
+	 * limited by half of cache.
+	 */
+	@Override
+	public void prefetch(int index, int count) {
+		count = Math.min(count, Math.max(cacheSize/2, 1));
+		for (int i = index; i < index + count; i++) {
+			synchronized (this) {
+				data(i);
+			}
+		}
+	}
+
+	@Override
+	public boolean canPrefetch() {
+		return true;
+	}
+
+	/**
+	 * @return true, if image keeps blocks as compressed extents
+	 */
+	public synchronized boolean isCompressed() {
+		return image.isCompressed();
+	}
+
+	/**
+	 * Changed blocks are saved by checkpoint of image.
+	 */
+	@Override
+	public void flush() {}
+
+	/**
+	 * Image is closed by its file system.
+	 */
+	@Override
+	public synchronized void close() {
+		cache.clear();
+	}
+
+	/**
+	 * Sets image, which has all changed blocks after checkpoint.
+	 */
+	synchronized void checkpointed(VolumeImage image) {
+		if (image != this.image) {
+			this.image = image;
+			cache.clear();
+		}
+		changed.clear();
+	}
+
+	// bytes of block or null, if it was not written
+	private byte[] data(int index) {
+		checkIndex(index);
+		if (changed.containsKey(index)) {
+			return changed.get(index);
+		}
+		byte[] data = cache.get(index);
+		if (data == null && !cache.containsKey(index)) {
+			try {
+				data = image.readBlock(index);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			cache.put(index, data);
+		}
+		return data;
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= blocksCount) {
+			throw new IllegalArgumentException("Wrong index!");
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package filesystem;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Class for read-write locks of descriptors. Locks are striped: descriptor
+ * uses lock, chosen by its uid, so count of locks does not depend on count
+ * of files. Several locks are taken in order of stripes, so threads, which
+ * lock same descriptors, can not deadlock.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public class InodeLocks {
+
+	public static final int DEFAULT_STRIPES_COUNT = 256;
+
+	private final ReentrantReadWriteLock[] stripes;
+
+	public InodeLocks() {
+		this(DEFAULT_STRIPES_COUNT);
+	}
+
+	/**
+	 * @param stripesCount power of two
+	 */
+	public InodeLocks(int stripesCount) {
+		if (stripesCount <= 0 || Integer.bitCount(stripesCount) != 1) {
+			throw new IllegalArgumentException("Wrong stripes count!");
+		}
+		stripes = new ReentrantReadWriteLock[stripesCount];
+		for (int i = 0; i < stripesCount; i++) {
+			stripes[i] = new ReentrantReadWriteLock();
+		}
+	}
+
+	public void lockShared(long uid) {
+		stripes[stripe(uid)].readLock().lock();
+	}
+
+	public void unlockShared(long uid) {
+		stripes[stripe(uid)].readLock().unlock();
+	}
+
+	public void lockExclusive(long uid) {
+		stripes[stripe(uid)].writeLock().lock();
+	}
+
+	public void unlockExclusive(long uid) {
+		stripes[stripe(uid)].writeLock().unlock();
+	}
+
+	/**
+	 * Locks two descriptors, for example directory and file in it.
+	 */
+	public void lockExclusive(long first, long second) {
+		int i = stripe(first);
+		int j = stripe(second);
+		stripes[Math.min(i, j)].writeLock().lock();
+		if (i != j) {
+			stripes[Math.max(i, j)].writeLock().lock();
+		}
+	}
+
+	public void unlockExclusive(long first, long second) {
+		int i = stripe(first);
+		int j = stripe(second);
+		if (i != j) {
+			stripes[Math.max(i, j)].writeLock().unlock();
+		}
+		stripes[Math.min(i, j)].writeLock().unlock();
+	}
+
+	// uid's of new files are sequential, uid's of old ones are times
+	private int stripe(long uid) {
+		long hash = uid*0x9E3779B97F4A7C15L;
+		return (int) (hash >>> 32) & (stripes.length - 1);
+	}
+}
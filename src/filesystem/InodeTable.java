@@ -0,0 +1,134 @@
+package filesystem;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class for finding file descriptors by uid. It is open addressing hash
+ * table with primitive keys, so lookup does not depend on files count.
+ * Slots of removed descriptors are reused.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public class InodeTable implements Serializable {
+
+	private static final long serialVersionUID = 3197506426712984470L;
+
+	private static final transient int INITIAL_CAPACITY = 16;
+
+	// uid of descriptor can not be zero, so it marks free slot
+	private static final transient long FREE = 0;
+
+	private long[] keys = new long[INITIAL_CAPACITY];
+
+	private FileDescriptor[] values = new FileDescriptor[INITIAL_CAPACITY];
+
+	private int size;
+
+	public int size() {
+		return size;
+	}
+
+	public FileDescriptor get(long uid) {
+		if (uid == FREE) {
+			return null;
+		}
+		int mask = keys.length - 1;
+		for (int i = slot(uid, mask); keys[i] != FREE; i = (i + 1) & mask) {
+			if (keys[i] == uid) {
+				return values[i];
+			}
+		}
+		return null;
+	}
+
+	public FileDescriptor put(FileDescriptor fd) {
+		long uid = fd.getUid();
+		if (uid == FREE) {
+			throw new IllegalArgumentException("Wrong uid!");
+		}
+		// load factor is not more than one half
+		if ((size + 1)*2 > keys.length) {
+			resize(keys.length*2);
+		}
+		int mask = keys.length - 1;
+		int i = slot(uid, mask);
+		while (keys[i] != FREE) {
+			if (keys[i] == uid) {
+				FileDescriptor old = values[i];
+				values[i] = fd;
+				return old;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = uid;
+		values[i] = fd;
+		size++;
+		return null;
+	}
+
+	public FileDescriptor remove(long uid) {
+		if (uid == FREE) {
+			return null;
+		}
+		int mask = keys.length - 1;
+		int i = slot(uid, mask);
+		while (keys[i] != uid) {
+			if (keys[i] == FREE) {
+				return null;
+			}
+			i = (i + 1) & mask;
+		}
+		FileDescriptor old = values[i];
+		// move next keys back, so there are no holes in their chains
+		int free = i;
+		for (int j = (i + 1) & mask; keys[j] != FREE; j = (j + 1) & mask) {
+			int home = slot(keys[j], mask);
+			if (((j - home) & mask) >= ((j - free) & mask)) {
+				keys[free] = keys[j];
+				values[free] = values[j];
+				free = j;
+			}
+		}
+		keys[free] = FREE;
+		values[free] = null;
+		size--;
+		return old;
+	}
+
+	public List<FileDescriptor> values() {
+		List<FileDescriptor> list = new ArrayList<FileDescriptor>(size);
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != FREE) {
+				list.add(values[i]);
+			}
+		}
+		return list;
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		FileDescriptor[] oldValues = values;
+		keys = new long[capacity];
+		values = new FileDescriptor[capacity];
+		int mask = capacity - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != FREE) {
+				int j = slot(oldKeys[i], mask);
+				while (keys[j] != FREE) {
+					j = (j + 1) & mask;
+				}
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+
+	// uids are sequential, so their bits are mixed
+	private static int slot(long uid, int mask) {
+		long hash = uid*0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+}
@@ -0,0 +1,512 @@
+package filesystem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Class for write-ahead journal of file system operations. Each operation
+ * is one record with sequence number and checksum, so record, which was
+ * written partially, ends journal. Records are appended to memory buffer
+ * and forced to file by groups: thread, which commits first, writes
+ * records of all threads, which are waiting, with one force.
+ * <p>
+ * Image keeps sequence number of last operation in it, so only next
+ * records are replayed on mount. Journal is cleared after checkpoint.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public class Journal {
+
+	public static final transient int CREATE = 1;
+
+	public static final transient int MKDIR = 2;
+
+	public static final transient int SYMLINK = 3;
+
+	public static final transient int LINK = 4;
+
+	public static final transient int UNLINK = 5;
+
+	public static final transient int RMDIR = 6;
+
+	public static final transient int RESIZE = 7;
+
+	public static final transient int WRITE = 8;
+
+	public static final transient int WRITE_BYTES = 9;
+
+	// chars of file on position, which is kept instead of block number
+	public static final transient int WRITE_CHARS = 10;
+
+	// "FSJL" in ASCII
+	private static final transient int MAGIC = 0x46534A4C;
+
+	private static final transient int VERSION = 1;
+
+	private static final transient int HEADER_SIZE = 8;
+
+	// size and checksum
+	private static final transient int RECORD_HEADER = 8;
+
+	private static final transient int BUFFER_SIZE = 1 << 16;
+
+	private final String pathName;
+
+	private final FileChannel channel;
+
+	// records, which are not written yet
+	private ByteBuffer pending = ByteBuffer.allocate(BUFFER_SIZE);
+
+	// buffer of last written group, which is reused
+	private ByteBuffer spare = ByteBuffer.allocate(BUFFER_SIZE);
+
+	// offset after last written record, changed only by flushing thread
+	private long position;
+
+	// sequence number of last appended record
+	private long sequence;
+
+	// sequence number of last forced record
+	private long durable;
+
+	// some thread writes group now
+	private boolean flushing;
+
+	// time, which first thread of group waits for others
+	private long commitDelay;
+
+	/**
+	 * Opens journal or creates empty one.
+	 */
+	public Journal(String pathName) throws IOException {
+		if (pathName == null || pathName.isEmpty()) {
+			throw new IllegalArgumentException("Wrong pathname!");
+		}
+		this.pathName = pathName;
+		channel = FileChannel.open(Paths.get(pathName),
+			StandardOpenOption.CREATE, StandardOpenOption.READ,
+			StandardOpenOption.WRITE);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		while (header.hasRemaining() &&
+			channel.read(header, header.position()) > 0);
+		header.flip();
+		if (header.remaining() < HEADER_SIZE) {
+			writeHeader();
+		} else if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+			channel.close();
+			throw new IOException("Wrong journal!");
+		}
+		position = HEADER_SIZE;
+	}
+
+	public String getPathName() {
+		return pathName;
+	}
+
+	public long getCommitDelay() {
+		return commitDelay;
+	}
+
+	/**
+	 * Sets time in milliseconds, which first committing thread waits for
+	 * records of others, so they are forced together.
+	 */
+	public void setCommitDelay(long commitDelay) {
+		if (commitDelay < 0) {
+			throw new IllegalArgumentException("Wrong delay!");
+		}
+		this.commitDelay = commitDelay;
+	}
+
+	public synchronized long getSequence() {
+		return sequence;
+	}
+
+	public synchronized long getDurableSequence() {
+		return durable;
+	}
+
+	/**
+	 * Applies to file system operations, which have sequence numbers after
+	 * its one. Partially written records at end of journal are dropped.
+	 *
+	 * @return count of applied operations
+	 */
+	public synchronized int replay(FileSystem fs) throws IOException {
+		FileDescriptor current = fs.getCurrentDirectory();
+		long size = channel.size();
+		long offset = HEADER_SIZE;
+		int applied = 0;
+		ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+		CRC32 crc = new CRC32();
+		while (offset + RECORD_HEADER <= size) {
+			header.clear();
+			read(header, offset);
+			int length = header.getInt();
+			int checksum = header.getInt();
+			if (length < 12 || offset + RECORD_HEADER + length > size) {
+				break;
+			}
+			ByteBuffer record = ByteBuffer.allocate(length);
+			read(record, offset + RECORD_HEADER);
+			crc.reset();
+			crc.update(record.array(), 0, length);
+			if ((int) crc.getValue() != checksum) {
+				break;
+			}
+			long number = record.getLong();
+			if (number > fs.getSequence()) {
+				apply(fs, record);
+				fs.setSequence(number);
+				applied++;
+			}
+			sequence = Math.max(sequence, number);
+			offset += RECORD_HEADER + length;
+		}
+		// tail after last whole record is garbage
+		channel.truncate(offset);
+		channel.force(false);
+		position = offset;
+		sequence = Math.max(sequence, fs.getSequence());
+		durable = sequence;
+		fs.setCurrentDirectory(current);
+		return applied;
+	}
+
+	/**
+	 * Appends record of operation with name in directory. Uid is one of
+	 * created, linked or removed file.
+	 *
+	 * @return sequence number of record
+	 */
+	public long append(int operation, long directory, String name,
+			String second, long uid) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(operation);
+		out.writeLong(directory);
+		writeString(out, name);
+		writeString(out, second);
+		out.writeLong(uid);
+		return append(bytes.toByteArray());
+	}
+
+	/**
+	 * Appends record of operation with data of file. Number is count or
+	 * number of block or position in chars for {@link #WRITE_CHARS}.
+	 *
+	 * @return sequence number of record
+	 */
+	public long append(int operation, long uid, int number, String data)
+			throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(operation);
+		out.writeLong(uid);
+		out.writeInt(number);
+		writeString(out, data);
+		return append(bytes.toByteArray());
+	}
+
+	/**
+	 * Appends record of operation with bytes of file on specified position.
+	 * Remaining bytes of buffers are copied, but their positions are kept.
+	 *
+	 * @return sequence number of record
+	 */
+	public long append(int operation, long uid, long position,
+			ByteBuffer[] data) throws IOException {
+		int length = 0;
+		for (ByteBuffer buffer: data) {
+			length += buffer.remaining();
+		}
+		ByteBuffer bytes = ByteBuffer.allocate(24 + length);
+		bytes.putInt(operation);
+		bytes.putLong(uid);
+		bytes.putLong(position);
+		bytes.putInt(length);
+		for (ByteBuffer buffer: data) {
+			bytes.put(buffer.duplicate());
+		}
+		return append(bytes.array());
+	}
+
+	/**
+	 * Waits, while record with specified sequence number is forced to
+	 * file. Records of all threads, which are waiting, are forced together.
+	 */
+	public void commit(long sequence) throws IOException {
+		ByteBuffer group;
+		long last;
+		synchronized (this) {
+			while (durable < sequence && flushing) {
+				await(0);
+			}
+			if (durable >= sequence) {
+				return;
+			}
+			flushing = true;
+			boolean delayed = false;
+			try {
+				if (commitDelay > 0) {
+					await(commitDelay);
+				}
+				delayed = true;
+			} finally {
+				// interrupted thread leaves records to others
+				if (!delayed) {
+					flushing = false;
+					notifyAll();
+				}
+			}
+			group = pending;
+			pending = spare;
+			spare = null;
+			last = this.sequence;
+		}
+		long start = position;
+		boolean written = false;
+		try {
+			group.flip();
+			while (group.hasRemaining()) {
+				position += channel.write(group, position);
+			}
+			channel.force(false);
+			written = true;
+		} finally {
+			synchronized (this) {
+				flushing = false;
+				if (written) {
+					durable = last;
+					group.clear();
+					spare = group;
+				} else {
+					restore(group, start);
+				}
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Forces all appended records.
+	 */
+	public void sync() throws IOException {
+		commit(getSequence());
+	}
+
+	/**
+	 * Drops all records, because checkpoint has saved changes till
+	 * specified sequence number.
+	 */
+	public synchronized void clear(long sequence) throws IOException {
+		while (flushing) {
+			await(0);
+		}
+		pending.clear();
+		channel.truncate(HEADER_SIZE);
+		channel.force(false);
+		position = HEADER_SIZE;
+		this.sequence = Math.max(this.sequence, sequence);
+		durable = this.sequence;
+	}
+
+	public synchronized void close() throws IOException {
+		while (flushing) {
+			await(0);
+		}
+		channel.close();
+	}
+
+	private synchronized long append(byte[] operation) throws IOException {
+		sequence++;
+		ByteBuffer record = ByteBuffer.allocate(8 + operation.length);
+		record.putLong(sequence);
+		record.put(operation);
+		CRC32 crc = new CRC32();
+		crc.update(record.array());
+		int size = RECORD_HEADER + record.capacity();
+		if (pending.remaining() < size) {
+			ByteBuffer bigger = ByteBuffer.allocate(
+				Math.max(pending.capacity()*2, pending.position() + size));
+			pending.flip();
+			bigger.put(pending);
+			pending = bigger;
+		}
+		pending.putInt(record.capacity());
+		pending.putInt((int) crc.getValue());
+		pending.put(record.array());
+		return sequence;
+	}
+
+	// group, which was not written, is put before newer records, so next
+	// commit writes it again over its partial copy
+	private void restore(ByteBuffer group, long start) {
+		group.rewind();
+		pending.flip();
+		ByteBuffer merged = ByteBuffer.allocate(Math.max(BUFFER_SIZE,
+			group.remaining() + pending.remaining()));
+		merged.put(group);
+		merged.put(pending);
+		pending.clear();
+		spare = pending;
+		pending = merged;
+		position = start;
+	}
+
+	private static void apply(FileSystem fs, ByteBuffer record)
+			throws IOException {
+		int operation = record.getInt();
+		if (operation == WRITE_BYTES) {
+			FileDescriptor fd = fs.getFileDescriptor(record.getLong());
+			long position = record.getLong();
+			int length = record.getInt();
+			if (length < 0 || length > record.remaining()) {
+				throw new IOException("Wrong journal record!");
+			}
+			record.limit(record.position() + length);
+			if (fd != null && !fd.isDirectory()) {
+				fs.write(new OpenFile(fd), position, 
+					new ByteBuffer[] {record});
+			}
+			return;
+		}
+		if (operation == RESIZE || operation == WRITE ||
+			operation == WRITE_CHARS) {
+			FileDescriptor fd = fs.getFileDescriptor(record.getLong());
+			int number = record.getInt();
+			String data = readString(record);
+			// file was not created, because its operation failed again
+			if (fd == null || fd.isDirectory()) {
+				return;
+			}
+			if (operation == RESIZE) {
+				fs.resize(fd, number);
+			} else if (operation == WRITE_CHARS) {
+				OpenFile file = new OpenFile(fd);
+				file.setPosition(number);
+				fs.write(file, data);
+			} else {
+				fs.writeData(fd, number, data);
+			}
+			return;
+		}
+		FileDescriptor directory = fs.getFileDescriptor(record.getLong());
+		String path = readString(record);
+		String second = readString(record);
+		// records of volumes, journaled before uids were added, have paths
+		// from current directory
+		long uid = record.remaining() >= 8 ? record.getLong() : 0;
+		if (directory == null && uid != 0) {
+			return;
+		}
+		fs.setCurrentDirectory(directory);
+		long next = fs.getNextUid();
+		// created file gets its uid, records of its data use it
+		boolean created = uid != 0 && (operation == CREATE ||
+			operation == MKDIR || operation == SYMLINK);
+		if (created) {
+			fs.setNextUid(uid);
+		}
+		try {
+			apply(fs, operation, path, second, uid);
+		} finally {
+			if (created) {
+				fs.setNextUid(Math.max(next, uid + 1));
+			}
+		}
+	}
+
+	private static void apply(FileSystem fs, int operation, String path,
+			String second, long uid) throws IOException {
+		switch (operation) {
+		case CREATE:
+			fs.create(path);
+			break;
+		case MKDIR:
+			fs.mkdir(path);
+			break;
+		case SYMLINK:
+			fs.symlink(path, second);
+			break;
+		case LINK:
+			if (uid != 0) {
+				fs.link(uid, path);
+			} else {
+				fs.link(path, second);
+			}
+			break;
+		case UNLINK:
+			fs.unlink(path);
+			break;
+		case RMDIR:
+			fs.rmdir(path);
+			break;
+		default:
+			throw new IOException("Wrong journal record!");
+		}
+	}
+
+	private void writeHeader() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		header.flip();
+		channel.truncate(0);
+		while (header.hasRemaining()) {
+			channel.write(header, header.position());
+		}
+		channel.force(false);
+	}
+
+	private void read(ByteBuffer buffer, long offset) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, offset + buffer.position()) < 0) {
+				throw new IOException("Journal is truncated!");
+			}
+		}
+		buffer.flip();
+	}
+
+	private void await(long millis) throws IOException {
+		try {
+			wait(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Journal commit interrupted!");
+		}
+	}
+
+	// null is written as negative length
+	private static void writeString(DataOutputStream out, String value)
+			throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(value.length());
+		out.writeChars(value);
+	}
+
+	private static String readString(ByteBuffer record) throws IOException {
+		int length = record.getInt();
+		if (length < 0) {
+			return null;
+		}
+		if (length*2 > record.remaining()) {
+			throw new IOException("Wrong journal record!");
+		}
+		char[] chars = new char[length];
+		record.asCharBuffer().get(chars);
+		record.position(record.position() + length*2);
+		return new String(chars);
+	}
+}
@@ -0,0 +1,136 @@
+package filesystem;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Class for histogram of latencies in nanoseconds with fixed buckets, like
+ * HDR histogram: each power of two is split into 16 buckets, so percentile
+ * differs from real latency by 1/16 of it at most. Latencies are recorded
+ * by several threads without locks and without allocation of objects.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public final class LatencyHistogram {
+
+	// bits of bucket in power of two
+	private static final transient int SUB_BUCKET_BITS = 4;
+
+	private static final transient int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	// bigger latencies, more than hour, are recorded as this one
+	public static final transient long MAX_LATENCY = (1L << 42) - 1;
+
+	private static final transient int BUCKETS_COUNT =
+		(64 - Long.numberOfLeadingZeros(MAX_LATENCY) - SUB_BUCKET_BITS + 1)*
+		SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS_COUNT);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong total = new AtomicLong();
+
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long latency) {
+		if (latency < 0) {
+			latency = 0;
+		}
+		latency = Math.min(latency, MAX_LATENCY);
+		counts.incrementAndGet(bucket(latency));
+		count.incrementAndGet();
+		total.addAndGet(latency);
+		long last = max.get();
+		while (latency > last && !max.compareAndSet(last, latency)) {
+			last = max.get();
+		}
+	}
+
+	public long count() {
+		return count.get();
+	}
+
+	/**
+	 * @return sum of all latencies
+	 */
+	public long total() {
+		return total.get();
+	}
+
+	public long max() {
+		return max.get();
+	}
+
+	public long mean() {
+		long recorded = count.get();
+		return recorded == 0 ? 0 : total.get()/recorded;
+	}
+
+	/**
+	 * @param percentile from 0 to 100
+	 * @return latency, which is not exceeded by specified percent of
+	 * recorded latencies, or 0, if nothing was recorded
+	 */
+	public long percentile(double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("Wrong percentile!");
+		}
+		long recorded = 0;
+		for (int i = 0; i < BUCKETS_COUNT; i++) {
+			recorded += counts.get(i);
+		}
+		long rank = Math.max((long) Math.ceil(percentile/100*recorded), 1);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS_COUNT && recorded > 0; i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(highest(i), max.get());
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Forgets recorded latencies. Latencies, recorded at same time, can be
+	 * counted partially.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS_COUNT; i++) {
+			counts.set(i, 0);
+		}
+		count.set(0);
+		total.set(0);
+		max.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return count() + " operations, mean " + mean() + " ns, 50% " +
+			percentile(50) + " ns, 99% " + percentile(99) + " ns, max " +
+			max() + " ns";
+	}
+
+	// small latencies have own buckets, others are split by their highest
+	// bits
+	private static int bucket(long latency) {
+		if (latency < SUB_BUCKETS) {
+			return (int) latency;
+		}
+		int magnitude = 63 - Long.numberOfLeadingZeros(latency);
+		int shift = magnitude - SUB_BUCKET_BITS;
+		return (shift + 1)*SUB_BUCKETS +
+			(int) (latency >>> shift) - SUB_BUCKETS;
+	}
+
+	// biggest latency of bucket
+	private static long highest(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket/SUB_BUCKETS - 1;
+		long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
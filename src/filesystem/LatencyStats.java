@@ -0,0 +1,67 @@
+package filesystem;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Class for latencies of one operation at some moment, which are shown by
+ * JMX clients.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public class LatencyStats {
+
+	private final long count;
+
+	private final long meanNanos;
+
+	private final long p50Nanos;
+
+	private final long p90Nanos;
+
+	private final long p99Nanos;
+
+	private final long maxNanos;
+
+	@ConstructorProperties({"count", "meanNanos", "p50Nanos", "p90Nanos",
+		"p99Nanos", "maxNanos"})
+	public LatencyStats(long count, long meanNanos, long p50Nanos,
+			long p90Nanos, long p99Nanos, long maxNanos) {
+		this.count = count;
+		this.meanNanos = meanNanos;
+		this.p50Nanos = p50Nanos;
+		this.p90Nanos = p90Nanos;
+		this.p99Nanos = p99Nanos;
+		this.maxNanos = maxNanos;
+	}
+
+	public LatencyStats(LatencyHistogram histogram) {
+		this(histogram.count(), histogram.mean(), histogram.percentile(50),
+			histogram.percentile(90), histogram.percentile(99),
+			histogram.max());
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getMeanNanos() {
+		return meanNanos;
+	}
+
+	public long getP50Nanos() {
+		return p50Nanos;
+	}
+
+	public long getP90Nanos() {
+		return p90Nanos;
+	}
+
+	public long getP99Nanos() {
+		return p99Nanos;
+	}
+
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+}
@@ -0,0 +1,221 @@
+package filesystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Class for device, which is regular file, mapped in memory. Size of file
+ * defines count of blocks. Block is stored on offset, equal to its number 
+ * multiplied by block size, so only touched blocks are loaded in memory.
+ * Bytes after data of block are zeros, so block is copied between buffers
+ * and mapped file directly, when it is accessed as bytes. Size of block is
+ * set, when file is created.
+ * 
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public class MappedBlockDevice implements BlockDevice, Serializable {
+
+	private static final long serialVersionUID = 6406180458871232480L;
+	
+	public static final transient int BLOCK_BYTES = DataBlock.BLOCK_BYTES;
+	
+	// file is mapped by parts, because one buffer can not exceed 2 GB
+	private static final transient int SEGMENT_SIZE = 1 << 30;
+	
+	private final String pathName;
+	
+	private final int blocksCount;
+	
+	// zero for devices, saved before block size could be set
+	private int blockSize;
+	
+	private transient RandomAccessFile file;
+	
+	private transient MappedByteBuffer[] segments;
+	
+	private transient int segmentBlocks;
+	
+	/**
+	 * Creates device with specified count of blocks. File is created or
+	 * resized, if it is needed.
+	 */
+	public MappedBlockDevice(String pathName, int blocksCount) 
+			throws IOException {
+		this(pathName, blocksCount, BLOCK_BYTES);
+	}
+	
+	/**
+	 * Creates device with specified count and size of blocks.
+	 */
+	public MappedBlockDevice(String pathName, int blocksCount, 
+			int blockSize) throws IOException {
+		if (pathName == null || pathName.isEmpty()) {
+			throw new IllegalArgumentException("Wrong pathname!");
+		}
+		if (blocksCount <= 0) {
+			throw new IllegalArgumentException("Wrong blocks count!");
+		}
+		if (blockSize < SlabBlockDevice.MIN_BLOCK_SIZE || 
+			blockSize > SlabBlockDevice.MAX_BLOCK_SIZE ||
+			Integer.bitCount(blockSize) != 1) {
+			throw new IllegalArgumentException("Wrong block size!");
+		}
+		this.pathName = pathName;
+		this.blocksCount = blocksCount;
+		this.blockSize = blockSize;
+		map();
+	}
+	
+	/**
+	 * Opens device on existing file, blocks count is defined by its size.
+	 */
+	public MappedBlockDevice(String pathName) throws IOException {
+		this(pathName, blocksCount(pathName, BLOCK_BYTES));
+	}
+	
+	/**
+	 * Creates device on cleared file, so blocks, which are allocated later,
+	 * have zeros instead of old bytes of file. Constructors keep contents
+	 * of file, because they open devices of saved volumes.
+	 */
+	public static MappedBlockDevice create(String pathName, int blocksCount, 
+			int blockSize) throws IOException {
+		if (pathName == null || pathName.isEmpty()) {
+			throw new IllegalArgumentException("Wrong pathname!");
+		}
+		RandomAccessFile file = new RandomAccessFile(pathName, "rw");
+		try {
+			file.setLength(0);
+		} finally {
+			file.close();
+		}
+		return new MappedBlockDevice(pathName, blocksCount, blockSize);
+	}
+	
+	public String getPathName() {
+		return pathName;
+	}
+	
+	@Override
+	public int blocksCount() {
+		return blocksCount;
+	}
+	
+	@Override
+	public int blockSize() {
+		return blockSize;
+	}
+	
+	@Override
+	public String read(int index) {
+		return DataBlock.decode(block(index));
+	}
+	
+	@Override
+	public int write(int index, String data) {
+		return DataBlock.encode(data, block(index));
+	}
+	
+	@Override
+	public void clear(int index) {
+		MappedByteBuffer segment = segment(index);
+		int offset = offset(index);
+		for (int i = offset; i < offset + blockSize; i++) {
+			segment.put(i, (byte) 0);
+		}
+	}
+	
+	@Override
+	public void read(int index, int offset, ByteBuffer dst) {
+		int start = offset(index) + offset;
+		ByteBuffer data = segment(index).duplicate();
+		data.limit(start + dst.remaining()).position(start);
+		dst.put(data);
+	}
+	
+	@Override
+	public int write(int index, int offset, ByteBuffer src) {
+		int start = offset(index) + offset;
+		ByteBuffer data = segment(index).duplicate();
+		data.limit(start + src.remaining()).position(start);
+		data.put(src);
+		return 0;
+	}
+	
+	@Override
+	public void flush() {
+		for (MappedByteBuffer segment: segments) {
+			segment.force();
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		flush();
+		file.close();
+	}
+	
+	private ByteBuffer block(int index) {
+		ByteBuffer block = segment(index).duplicate();
+		int offset = offset(index);
+		block.limit(offset + blockSize).position(offset);
+		return block;
+	}
+	
+	private MappedByteBuffer segment(int index) {
+		if (index < 0 || index >= blocksCount) {
+			throw new IllegalArgumentException("Wrong index!");
+		}
+		return segments[index/segmentBlocks];
+	}
+	
+	private int offset(int index) {
+		return (index % segmentBlocks)*blockSize;
+	}
+	
+	private void map() throws IOException {
+		segmentBlocks = SEGMENT_SIZE/blockSize;
+		long size = (long) blocksCount*blockSize;
+		file = new RandomAccessFile(pathName, "rw");
+		if (file.length() < size) {
+			file.setLength(size);
+		}
+		FileChannel channel = file.getChannel();
+		segments = new MappedByteBuffer[
+			(blocksCount + segmentBlocks - 1)/segmentBlocks];
+		for (int i = 0; i < segments.length; i++) {
+			long position = (long) i*segmentBlocks*blockSize;
+			segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, 
+				position, Math.min(size - position, 
+				(long) segmentBlocks*blockSize));
+		}
+	}
+	
+	private Object readResolve() throws IOException {
+		if (blockSize == 0) {
+			blockSize = BLOCK_BYTES;
+		}
+		map();
+		return this;
+	}
+	
+	/**
+	 * @return count of blocks with specified size in existing file
+	 */
+	public static int blocksCount(String pathName, int blockSize) {
+		if (pathName == null || pathName.isEmpty()) {
+			throw new IllegalArgumentException("Wrong pathname!");
+		}
+		long count = new File(pathName).length()/blockSize;
+		if (count <= 0 || count > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Wrong device size!");
+		}
+		return (int) count;
+	}
+}
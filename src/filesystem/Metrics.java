@@ -0,0 +1,148 @@
+package filesystem;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Class for latency histograms of named operations, which are addressed by
+ * their numbers, so recording does not look up names. Metrics can be
+ * registered as MXBean of platform server.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public class Metrics implements MetricsMXBean {
+
+	// domain of names of registered beans
+	public static final transient String DOMAIN = "filesystem";
+
+	private final String[] names;
+
+	private final LatencyHistogram[] histograms;
+
+	// name, with which metrics were registered, or null
+	private ObjectName registered;
+
+	public Metrics(String... names) {
+		if (names == null) {
+			throw new IllegalArgumentException("Wrong names!");
+		}
+		this.names = names.clone();
+		histograms = new LatencyHistogram[names.length];
+		for (int i = 0; i < names.length; i++) {
+			histograms[i] = new LatencyHistogram();
+		}
+	}
+
+	/**
+	 * Records latency of operation, which was started at specified value of
+	 * {@link System#nanoTime()}.
+	 */
+	public void record(int operation, long start) {
+		histograms[operation].record(System.nanoTime() - start);
+	}
+
+	public LatencyHistogram getHistogram(int operation) {
+		return histograms[operation];
+	}
+
+	public String getName(int operation) {
+		return names[operation];
+	}
+
+	public int size() {
+		return names.length;
+	}
+
+	@Override
+	public Map<String, LatencyStats> getLatencies() {
+		Map<String, LatencyStats> latencies =
+			new LinkedHashMap<String, LatencyStats>();
+		for (int i = 0; i < names.length; i++) {
+			if (histograms[i].count() > 0) {
+				latencies.put(names[i], new LatencyStats(histograms[i]));
+			}
+		}
+		return latencies;
+	}
+
+	@Override
+	public long getOperationsCount() {
+		long count = 0;
+		for (LatencyHistogram histogram: histograms) {
+			count += histogram.count();
+		}
+		return count;
+	}
+
+	@Override
+	public void reset() {
+		for (LatencyHistogram histogram: histograms) {
+			histogram.reset();
+		}
+	}
+
+	/**
+	 * Registers metrics in platform server with name
+	 * filesystem:type=specified type,name=specified name.
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized void register(String type, String name) {
+		if (type == null || type.isEmpty()) {
+			throw new IllegalArgumentException("Wrong type!");
+		}
+		if (name == null || name.isEmpty()) {
+			throw new IllegalArgumentException("Wrong name!");
+		}
+		unregister();
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName objectName = new ObjectName(DOMAIN + ":type=" + type +
+				",name=" + ObjectName.quote(name));
+			Class<Object> view = (Class<Object>) mxBeanInterface();
+			server.registerMBean(new StandardMBean(this, view, true),
+				objectName);
+			registered = objectName;
+		} catch (JMException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public synchronized void unregister() {
+		if (registered == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+				registered);
+		} catch (JMException e) {
+			// bean was unregistered by others
+		}
+		registered = null;
+	}
+
+	/**
+	 * @return interface, by which metrics are registered
+	 */
+	protected Class<?> mxBeanInterface() {
+		return MetricsMXBean.class;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < names.length; i++) {
+			if (histograms[i].count() > 0) {
+				builder.append(names[i]).append(": ")
+					.append(histograms[i]).append('\n');
+			}
+		}
+		return builder.toString();
+	}
+}
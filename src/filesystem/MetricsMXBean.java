@@ -0,0 +1,27 @@
+package filesystem;
+
+import java.util.Map;
+
+/**
+ * Interface for JMX view of latencies of named operations.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public interface MetricsMXBean {
+
+	/**
+	 * @return latencies of operations, which were done, by their names
+	 */
+	Map<String, LatencyStats> getLatencies();
+
+	/**
+	 * @return count of all done operations
+	 */
+	long getOperationsCount();
+
+	/**
+	 * Forgets recorded latencies and counters.
+	 */
+	void reset();
+}
@@ -0,0 +1,342 @@
+package filesystem;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Class for B-tree, which maps names of files to their uid's. It is used
+ * by large directories, so lookup cost grows as logarithm of files count.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public class NameTree implements Serializable {
+
+	private static final long serialVersionUID = -7350218829452961327L;
+
+	// minimum degree of tree: node has from DEGREE - 1 to 2*DEGREE - 1 keys
+	private static final transient int DEGREE = 16;
+
+	private static final transient int MAX_KEYS = 2*DEGREE - 1;
+
+	// uid can not be zero, so it means absent name
+	public static final transient long ABSENT = 0;
+
+	private Node root = new Node(true);
+
+	private int size;
+
+	private static class Node implements Serializable {
+
+		private static final long serialVersionUID = 4410837640289127651L;
+
+		private String[] keys = new String[MAX_KEYS];
+
+		private long[] values = new long[MAX_KEYS];
+
+		// null for leaf
+		private Node[] children;
+
+		private int count;
+
+		private Node(boolean leaf) {
+			if (!leaf) {
+				children = new Node[MAX_KEYS + 1];
+			}
+		}
+
+		private boolean isLeaf() {
+			return children == null;
+		}
+
+		// index of key or -(insertion point) - 1
+		private int find(String key) {
+			int low = 0;
+			int high = count - 1;
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				int compared = keys[middle].compareTo(key);
+				if (compared < 0) {
+					low = middle + 1;
+				} else if (compared > 0) {
+					high = middle - 1;
+				} else {
+					return middle;
+				}
+			}
+			return -(low + 1);
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public long get(String name) {
+		Node node = root;
+		while (true) {
+			int index = node.find(name);
+			if (index >= 0) {
+				return node.values[index];
+			}
+			if (node.isLeaf()) {
+				return ABSENT;
+			}
+			node = node.children[-index - 1];
+		}
+	}
+
+	/**
+	 * @return previous uid for name or {@link #ABSENT}
+	 */
+	public long put(String name, long uid) {
+		Node node = root;
+		while (true) {
+			int index = node.find(name);
+			if (index >= 0) {
+				long old = node.values[index];
+				node.values[index] = uid;
+				return old;
+			}
+			if (node.isLeaf()) {
+				break;
+			}
+			node = node.children[-index - 1];
+		}
+		if (root.count == MAX_KEYS) {
+			Node newRoot = new Node(false);
+			newRoot.children[0] = root;
+			split(newRoot, 0);
+			root = newRoot;
+		}
+		insert(root, name, uid);
+		size++;
+		return ABSENT;
+	}
+
+	/**
+	 * @return removed uid or {@link #ABSENT}
+	 */
+	public long remove(String name) {
+		long old = get(name);
+		if (old == ABSENT) {
+			return ABSENT;
+		}
+		remove(root, name);
+		if (root.count == 0 && !root.isLeaf()) {
+			root = root.children[0];
+		}
+		size--;
+		return old;
+	}
+
+	/**
+	 * Adds all names in tree to list in sorted order.
+	 */
+	public void collect(List<String> names) {
+		collect(root, names);
+	}
+
+	private static void collect(Node node, List<String> names) {
+		for (int i = 0; i < node.count; i++) {
+			if (!node.isLeaf()) {
+				collect(node.children[i], names);
+			}
+			names.add(node.keys[i]);
+		}
+		if (!node.isLeaf()) {
+			collect(node.children[node.count], names);
+		}
+	}
+
+	// node is not full and does not contain key
+	private static void insert(Node node, String key, long value) {
+		while (true) {
+			int index = -node.find(key) - 1;
+			if (node.isLeaf()) {
+				shiftRight(node, index);
+				node.keys[index] = key;
+				node.values[index] = value;
+				node.count++;
+				return;
+			}
+			if (node.children[index].count == MAX_KEYS) {
+				split(node, index);
+				if (key.compareTo(node.keys[index]) > 0) {
+					index++;
+				}
+			}
+			node = node.children[index];
+		}
+	}
+
+	// splits full child of node in two, median key goes to node
+	private static void split(Node parent, int index) {
+		Node full = parent.children[index];
+		Node right = new Node(full.isLeaf());
+		right.count = DEGREE - 1;
+		System.arraycopy(full.keys, DEGREE, right.keys, 0, DEGREE - 1);
+		System.arraycopy(full.values, DEGREE, right.values, 0, DEGREE - 1);
+		if (!full.isLeaf()) {
+			System.arraycopy(full.children, DEGREE, right.children, 0, DEGREE);
+		}
+		shiftRight(parent, index);
+		System.arraycopy(parent.children, index + 1, parent.children,
+			index + 2, parent.count - index);
+		parent.keys[index] = full.keys[DEGREE - 1];
+		parent.values[index] = full.values[DEGREE - 1];
+		parent.children[index + 1] = right;
+		parent.count++;
+		full.count = DEGREE - 1;
+		clear(full, DEGREE - 1, MAX_KEYS);
+	}
+
+	// removes key from subtree, which root has at least DEGREE keys
+	private static void remove(Node node, String key) {
+		while (true) {
+			int index = node.find(key);
+			if (index >= 0 && node.isLeaf()) {
+				shiftLeft(node, index);
+				node.count--;
+				clear(node, node.count, node.count + 1);
+				return;
+			}
+			if (index >= 0) {
+				Node left = node.children[index];
+				Node right = node.children[index + 1];
+				if (left.count >= DEGREE) {
+					// replace key by predecessor
+					Node max = left;
+					while (!max.isLeaf()) {
+						max = max.children[max.count];
+					}
+					node.keys[index] = max.keys[max.count - 1];
+					node.values[index] = max.values[max.count - 1];
+					key = node.keys[index];
+					node = left;
+				} else if (right.count >= DEGREE) {
+					// replace key by successor
+					Node min = right;
+					while (!min.isLeaf()) {
+						min = min.children[0];
+					}
+					node.keys[index] = min.keys[0];
+					node.values[index] = min.values[0];
+					key = node.keys[index];
+					node = right;
+				} else {
+					merge(node, index);
+					node = left;
+				}
+				continue;
+			}
+			index = -index - 1;
+			Node child = node.children[index];
+			if (child.count == DEGREE - 1) {
+				Node left = index > 0 ? node.children[index - 1] : null;
+				Node right = index < node.count ?
+					node.children[index + 1] : null;
+				if (left != null && left.count >= DEGREE) {
+					rotateRight(node, index - 1);
+				} else if (right != null && right.count >= DEGREE) {
+					rotateLeft(node, index);
+				} else if (right != null) {
+					merge(node, index);
+				} else {
+					merge(node, index - 1);
+					child = left;
+				}
+			}
+			node = child;
+		}
+	}
+
+	// moves key from left child through parent to right child
+	private static void rotateRight(Node parent, int index) {
+		Node left = parent.children[index];
+		Node right = parent.children[index + 1];
+		shiftRight(right, 0);
+		if (!right.isLeaf()) {
+			System.arraycopy(right.children, 0, right.children, 1,
+				right.count + 1);
+			right.children[0] = left.children[left.count];
+			left.children[left.count] = null;
+		}
+		right.keys[0] = parent.keys[index];
+		right.values[0] = parent.values[index];
+		right.count++;
+		parent.keys[index] = left.keys[left.count - 1];
+		parent.values[index] = left.values[left.count - 1];
+		left.count--;
+		clear(left, left.count, left.count + 1);
+	}
+
+	// moves key from right child through parent to left child
+	private static void rotateLeft(Node parent, int index) {
+		Node left = parent.children[index];
+		Node right = parent.children[index + 1];
+		left.keys[left.count] = parent.keys[index];
+		left.values[left.count] = parent.values[index];
+		if (!left.isLeaf()) {
+			left.children[left.count + 1] = right.children[0];
+			System.arraycopy(right.children, 1, right.children, 0,
+				right.count);
+			right.children[right.count] = null;
+		}
+		left.count++;
+		parent.keys[index] = right.keys[0];
+		parent.values[index] = right.values[0];
+		shiftLeft(right, 0);
+		right.count--;
+		clear(right, right.count, right.count + 1);
+	}
+
+	// merges child, key of parent and next child in one node
+	private static void merge(Node parent, int index) {
+		Node left = parent.children[index];
+		Node right = parent.children[index + 1];
+		left.keys[left.count] = parent.keys[index];
+		left.values[left.count] = parent.values[index];
+		System.arraycopy(right.keys, 0, left.keys, left.count + 1,
+			right.count);
+		System.arraycopy(right.values, 0, left.values, left.count + 1,
+			right.count);
+		if (!left.isLeaf()) {
+			System.arraycopy(right.children, 0, left.children,
+				left.count + 1, right.count + 1);
+		}
+		left.count += right.count + 1;
+		shiftLeft(parent, index);
+		System.arraycopy(parent.children, index + 2, parent.children,
+			index + 1, parent.count - index - 1);
+		parent.count--;
+		parent.children[parent.count + 1] = null;
+		clear(parent, parent.count, parent.count + 1);
+	}
+
+	private static void shiftRight(Node node, int index) {
+		System.arraycopy(node.keys, index, node.keys, index + 1,
+			node.count - index);
+		System.arraycopy(node.values, index, node.values, index + 1,
+			node.count - index);
+	}
+
+	private static void shiftLeft(Node node, int index) {
+		System.arraycopy(node.keys, index + 1, node.keys, index,
+			node.count - index - 1);
+		System.arraycopy(node.values, index + 1, node.values, index,
+			node.count - index - 1);
+	}
+
+	// drops references to keys, which are not used more
+	private static void clear(Node node, int from, int to) {
+		for (int i = from; i < to; i++) {
+			node.keys[i] = null;
+		}
+		if (!node.isLeaf()) {
+			for (int i = from + 1; i <= to; i++) {
+				node.children[i] = null;
+			}
+		}
+	}
+}
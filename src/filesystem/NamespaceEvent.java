@@ -0,0 +1,28 @@
+package filesystem;
+
+/**
+ * Interface for event of operation, which changes namespace of file
+ * system. Events are recorded by flight recorder, see {@link Events}.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+interface NamespaceEvent {
+
+	void begin();
+
+	void end();
+
+	boolean shouldCommit();
+
+	void commit();
+
+	long getInode();
+
+	/**
+	 * Sets uid of created or removed file or 0, if it was not found.
+	 */
+	void setInode(long inode);
+
+	void setValues(String operation, String path, String target, int result);
+}
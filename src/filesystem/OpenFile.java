@@ -0,0 +1,72 @@
+package filesystem;
+
+/**
+ * Class for file, opened by session. It refers to descriptor directly and
+ * keeps position of next read or write and extent of block map, which was
+ * used last, so sequential reads and writes neither find file by name or
+ * uid nor search block map.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public class OpenFile {
+
+	private final FileDescriptor fd;
+
+	// position of next read or write in chars
+	private int position;
+
+	// extent of block map, which was used last, or -1
+	private int extent = -1;
+
+	private final ReadAhead readAhead = new ReadAhead();
+
+	OpenFile(FileDescriptor fd) {
+		this.fd = fd;
+	}
+
+	public FileDescriptor getFileDescriptor() {
+		return fd;
+	}
+
+	public int getPosition() {
+		return position;
+	}
+
+	void setPosition(int position) {
+		this.position = position;
+	}
+
+	ReadAhead getReadAhead() {
+		return readAhead;
+	}
+
+	/**
+	 * Returns index of block with specified number in file or 
+	 * {@link BlockMap#NO_BLOCK}, if it is in hole. Caller should hold lock 
+	 * of file.
+	 */
+	int block(int number) {
+		BlockMap map = fd.getBlocks();
+		if (!contains(map, extent, number)) {
+			// sequential access goes to next extent
+			if (contains(map, extent + 1, number)) {
+				extent++;
+			} else {
+				int found = map.findExtent(number);
+				if (found < 0) {
+					return BlockMap.NO_BLOCK;
+				}
+				extent = found;
+			}
+		}
+		return map.extentStart(extent) + number - map.extentOffset(extent);
+	}
+
+	// map could be changed after extent was remembered
+	private static boolean contains(BlockMap map, int extent, int number) {
+		return extent >= 0 && extent < map.extentsCount() &&
+			number >= map.extentOffset(extent) &&
+			number - map.extentOffset(extent) < map.extentLength(extent);
+	}
+}
@@ -0,0 +1,37 @@
+package filesystem;
+
+import java.util.Locale;
+
+/**
+ * Enumeration of operations of file system, which latencies are recorded
+ * by its statistics.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public enum Operation {
+
+	CREATE, SYMLINK, MKDIR, LINK, UNLINK, RMDIR, RESIZE,
+
+	OPEN, CLOSE, READ, WRITE, READ_DATA, WRITE_DATA,
+
+	SNAPSHOT, SYNC, CHECKPOINT, READ_IMAGE, WRITE_IMAGE, READ_XML,
+	WRITE_XML, READ_SERIALIZED, WRITE_SERIALIZED;
+
+	/**
+	 * @return names of all operations in their order
+	 */
+	static String[] names() {
+		Operation[] operations = values();
+		String[] names = new String[operations.length];
+		for (int i = 0; i < operations.length; i++) {
+			names[i] = operations[i].toString();
+		}
+		return names;
+	}
+
+	@Override
+	public String toString() {
+		return name().toLowerCase(Locale.ROOT);
+	}
+}
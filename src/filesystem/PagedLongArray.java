@@ -0,0 +1,95 @@
+package filesystem;
+
+import java.io.Serializable;
+
+/**
+ * Class for array of longs, which is allocated by pages on first write of
+ * value other than zero to them. Array of values of all blocks takes memory
+ * only for pages of blocks, which are used, so big volume with few used
+ * blocks stays small.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+final class PagedLongArray implements Serializable {
+
+	private static final long serialVersionUID = -6103528834507342267L;
+
+	private static final transient int PAGE_SHIFT = 12;
+
+	private static final transient int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+	private final int length;
+
+	// pages of values, null for page of zeros
+	private final long[][] pages;
+
+	PagedLongArray(int length) {
+		if (length < 0) {
+			throw new IllegalArgumentException("Wrong length!");
+		}
+		this.length = length;
+		pages = new long[(int) (((long) length + PAGE_SIZE - 1) >>>
+			PAGE_SHIFT)][];
+	}
+
+	int length() {
+		return length;
+	}
+
+	long get(int index) {
+		long[] page = pages[index >>> PAGE_SHIFT];
+		return page == null ? 0 : page[index & (PAGE_SIZE - 1)];
+	}
+
+	void set(int index, long value) {
+		long[] page = pages[index >>> PAGE_SHIFT];
+		if (page == null) {
+			if (value == 0) {
+				return;
+			}
+			page = new long[PAGE_SIZE];
+			pages[index >>> PAGE_SHIFT] = page;
+		}
+		page[index & (PAGE_SIZE - 1)] = value;
+	}
+
+	/**
+	 * Finds first value other than zero from specified index. Pages of
+	 * zeros are skipped at once.
+	 *
+	 * @return its index or -1, if there is no such value
+	 */
+	int nextNonZero(int from) {
+		if (from < 0) {
+			throw new IllegalArgumentException("Wrong index!");
+		}
+		for (int i = from >>> PAGE_SHIFT; i < pages.length; i++) {
+			long[] page = pages[i];
+			if (page == null) {
+				continue;
+			}
+			int start = i == from >>> PAGE_SHIFT ? from & (PAGE_SIZE - 1) : 0;
+			for (int j = start; j < PAGE_SIZE; j++) {
+				if (page[j] != 0) {
+					int index = (i << PAGE_SHIFT) + j;
+					return index < length ? index : -1;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return count of allocated pages
+	 */
+	int pagesCount() {
+		int count = 0;
+		for (long[] page: pages) {
+			if (page != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
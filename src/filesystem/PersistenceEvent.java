@@ -0,0 +1,22 @@
+package filesystem;
+
+/**
+ * Interface for event of one phase of reading or writing of volume. Events
+ * are recorded by flight recorder, see {@link Events}.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+interface PersistenceEvent {
+
+	void begin();
+
+	void end();
+
+	boolean shouldCommit();
+
+	void commit();
+
+	void setValues(String operation, String phase, String path, long bytes,
+			long objects);
+}
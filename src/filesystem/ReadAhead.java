@@ -0,0 +1,64 @@
+package filesystem;
+
+/**
+ * Class for read-ahead state of opened file. Read, which starts in last
+ * read block or after it, is sequential and doubles window of blocks, 
+ * which are read in advance, other read halves window and turns read-ahead
+ * off, when window becomes too small. Next window is requested, when half
+ * of blocks, which were read in advance, is read.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+final class ReadAhead {
+
+	// window of first sequential reads in blocks
+	static final transient int MIN_WINDOW = 4;
+
+	static final transient int MAX_WINDOW = 128;
+
+	// number of last read block
+	private int last = -1;
+
+	// count of blocks, which are read in advance, 0 for random reads
+	private int window;
+
+	// number after last block, which was read in advance
+	private int prefetched;
+
+	/**
+	 * Remembers read of blocks with specified numbers.
+	 *
+	 * @return numbers of first block, which should be read in advance, and
+	 * of block after last one or null, if nothing should be read
+	 */
+	synchronized int[] advance(int first, int last) {
+		if (first == this.last || first == this.last + 1) {
+			if (last > this.last) {
+				window = window == 0 ? MIN_WINDOW :
+					Math.min(window*2, MAX_WINDOW);
+			}
+		} else {
+			window /= 2;
+			if (window < MIN_WINDOW) {
+				window = 0;
+			}
+			prefetched = 0;
+		}
+		this.last = last;
+		if (window == 0) {
+			return null;
+		}
+		int from = Math.max(last + 1, prefetched);
+		int to = last + 1 + window;
+		if (to - from < window/2) {
+			return null;
+		}
+		prefetched = to;
+		return new int[] {from, to};
+	}
+
+	synchronized int getWindow() {
+		return window;
+	}
+}
@@ -0,0 +1,22 @@
+package filesystem;
+
+/**
+ * Interface for factory of events of file system. Events of disabled type
+ * are not created.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+interface Recorder {
+
+	/**
+	 * @return new event or null, if events of this type are disabled
+	 */
+	NamespaceEvent namespace();
+
+	DataEvent data();
+
+	AllocationEvent allocation();
+
+	PersistenceEvent persistence();
+}
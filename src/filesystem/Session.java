@@ -0,0 +1,228 @@
+package filesystem;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Class for session of work with file system. Session has its own table of
+ * opened files: file is opened by path once and then is addressed by small
+ * handle, which is index in this table. Lowest free handle is used first.
+ * <p>
+ * Session should be used by one thread, but file system can be used by
+ * several sessions at once.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public class Session {
+
+	public static final transient int WRONG_HANDLE = -11;
+
+	public static final transient int TOO_MANY_OPENED = -12;
+
+	// maximum count of files, opened by one session
+	public static final transient int MAX_HANDLES = 1024;
+
+	private static final transient int INITIAL_CAPACITY = 8;
+
+	private final FileSystem fs;
+
+	// opened files by their handles, null for free handle
+	private OpenFile[] files = new OpenFile[INITIAL_CAPACITY];
+
+	private int openedCount;
+
+	public Session(FileSystem fs) {
+		if (fs == null) {
+			throw new IllegalArgumentException("Wrong file system!");
+		}
+		this.fs = fs;
+	}
+
+	public FileSystem getFileSystem() {
+		return fs;
+	}
+
+	public int openedCount() {
+		return openedCount;
+	}
+
+	/**
+	 * Opens file with specified path, symbolic links are followed.
+	 *
+	 * @return handle of opened file, {@link FileSystem#NO_SUCH_FILE},
+	 * {@link FileSystem#WRONG_TYPE} or {@link #TOO_MANY_OPENED}
+	 */
+	public int open(String path) {
+		long start = System.nanoTime();
+		try {
+			FileDescriptor fd = fs.resolve(path);
+			if (fd == null) {
+				return FileSystem.NO_SUCH_FILE;
+			}
+			if (fd.isDirectory()) {
+				return FileSystem.WRONG_TYPE;
+			}
+			int handle = freeHandle();
+			if (handle < 0) {
+				return TOO_MANY_OPENED;
+			}
+			fs.addOpen(fd);
+			files[handle] = new OpenFile(fd);
+			openedCount++;
+			return handle;
+		} finally {
+			fs.getStats().record(Operation.OPEN, start);
+		}
+	}
+
+	/**
+	 * @return {@link #WRONG_HANDLE} or 0
+	 */
+	public int close(int handle) {
+		long start = System.nanoTime();
+		OpenFile file = get(handle);
+		if (file == null) {
+			return WRONG_HANDLE;
+		}
+		files[handle] = null;
+		openedCount--;
+		fs.removeOpen(file.getFileDescriptor());
+		fs.getStats().record(Operation.CLOSE, start);
+		return 0;
+	}
+
+	/**
+	 * Closes all opened files.
+	 */
+	public void close() {
+		for (int i = 0; i < files.length; i++) {
+			if (files[i] != null) {
+				close(i);
+			}
+		}
+	}
+
+	/**
+	 * @return opened file or null, if there is no such handle
+	 */
+	public OpenFile get(int handle) {
+		if (handle < 0 || handle >= files.length) {
+			return null;
+		}
+		return files[handle];
+	}
+
+	/**
+	 * Reads data from position of opened file and moves position after it.
+	 *
+	 * @return data, which is shorter than specified size at end of file, or
+	 * null, if there is no such handle
+	 */
+	public String read(int handle, int size) {
+		OpenFile file = get(handle);
+		if (file == null) {
+			return null;
+		}
+		return fs.read(file, size);
+	}
+
+	/**
+	 * Writes data on position of opened file and moves position after it.
+	 * File is extended, if it is needed.
+	 *
+	 * @return {@link #WRONG_HANDLE}, {@link FileSystem#WRONG_BLOCK}, if
+	 * there are not enough free blocks or file is too big, or 0
+	 */
+	public int write(int handle, String data) {
+		OpenFile file = get(handle);
+		if (file == null) {
+			return WRONG_HANDLE;
+		}
+		return fs.write(file, data);
+	}
+
+	/**
+	 * Reads bytes of file from specified position to remaining part of
+	 * buffer. Position of opened file is not changed.
+	 *
+	 * @return count of read bytes, which is less than remaining bytes of
+	 * buffer at end of file, -1, if position is at end of file, or
+	 * {@link #WRONG_HANDLE}
+	 */
+	public int read(int handle, long position, ByteBuffer dst) {
+		return (int) read(handle, position, new ByteBuffer[] {dst});
+	}
+
+	/**
+	 * Reads bytes of file from specified position to buffers in their order.
+	 *
+	 * @see #read(int, long, ByteBuffer)
+	 */
+	public long read(int handle, long position, ByteBuffer[] dsts) {
+		OpenFile file = get(handle);
+		if (file == null) {
+			return WRONG_HANDLE;
+		}
+		return fs.read(file, position, dsts);
+	}
+
+	/**
+	 * Writes remaining bytes of buffer to file from specified position. File
+	 * is extended, if it is needed. Position of opened file is not changed.
+	 *
+	 * @return count of written bytes, {@link #WRONG_HANDLE} or
+	 * {@link FileSystem#WRONG_BLOCK}, if there are not enough free blocks or
+	 * file is too big
+	 */
+	public int write(int handle, long position, ByteBuffer src) {
+		return (int) write(handle, position, new ByteBuffer[] {src});
+	}
+
+	/**
+	 * Writes bytes of buffers to file from specified position in their order.
+	 *
+	 * @see #write(int, long, ByteBuffer)
+	 */
+	public long write(int handle, long position, ByteBuffer[] srcs) {
+		OpenFile file = get(handle);
+		if (file == null) {
+			return WRONG_HANDLE;
+		}
+		return fs.write(file, position, srcs);
+	}
+
+	/**
+	 * Sets position of next read or write.
+	 *
+	 * @return {@link #WRONG_HANDLE} or 0
+	 */
+	public int seek(int handle, int position) {
+		if (position < 0) {
+			throw new IllegalArgumentException("Wrong position!");
+		}
+		OpenFile file = get(handle);
+		if (file == null) {
+			return WRONG_HANDLE;
+		}
+		file.setPosition(position);
+		return 0;
+	}
+
+	// table grows, when all its handles are used
+	private int freeHandle() {
+		for (int i = 0; i < files.length; i++) {
+			if (files[i] == null) {
+				return i;
+			}
+		}
+		if (files.length == MAX_HANDLES) {
+			return -1;
+		}
+		OpenFile[] bigger = new OpenFile[Math.min(files.length*2,
+			MAX_HANDLES)];
+		System.arraycopy(files, 0, bigger, 0, files.length);
+		int handle = files.length;
+		files = bigger;
+		return handle;
+	}
+}
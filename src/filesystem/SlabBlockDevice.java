@@ -0,0 +1,210 @@
+package filesystem;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Class for device, which keeps all blocks in memory as bytes of one slab,
+ * so there are no objects for blocks. Slab is heap or direct buffer, which
+ * is allocated by chunks on first write to them. Block size is set, when 
+ * device is created, and is power of two from 1 KB to 64 KB.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public class SlabBlockDevice implements BlockDevice, Serializable {
+
+	private static final long serialVersionUID = 4207791502412353517L;
+
+	public static final transient int MIN_BLOCK_SIZE = 1 << 10;
+
+	public static final transient int MAX_BLOCK_SIZE = 1 << 16;
+
+	private static final transient int CHUNK_SIZE = 1 << 20;
+
+	private final int blocksCount;
+
+	private final int blockSize;
+
+	private final boolean direct;
+
+	// blocks, which were written and not cleared
+	private final BitSet written;
+
+	// parts of slab, null for part, which was not written
+	private transient AtomicReferenceArray<ByteBuffer> chunks;
+
+	private transient int chunkBlocks;
+
+	public SlabBlockDevice(int blocksCount) {
+		this(blocksCount, DataBlock.BLOCK_BYTES, false);
+	}
+
+	public SlabBlockDevice(int blocksCount, int blockSize) {
+		this(blocksCount, blockSize, false);
+	}
+
+	/**
+	 * @param direct slab is kept out of heap
+	 */
+	public SlabBlockDevice(int blocksCount, int blockSize, boolean direct) {
+		if (blocksCount <= 0) {
+			throw new IllegalArgumentException("Wrong blocks count!");
+		}
+		if (blockSize < MIN_BLOCK_SIZE || blockSize > MAX_BLOCK_SIZE ||
+			Integer.bitCount(blockSize) != 1) {
+			throw new IllegalArgumentException("Wrong block size!");
+		}
+		this.blocksCount = blocksCount;
+		this.blockSize = blockSize;
+		this.direct = direct;
+		written = new BitSet();
+		init();
+	}
+
+	@Override
+	public int blocksCount() {
+		return blocksCount;
+	}
+
+	@Override
+	public int blockSize() {
+		return blockSize;
+	}
+
+	public boolean isDirect() {
+		return direct;
+	}
+
+	@Override
+	public String read(int index) {
+		checkIndex(index);
+		synchronized (written) {
+			if (!written.get(index)) {
+				return null;
+			}
+		}
+		ByteBuffer block = block(index, false);
+		return block == null ? "" : DataBlock.decode(block);
+	}
+
+	@Override
+	public int write(int index, String data) {
+		checkIndex(index);
+		int message = DataBlock.encode(data, block(index, true));
+		synchronized (written) {
+			written.set(index);
+		}
+		return message;
+	}
+
+	@Override
+	public void read(int index, int offset, ByteBuffer dst) {
+		checkIndex(index);
+		ByteBuffer block = block(index, false);
+		if (block == null) {
+			while (dst.hasRemaining()) {
+				dst.put((byte) 0);
+			}
+			return;
+		}
+		block.position(block.position() + offset);
+		block.limit(block.position() + dst.remaining());
+		dst.put(block);
+	}
+
+	@Override
+	public int write(int index, int offset, ByteBuffer src) {
+		checkIndex(index);
+		ByteBuffer block = block(index, true);
+		block.position(block.position() + offset);
+		block.put(src);
+		synchronized (written) {
+			written.set(index);
+		}
+		return 0;
+	}
+
+	@Override
+	public void clear(int index) {
+		checkIndex(index);
+		ByteBuffer block = block(index, false);
+		if (block != null) {
+			for (int i = block.position(); i < block.limit(); i++) {
+				block.put(i, (byte) 0);
+			}
+		}
+		synchronized (written) {
+			written.clear(index);
+		}
+	}
+
+	@Override
+	public void flush() {}
+
+	@Override
+	public void close() {}
+
+	// view of block or null, if its chunk was not allocated
+	private ByteBuffer block(int index, boolean allocate) {
+		int number = index/chunkBlocks;
+		ByteBuffer chunk = chunks.get(number);
+		if (chunk == null) {
+			if (!allocate) {
+				return null;
+			}
+			int size = Math.min(chunkBlocks, blocksCount - number*chunkBlocks)*
+				blockSize;
+			ByteBuffer created = direct ? ByteBuffer.allocateDirect(size) :
+				ByteBuffer.allocate(size);
+			chunks.compareAndSet(number, null, created);
+			chunk = chunks.get(number);
+		}
+		ByteBuffer block = chunk.duplicate();
+		int start = (index % chunkBlocks)*blockSize;
+		block.limit(start + blockSize).position(start);
+		return block;
+	}
+
+	private void init() {
+		chunkBlocks = Math.max(CHUNK_SIZE/blockSize, 1);
+		chunks = new AtomicReferenceArray<ByteBuffer>(
+			(blocksCount + chunkBlocks - 1)/chunkBlocks);
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= blocksCount) {
+			throw new IllegalArgumentException("Wrong index!");
+		}
+	}
+
+	// only written blocks are saved
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		for (int i = written.nextSetBit(0); i >= 0;
+				i = written.nextSetBit(i + 1)) {
+			byte[] data = new byte[blockSize];
+			read(i, 0, ByteBuffer.wrap(data));
+			out.writeObject(data);
+		}
+	}
+
+	private void readObject(ObjectInputStream in)
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		init();
+		for (int i = written.nextSetBit(0); i >= 0;
+				i = written.nextSetBit(i + 1)) {
+			byte[] data = (byte[]) in.readObject();
+			if (data.length != blockSize) {
+				throw new IOException("Wrong block " + i + "!");
+			}
+			write(i, 0, ByteBuffer.wrap(data));
+		}
+	}
+}
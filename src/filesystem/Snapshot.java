@@ -0,0 +1,346 @@
+package filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Class for copy-on-write snapshot of mounted volume. Snapshot is created
+ * without copying anything: descriptors are copied only before their first
+ * change and blocks are shared with volume, which writes changed data to
+ * new blocks. Snapshot can be written to image or xml file, while volume is
+ * changed by others.
+ * <p>
+ * Snapshot keeps blocks, which volume does not use already, till it is
+ * released. Snapshot is not saved with volume.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public class Snapshot {
+
+	private final FileSystem fs;
+
+	private final int id;
+
+	// creation time in milliseconds
+	private final long created = System.currentTimeMillis();
+
+	private final long rootUid;
+
+	private final long currentUid;
+
+	// descriptors with this or bigger uid were created after snapshot
+	private final long nextUid;
+
+	private final int linksCount;
+
+	// sequence number of last operation before snapshot
+	private final long sequence;
+
+	// descriptors in their state at creation, which were changed by volume
+	// since it
+	private final Map<Long, FileDescriptor> preserved =
+		new HashMap<Long, FileDescriptor>();
+
+	// writes of snapshot, which are done in background, null, when snapshot
+	// is released
+	private List<Future<Void>> exports = new ArrayList<Future<Void>>();
+
+	private volatile boolean released;
+
+	Snapshot(FileSystem fs, int id, long rootUid, long currentUid,
+			long nextUid, int linksCount, long sequence) {
+		this.fs = fs;
+		this.id = id;
+		this.rootUid = rootUid;
+		this.currentUid = currentUid;
+		this.nextUid = nextUid;
+		this.linksCount = linksCount;
+		this.sequence = sequence;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public long getCreated() {
+		return created;
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	public boolean isReleased() {
+		return released;
+	}
+
+	/**
+	 * @return count of descriptors, which were copied, because volume has
+	 * changed them
+	 */
+	public int preservedCount() {
+		synchronized (preserved) {
+			return preserved.size();
+		}
+	}
+
+	/**
+	 * Finds descriptor in its state at creation of snapshot. Returned
+	 * descriptor is copy, which can be changed.
+	 *
+	 * @return found descriptor or null, if there was no such descriptor
+	 */
+	public FileDescriptor getFileDescriptor(long uid) {
+		if (released) {
+			throw new IllegalStateException("Snapshot was released!");
+		}
+		if (uid <= 0 || uid >= nextUid) {
+			return null;
+		}
+		return fs.snapshotDescriptor(this, uid);
+	}
+
+	/**
+	 * Writes binary image with files of snapshot.
+	 */
+	public void writeImage(String pathName) throws IOException {
+		if (pathName == null || pathName.isEmpty()) {
+			throw new IllegalArgumentException("Wrong pathname!");
+		}
+		FileSystem frozen = freeze(false);
+		try {
+			VolumeImage.write(frozen, pathName);
+		} finally {
+			frozen.close();
+		}
+	}
+
+	/**
+	 * Writes xml file with files of snapshot.
+	 */
+	public void writeXML(String pathName) throws Exception {
+		if (pathName == null || pathName.isEmpty()) {
+			throw new IllegalArgumentException("Wrong pathname!");
+		}
+		FileSystem.writeXML(freeze(true), pathName);
+	}
+
+	/**
+	 * Writes snapshot to image or xml file in background thread.
+	 *
+	 * @return result of write, which throws its exception
+	 */
+	public Future<Void> export(final String pathName, final boolean xml) {
+		if (pathName == null || pathName.isEmpty()) {
+			throw new IllegalArgumentException("Wrong pathname!");
+		}
+		FutureTask<Void> export = new FutureTask<Void>(new Callable<Void>() {
+
+			@Override
+			public Void call() throws Exception {
+				if (xml) {
+					writeXML(pathName);
+				} else {
+					writeImage(pathName);
+				}
+				return null;
+			}
+		});
+		synchronized (this) {
+			if (exports == null) {
+				throw new IllegalStateException("Snapshot was released!");
+			}
+			exports.add(export);
+		}
+		Thread thread = new Thread(export, "snapshot-" + id + "-export");
+		thread.setDaemon(true);
+		thread.start();
+		return export;
+	}
+
+	/**
+	 * Waits for writes of snapshot and frees blocks, which are kept only by
+	 * it. Snapshot can not be used after it.
+	 */
+	public void release() {
+		List<Future<Void>> started;
+		synchronized (this) {
+			if (exports == null) {
+				return;
+			}
+			started = exports;
+			exports = null;
+		}
+		boolean interrupted = false;
+		for (Future<Void> export: started) {
+			while (true) {
+				try {
+					export.get();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					// failed write is reported by its result
+					break;
+				}
+			}
+		}
+		fs.released(this);
+		released = true;
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Snapshot " + id + " after operation " + sequence +
+			" with " + preservedCount() + " changed descriptors";
+	}
+
+	/**
+	 * Copies descriptor before its first change, which volume does under
+	 * exclusive lock of descriptor.
+	 *
+	 * @return true, if descriptor was copied
+	 */
+	boolean preserve(FileDescriptor fd) {
+		if (fd.getUid() >= nextUid) {
+			return false;
+		}
+		synchronized (preserved) {
+			if (preserved.containsKey(fd.getUid())) {
+				return false;
+			}
+			preserved.put(fd.getUid(), fd.copy());
+			return true;
+		}
+	}
+
+	/**
+	 * @return copy of preserved descriptor or null, if descriptor was not
+	 * changed since creation of snapshot
+	 */
+	FileDescriptor getPreserved(long uid) {
+		synchronized (preserved) {
+			FileDescriptor fd = preserved.get(uid);
+			return fd == null ? null : fd.copy();
+		}
+	}
+
+	/**
+	 * @return preserved descriptors, which keep their blocks
+	 */
+	List<FileDescriptor> preservedDescriptors() {
+		synchronized (preserved) {
+			return new ArrayList<FileDescriptor>(preserved.values());
+		}
+	}
+
+	// creates volume with files, which are found from root of snapshot,
+	// its blocks are read from volume or copied to memory
+	private FileSystem freeze(boolean copied) {
+		BlockDevice device = new FrozenDevice();
+		BlockAllocator allocator = new BlockAllocator(device.blocksCount());
+		InodeTable inodes = new InodeTable();
+		BlockRefs refs = new BlockRefs();
+		Deque<FileDescriptor> directories = new ArrayDeque<FileDescriptor>();
+		FileDescriptor root = getFileDescriptor(rootUid);
+		inodes.put(root);
+		directories.push(root);
+		while (!directories.isEmpty()) {
+			DirectoryIndex entries = directories.pop().getEntries();
+			for (String name: entries.names()) {
+				long uid = entries.get(name);
+				if (inodes.get(uid) != null) {
+					continue;
+				}
+				FileDescriptor fd = getFileDescriptor(uid);
+				if (fd == null) {
+					continue;
+				}
+				inodes.put(fd);
+				// files of deduplicated volume share blocks
+				for (int block: fd.getBlocks().toArray()) {
+					if (!allocator.markUsed(block)) {
+						refs.retain(block);
+					}
+				}
+				if (fd.isDirectory()) {
+					directories.push(fd);
+				}
+			}
+		}
+		if (copied) {
+			device = FileSystem.copyToSlab(device, allocator);
+		}
+		FileSystem frozen = new FileSystem(device, fs.getGeometry(), allocator,
+			inodes, rootUid, nextUid, linksCount);
+		frozen.setSequence(sequence);
+		frozen.setRefs(refs);
+		frozen.setCurrentDirectory(inodes.get(currentUid));
+		return frozen;
+	}
+
+	// blocks of snapshot are not changed by volume, so they are read from
+	// its device without locks of files
+	private class FrozenDevice implements BlockDevice {
+
+		@Override
+		public int blocksCount() {
+			return fs.getDevice().blocksCount();
+		}
+
+		@Override
+		public int blockSize() {
+			return fs.getDevice().blockSize();
+		}
+
+		@Override
+		public String read(int index) {
+			fs.enter();
+			try {
+				return fs.blocks().read(index);
+			} finally {
+				fs.leave();
+			}
+		}
+
+		@Override
+		public void read(int index, int offset, ByteBuffer dst) {
+			fs.enter();
+			try {
+				fs.blocks().read(index, offset, dst);
+			} finally {
+				fs.leave();
+			}
+		}
+
+		@Override
+		public int write(int index, String data) {
+			throw new UnsupportedOperationException("Snapshot is read-only!");
+		}
+
+		@Override
+		public void clear(int index) {
+			throw new UnsupportedOperationException("Snapshot is read-only!");
+		}
+
+		@Override
+		public void flush() {}
+
+		@Override
+		public void close() {}
+	}
+}
@@ -0,0 +1,1312 @@
+package filesystem;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Class for saving file system in binary image and loading it back. Image
+ * has superblock, two copies of bitmap of used blocks and records of used
+ * blocks, descriptors with entries of directories, opened files and
+ * reference counts of shared blocks. Volume on mapped device keeps its
+ * blocks in device file, so only its path is saved.
+ * Volume on compressed device keeps its blocks as compressed extents, which
+ * have different sizes.
+ * <p>
+ * Object of this class remembers offsets of records in image, so checkpoint
+ * writes changed blocks to dead slots, appends changed descriptors and
+ * writes other copy of bitmap. Only then superblock selects new copy and
+ * checkpoint, so interrupted checkpoint leaves old image. Old records are
+ * marked as dead after that. Image is rewritten, when dead records take
+ * most of it.
+ * <p>
+ * Volume can be read lazily: only superblock, bitmap and headers of records
+ * are read on mount, blocks and descriptors are read on first access.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+public final class VolumeImage {
+
+	// "FSIM" in ASCII
+	public static final transient int MAGIC = 0x4653494D;
+
+	public static final transient int VERSION = 6;
+
+	// images, written as one stream before records were added
+	private static final transient int STREAM_VERSION = 1;
+
+	// images, which keep blocks as chars
+	private static final transient int CHARS_VERSION = 2;
+
+	// images, which keep block maps without holes
+	private static final transient int BYTES_VERSION = 3;
+
+	// images, which have no geometry in superblock
+	private static final transient int HOLES_VERSION = 4;
+
+	// images, which have one copy of bitmap and rewrite blocks in place
+	private static final transient int GEOMETRY_VERSION = 5;
+
+	private static final transient int BUFFER_SIZE = 1 << 16;
+
+	// superblock is rewritten in place, so it has fixed size
+	private static final transient int HEADER_SIZE = 128;
+
+	private static final transient int HEAP_DEVICE = 0;
+
+	private static final transient int MAPPED_DEVICE = 1;
+
+	private static final transient int COMPRESSED_DEVICE = 2;
+
+	private static final transient int DIRECTORY = 1;
+
+	private static final transient int SYMLINK = 2;
+
+	// length of block, which is allocated, but was not written
+	private static final transient int NO_DATA = -1;
+
+	// types of records
+	private static final transient int DEAD = 0;
+
+	private static final transient int BLOCK = 1;
+
+	private static final transient int DESCRIPTOR = 2;
+
+	private static final transient int OPENED = 3;
+
+	private static final transient int DEVICE = 4;
+
+	private static final transient int REFS = 5;
+
+	private static final transient int EXTENT = 6;
+
+	private static final transient int REMOVED = 7;
+
+	// type and size
+	private static final transient int RECORD_HEADER = 8;
+
+	// block record of chars version has size of its longest data
+	private static final transient int CHARS_SLOT_SIZE = RECORD_HEADER + 8 +
+		DataBlock.BLOCK_SIZE*2;
+
+	// image with less dead bytes is never rewritten
+	private static final transient long MIN_COMPACTION = 1 << 20;
+
+	private final Path path;
+
+	private final int version;
+
+	// size of block in bytes
+	private final int blockSize;
+
+	// bytes of block record before its data
+	private final int blockHeader;
+
+	// block record has fixed size, so its dead slot can be reused
+	private final int slotSize;
+
+	// size of one copy of bitmap
+	private final long bitmapSize;
+
+	// offset of first record
+	private final long start;
+
+	// offsets of block records by block numbers, 0 for blocks without them
+	private final PagedLongArray slots;
+
+	// blocks are kept as extents
+	private final boolean compressed;
+
+	// sizes of extent records by block numbers, null for image without them
+	private final PagedLongArray extentSizes;
+
+	// inflater of lazily read extents, created on first of them
+	private Inflater inflater;
+
+	// offsets of dead records, which can be reused for blocks
+	private final ArrayDeque<Long> freeSlots = new ArrayDeque<Long>();
+
+	// offsets and sizes of descriptor records by uid's
+	private final Map<Long, Long> offsets = new HashMap<Long, Long>();
+
+	private final Map<Long, Integer> sizes = new HashMap<Long, Integer>();
+
+	private long openedOffset;
+
+	private int openedSize;
+
+	private long refsOffset;
+
+	private int refsSize;
+
+	// offset after last record
+	private long end;
+
+	private long deadBytes;
+
+	// copy of bitmap, which superblock selects
+	private int bitmap;
+
+	// number of last checkpoint, records of next ones are not read
+	private long generation;
+
+	// words of bitmap, which other copy has not
+	private final BitSet staleWords = new BitSet();
+
+	// records, which were replaced, but were not marked as dead, because
+	// checkpoint was interrupted
+	private final ArrayDeque<Long> stale = new ArrayDeque<Long>();
+
+	// block slots among them, which are reused after they are dead
+	private final ArrayDeque<Long> staleSlots = new ArrayDeque<Long>();
+
+	// records of removed descriptors, which were not marked as dead
+	private final ArrayDeque<Long> removed = new ArrayDeque<Long>();
+
+	// slots, which were written by interrupted checkpoint
+	private final ArrayDeque<Long> unfinished = new ArrayDeque<Long>();
+
+	// image, which was changed partly by failed checkpoint, is rewritten
+	private boolean failed;
+
+	// channel for lazy reads of records, opened on first of them
+	private FileChannel reader;
+
+	private VolumeImage(Path path, int blocksCount, int blockSize,
+			int version, boolean compressed) {
+		this.path = path.toAbsolutePath().normalize();
+		this.version = version;
+		this.blockSize = blockSize;
+		// block records of new images have number of their checkpoint
+		blockHeader = RECORD_HEADER + (version > GEOMETRY_VERSION ? 12 : 4);
+		slotSize = version == CHARS_VERSION ? CHARS_SLOT_SIZE :
+			blockHeader + blockSize;
+		slots = new PagedLongArray(blocksCount);
+		this.compressed = compressed;
+		extentSizes = compressed ? new PagedLongArray(blocksCount) : null;
+		bitmapSize = 8L*((blocksCount + 63L) >>> 6);
+		start = HEADER_SIZE + (version > GEOMETRY_VERSION ? 2 : 1)*bitmapSize;
+		end = start;
+	}
+
+	/**
+	 * Writes whole image to temporary file, which replaces specified one
+	 * only when it is complete.
+	 */
+	public static void write(FileSystem fs, String pathName)
+			throws IOException {
+		Path path = Paths.get(pathName);
+		Path temporary = Paths.get(pathName + ".tmp");
+		VolumeImage image = new VolumeImage(path,
+			fs.getAllocator().blocksCount(), fs.getDevice().blockSize(),
+			VERSION, isCompressed(fs));
+		FileChannel channel = FileChannel.open(temporary,
+			StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+			StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			Output out = new Output(channel, HEADER_SIZE);
+			image.writeVolume(fs, out);
+			out.flush();
+			channel.force(false);
+		} finally {
+			channel.close();
+		}
+		Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING,
+			StandardCopyOption.ATOMIC_MOVE);
+		fs.checkpointed(image);
+	}
+
+	/**
+	 * Writes only changes since last checkpoint, if file system was read
+	 * from specified image or written to it, or whole image otherwise.
+	 */
+	public static void checkpoint(FileSystem fs, String pathName)
+			throws IOException {
+		VolumeImage image = fs.getImage();
+		Path path = Paths.get(pathName).toAbsolutePath().normalize();
+		if (image == null || image.failed || !image.path.equals(path) ||
+			image.version != VERSION || image.compressed != isCompressed(fs) ||
+			!Files.exists(path) || Files.size(path) < image.end ||
+			image.deadBytes > MIN_COMPACTION &&
+			image.deadBytes*2 > image.end - image.start) {
+			write(fs, pathName);
+			return;
+		}
+		FileChannel channel = FileChannel.open(path,
+			StandardOpenOption.WRITE);
+		try {
+			image.update(fs, channel);
+		} finally {
+			channel.close();
+		}
+		fs.checkpointed(image);
+	}
+
+	public static FileSystem read(String pathName) throws IOException {
+		return read(pathName, false);
+	}
+
+	/**
+	 * Reads image. Lazily read volume keeps image to read its blocks and
+	 * descriptors later, so image should not be changed by others, while
+	 * volume is mounted.
+	 */
+	public static FileSystem read(String pathName, boolean lazy)
+			throws IOException {
+		FileChannel channel = FileChannel.open(Paths.get(pathName),
+			StandardOpenOption.READ);
+		try {
+			Input in = new Input(channel, 0, BUFFER_SIZE);
+			if (in.getInt() != MAGIC) {
+				throw new IOException("Wrong image!");
+			}
+			int version = in.getInt();
+			if (version == STREAM_VERSION) {
+				return readStream(in);
+			}
+			if (version != VERSION && version != GEOMETRY_VERSION &&
+				version != HOLES_VERSION && version != BYTES_VERSION &&
+				version != CHARS_VERSION) {
+				throw new IOException("Unsupported image version " +
+					version + "!");
+			}
+			return readRecords(in, Paths.get(pathName), lazy, version);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * @return bytes of block or null, if it was not written
+	 */
+	byte[] readBlock(int index) throws IOException {
+		if (slots.get(index) == 0) {
+			return null;
+		}
+		if (compressed) {
+			Input in = new Input(reader(), slots.get(index) + RECORD_HEADER + 4,
+				(int) extentSizes.get(index));
+			byte[] extent = readExtent(in, blockSize);
+			synchronized (this) {
+				if (inflater == null) {
+					inflater = new Inflater();
+				}
+				try {
+					return CompressedBlockDevice.decompress(extent, blockSize,
+						inflater);
+				} catch (IllegalArgumentException e) {
+					throw new IOException("Wrong block " + index + "!", e);
+				}
+			}
+		}
+		Input in = new Input(reader(), slots.get(index) + blockHeader,
+			slotSize);
+		byte[] data = new byte[blockSize];
+		if (version == CHARS_VERSION) {
+			String chars = in.getString();
+			if (chars == null) {
+				return null;
+			}
+			DataBlock.encode(chars, ByteBuffer.wrap(data));
+		} else {
+			in.getBytes(blockSize).get(data);
+		}
+		return data;
+	}
+
+	/**
+	 * @return descriptor with specified uid or null, if image has not it
+	 */
+	FileDescriptor loadDescriptor(long uid) throws IOException {
+		Long offset = offsets.get(uid);
+		if (offset == null) {
+			return null;
+		}
+		Input in = new Input(reader(), offset + RECORD_HEADER,
+			sizes.get(uid));
+		return readDescriptor(in, version);
+	}
+
+	List<Long> descriptorUids() {
+		return new ArrayList<Long>(offsets.keySet());
+	}
+
+	public boolean isCompressed() {
+		return compressed;
+	}
+
+	public synchronized void close() throws IOException {
+		if (reader != null) {
+			reader.close();
+			reader = null;
+		}
+		if (inflater != null) {
+			inflater.end();
+			inflater = null;
+		}
+	}
+
+	// channel is used by several threads, because its reads are positional
+	private synchronized FileChannel reader() throws IOException {
+		if (reader == null) {
+			reader = FileChannel.open(path, StandardOpenOption.READ);
+		}
+		return reader;
+	}
+
+	private void writeVolume(FileSystem fs, Output out) throws IOException {
+		BlockDevice device = fs.getDevice();
+		BlockAllocator allocator = fs.getAllocator();
+		// superblock is written last, when end of records is known
+		for (int copy = 0; copy < 2; copy++) {
+			for (int i = 0; i < allocator.wordsCount(); i++) {
+				out.putLong(allocator.wordAt(i));
+			}
+		}
+		if (device instanceof MappedBlockDevice) {
+			device.flush();
+			String pathName = ((MappedBlockDevice) device).getPathName();
+			out.putInt(DEVICE);
+			out.putInt(RECORD_HEADER + 4 + pathName.length()*2);
+			out.putString(pathName);
+		} else if (compressed) {
+			Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+			try {
+				for (int i = allocator.nextUsed(0); i >= 0;
+						i = allocator.nextUsed(i + 1)) {
+					updateExtent(out, i, extent(device, i, deflater), null);
+				}
+			} finally {
+				deflater.end();
+			}
+		} else {
+			for (int i = allocator.nextUsed(0); i >= 0;
+					i = allocator.nextUsed(i + 1)) {
+				slots.set(i, out.position());
+				writeBlock(out, i, device, generation);
+			}
+		}
+		// descriptors of lazily read volume are not kept in memory
+		for (long uid: fs.descriptorUids()) {
+			writeDescriptor(out, fs.peekDescriptor(uid));
+		}
+		writeOpened(out, fs);
+		if (fs.getRefs().sharedCount() > 0) {
+			writeRefs(out, fs);
+		}
+		end = out.position();
+		out.seek(0);
+		writeHeader(out, fs, bitmap, generation);
+	}
+
+	// records of checkpoint are written beside old ones, which are read, if
+	// checkpoint was interrupted before superblock was written
+	private void update(FileSystem fs, FileChannel channel)
+			throws IOException {
+		BlockDevice device = fs.getDevice();
+		BlockAllocator allocator = fs.getAllocator();
+		BitSet dirty = fs.getDirtyBlocks();
+		long next = generation + 1;
+		failed = true;
+		Output out = new Output(channel, end);
+		// blocks of interrupted checkpoint would be read with number of this
+		// one, so they are marked as dead before superblock
+		for (long offset: unfinished) {
+			out.seek(offset);
+			out.putInt(DEAD);
+		}
+		// records, which are marked as dead after superblock is written
+		ArrayDeque<Long> killed = new ArrayDeque<Long>(stale);
+		killed.addAll(staleSlots);
+		ArrayDeque<Long> freed = new ArrayDeque<Long>(staleSlots);
+		// records of removed descriptors are marked as dead after their old
+		// records
+		ArrayDeque<Long> buried = new ArrayDeque<Long>(removed);
+		if (device instanceof MappedBlockDevice) {
+			device.flush();
+		} else if (compressed) {
+			Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+			try {
+				for (int i = dirty.nextSetBit(0); i >= 0;
+						i = dirty.nextSetBit(i + 1)) {
+					updateExtent(out, i, allocator.isUsed(i) ?
+						extent(device, i, deflater) : null, killed);
+				}
+			} finally {
+				deflater.end();
+			}
+		} else {
+			for (int i = dirty.nextSetBit(0); i >= 0;
+					i = dirty.nextSetBit(i + 1)) {
+				if (slots.get(i) != 0) {
+					killed.add(slots.get(i));
+					freed.add(slots.get(i));
+					deadBytes += slotSize;
+					slots.set(i, 0);
+				}
+				// slot, which is freed by this checkpoint, is not reused
+				if (allocator.isUsed(i)) {
+					slots.set(i, allocateSlot());
+					out.seek(slots.get(i));
+					writeBlock(out, i, device, next);
+				}
+			}
+		}
+		// new records are appended after last one
+		for (long uid: fs.getDirtyDescriptors()) {
+			Long offset = offsets.remove(uid);
+			if (offset != null) {
+				killed.add(offset);
+				deadBytes += sizes.remove(uid);
+			}
+			FileDescriptor fd = fs.getFileDescriptor(uid);
+			if (fd != null) {
+				out.seek(end);
+				writeDescriptor(out, fd);
+				end = out.position();
+			} else if (offset != null) {
+				out.seek(end);
+				buried.add(end);
+				deadBytes += RECORD_HEADER + 8;
+				writeRemoved(out, uid);
+				end = out.position();
+			}
+		}
+		if (fs.isDirtyOpened()) {
+			if (openedOffset != 0) {
+				killed.add(openedOffset);
+				deadBytes += openedSize;
+			}
+			out.seek(end);
+			writeOpened(out, fs);
+			end = out.position();
+		}
+		// empty record replaces old one, till it is marked as dead
+		if (fs.isDirtyRefs() && (refsOffset != 0 ||
+			fs.getRefs().sharedCount() > 0)) {
+			if (refsOffset != 0) {
+				killed.add(refsOffset);
+				deadBytes += refsSize;
+			}
+			out.seek(end);
+			writeRefs(out, fs);
+			end = out.position();
+			if (fs.getRefs().sharedCount() == 0) {
+				buried.add(refsOffset);
+				deadBytes += refsSize;
+				refsOffset = 0;
+			}
+		}
+		// words are written to other copy of bitmap, which has not changes
+		// of this checkpoint and of previous one
+		BitSet changed = new BitSet();
+		for (int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i + 1)) {
+			changed.set(i >>> 6);
+		}
+		staleWords.or(changed);
+		int copy = 1 - bitmap;
+		for (int i = staleWords.nextSetBit(0); i >= 0;
+				i = staleWords.nextSetBit(i + 1)) {
+			out.seek(HEADER_SIZE + copy*bitmapSize + 8L*i);
+			out.putLong(allocator.wordAt(i));
+		}
+		out.flush();
+		channel.force(false);
+		// superblock makes new records and copy of bitmap visible
+		out.seek(0);
+		writeHeader(out, fs, copy, next);
+		out.flush();
+		channel.force(false);
+		bitmap = copy;
+		generation = next;
+		unfinished.clear();
+		staleWords.clear();
+		staleWords.or(changed);
+		// old records, which stay alive after crash, are replaced by new ones
+		for (long offset: killed) {
+			out.seek(offset);
+			out.putInt(DEAD);
+		}
+		out.flush();
+		channel.force(false);
+		if (!buried.isEmpty()) {
+			for (long offset: buried) {
+				out.seek(offset);
+				out.putInt(DEAD);
+			}
+			out.flush();
+			channel.force(false);
+		}
+		stale.clear();
+		staleSlots.clear();
+		removed.clear();
+		freeSlots.addAll(freed);
+		failed = false;
+	}
+
+	// changed extent is appended after last record, so old one is read, if
+	// checkpoint was interrupted
+	private void updateExtent(Output out, int index, byte[] extent,
+			ArrayDeque<Long> killed) throws IOException {
+		if (slots.get(index) != 0) {
+			killed.add(slots.get(index));
+			deadBytes += (int) extentSizes.get(index);
+			slots.set(index, 0);
+			extentSizes.set(index, 0);
+		}
+		// allocated block, which was not written, has no record
+		if (extent != null) {
+			out.seek(end);
+			slots.set(index, end);
+			extentSizes.set(index, RECORD_HEADER + 4 + extent.length);
+			writeExtent(out, index, extent);
+			end = out.position();
+		}
+	}
+
+	// extent of block on compressed device or compressed bytes of block
+	private byte[] extent(BlockDevice device, int index, Deflater deflater) {
+		if (device instanceof CompressedBlockDevice) {
+			return ((CompressedBlockDevice) device).extent(index);
+		}
+		byte[] block = new byte[blockSize];
+		device.read(index, 0, ByteBuffer.wrap(block));
+		return CompressedBlockDevice.compress(block, deflater);
+	}
+
+	private long allocateSlot() {
+		Long offset = freeSlots.poll();
+		if (offset != null) {
+			deadBytes -= slotSize;
+			return offset;
+		}
+		long slot = end;
+		end += slotSize;
+		return slot;
+	}
+
+	private void writeHeader(Output out, FileSystem fs, int copy,
+			long generation) throws IOException {
+		out.putInt(MAGIC);
+		out.putInt(VERSION);
+		out.putInt(blockSize);
+		out.putInt(slots.length());
+		out.putInt(fs.getDevice() instanceof MappedBlockDevice ?
+			MAPPED_DEVICE : compressed ? COMPRESSED_DEVICE : HEAP_DEVICE);
+		out.putInt(fs.linksCount());
+		out.putLong(fs.getNextUid());
+		out.putLong(fs.getRoot().getUid());
+		out.putLong(fs.getCurrentDirectory().getUid());
+		out.putLong(end);
+		out.putLong(deadBytes);
+		out.putLong(fs.getSequence());
+		Geometry geometry = fs.getGeometry();
+		out.putInt(geometry.getDescriptorsCount());
+		out.putInt(geometry.getFileBlocks());
+		out.putInt(copy);
+		out.putLong(generation);
+	}
+
+	// record in reused slot is read, only if superblock has its checkpoint
+	private void writeBlock(Output out, int index, BlockDevice device,
+			long generation) throws IOException {
+		out.putInt(BLOCK);
+		out.putInt(slotSize);
+		out.putInt(index);
+		out.putLong(generation);
+		out.putBlock(device, index);
+	}
+
+	private void writeExtent(Output out, int index, byte[] extent)
+			throws IOException {
+		out.putInt(EXTENT);
+		out.putInt(RECORD_HEADER + 4 + extent.length);
+		out.putInt(index);
+		out.putBytes(extent);
+	}
+
+	// record of removed descriptor hides its old one, till it is marked as
+	// dead
+	private void writeRemoved(Output out, long uid) throws IOException {
+		out.putInt(REMOVED);
+		out.putInt(RECORD_HEADER + 8);
+		out.putLong(uid);
+	}
+
+	private void writeDescriptor(Output out, FileDescriptor fd)
+			throws IOException {
+		BlockMap map = fd.getBlocks();
+		int size = RECORD_HEADER + 32 + 8 + map.extentsCount()*12;
+		if (fd.isDirectory()) {
+			size += 4;
+			for (String name: fd.getEntries().names()) {
+				size += 4 + name.length()*2 + 8;
+			}
+		}
+		offsets.put(fd.getUid(), out.position());
+		sizes.put(fd.getUid(), size);
+		out.putInt(DESCRIPTOR);
+		out.putInt(size);
+		out.putLong(fd.getUid());
+		out.putLong(fd.getCreated());
+		out.putInt((fd.isDirectory() ? DIRECTORY : 0) |
+			(fd.isSymlink() ? SYMLINK : 0));
+		out.putInt(fd.getHardlinksCount());
+		out.putLong(fd.getParent());
+		out.putInt(map.size());
+		out.putInt(map.extentsCount());
+		for (int i = 0; i < map.extentsCount(); i++) {
+			out.putInt(map.extentOffset(i));
+			out.putInt(map.extentStart(i));
+			out.putInt(map.extentLength(i));
+		}
+		if (fd.isDirectory()) {
+			DirectoryIndex entries = fd.getEntries();
+			out.putInt(entries.size());
+			for (String name: entries.names()) {
+				out.putString(name);
+				out.putLong(entries.get(name));
+			}
+		}
+	}
+
+	// uid of file is repeated for each its open
+	private void writeOpened(Output out, FileSystem fs) throws IOException {
+		List<Long> opened = fs.getOpened();
+		openedOffset = out.position();
+		openedSize = RECORD_HEADER + 4 + opened.size()*8;
+		out.putInt(OPENED);
+		out.putInt(openedSize);
+		out.putInt(opened.size());
+		for (long uid: opened) {
+			out.putLong(uid);
+		}
+	}
+
+	// counts of blocks, which are shared by files and snapshots
+	private void writeRefs(Output out, FileSystem fs) throws IOException {
+		Map<Integer, Integer> counts = fs.getRefs().counts();
+		refsOffset = out.position();
+		refsSize = RECORD_HEADER + 4 + counts.size()*8;
+		out.putInt(REFS);
+		out.putInt(refsSize);
+		out.putInt(counts.size());
+		for (Map.Entry<Integer, Integer> entry: counts.entrySet()) {
+			out.putInt(entry.getKey());
+			out.putInt(entry.getValue());
+		}
+	}
+
+	private static FileSystem readRecords(Input in, Path path, boolean lazy,
+			int version) throws IOException {
+		int blockSize = in.getInt();
+		if (version == CHARS_VERSION) {
+			if (blockSize != DataBlock.BLOCK_SIZE) {
+				throw new IOException("Wrong block size!");
+			}
+			blockSize = DataBlock.BLOCK_BYTES;
+		} else if (blockSize < SlabBlockDevice.MIN_BLOCK_SIZE ||
+			blockSize > SlabBlockDevice.MAX_BLOCK_SIZE ||
+			Integer.bitCount(blockSize) != 1) {
+			throw new IOException("Wrong block size!");
+		}
+		int blocksCount = in.getInt();
+		if (blocksCount <= 0) {
+			throw new IOException("Wrong image!");
+		}
+		int deviceKind = in.getInt();
+		int linksCount = in.getInt();
+		long nextUid = in.getLong();
+		long rootUid = in.getLong();
+		long currentUid = in.getLong();
+		VolumeImage image = new VolumeImage(path, blocksCount, blockSize,
+			version, deviceKind == COMPRESSED_DEVICE);
+		image.end = in.getLong();
+		image.deadBytes = in.getLong();
+		// last journaled operation, which changes are in image
+		long sequence = in.getLong();
+		// limits of old images are default ones
+		int descriptorsCount = version > HOLES_VERSION ? in.getInt() :
+			blocksCount;
+		int fileBlocks = version > HOLES_VERSION ? in.getInt() :
+			Geometry.DEFAULT_FILE_BLOCKS;
+		Geometry geometry;
+		try {
+			geometry = new Geometry(blocksCount, blockSize, descriptorsCount,
+				fileBlocks);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Wrong geometry!", e);
+		}
+		// old images have one copy of bitmap and no checkpoint numbers
+		if (version > GEOMETRY_VERSION) {
+			image.bitmap = in.getInt();
+			image.generation = in.getLong();
+			if (image.bitmap != 0 && image.bitmap != 1) {
+				throw new IOException("Wrong image!");
+			}
+		}
+		in.seek(HEADER_SIZE + image.bitmap*image.bitmapSize);
+		// bitmap is read by words, so pages of free blocks are not allocated
+		BlockAllocator allocator = new BlockAllocator(blocksCount);
+		for (int i = 0; i < allocator.wordsCount(); i++) {
+			allocator.setWord(i, in.getLong());
+		}
+		// other copy can have words of interrupted checkpoint
+		if (version > GEOMETRY_VERSION) {
+			in.seek(HEADER_SIZE + (1 - image.bitmap)*image.bitmapSize);
+			for (int i = 0; i < allocator.wordsCount(); i++) {
+				if (in.getLong() != allocator.wordAt(i)) {
+					image.staleWords.set(i);
+				}
+			}
+			in.seek(image.start);
+		}
+		BlockDevice device = null;
+		if (deviceKind == HEAP_DEVICE) {
+			device = lazy ?
+				new ImageBlockDevice(image, blocksCount, blockSize) :
+				new SlabBlockDevice(blocksCount, blockSize);
+		} else if (deviceKind == COMPRESSED_DEVICE) {
+			device = lazy ?
+				new ImageBlockDevice(image, blocksCount, blockSize) :
+				new CompressedBlockDevice(blocksCount, blockSize);
+		}
+		InodeTable inodes = new InodeTable();
+		long[] opened = new long[0];
+		BlockRefs refs = new BlockRefs();
+		// checkpoints of block records by block numbers
+		PagedLongArray generations = new PagedLongArray(blocksCount);
+		while (in.position() < image.end) {
+			long offset = in.position();
+			int type = in.getInt();
+			int size = in.getInt();
+			if (size < RECORD_HEADER || offset + size > image.end) {
+				throw new IOException("Wrong record on " + offset + "!");
+			}
+			switch (type) {
+			case DEAD:
+				if (size == image.slotSize && !image.compressed) {
+					image.freeSlots.add(offset);
+				}
+				break;
+			case BLOCK:
+				int index = in.getInt();
+				if (device == null || image.compressed || index < 0 ||
+					index >= blocksCount) {
+					throw new IOException("Wrong block " + index + "!");
+				}
+				long written = version > GEOMETRY_VERSION ? in.getLong() : 0;
+				// block of interrupted checkpoint was written to dead slot
+				if (written > image.generation) {
+					image.unfinished.add(offset);
+					image.freeSlots.add(offset);
+					break;
+				}
+				// older record was not marked as dead, because checkpoint
+				// was interrupted
+				if (image.slots.get(index) != 0) {
+					if (generations.get(index) > written) {
+						image.staleSlots.add(offset);
+						break;
+					}
+					image.staleSlots.add(image.slots.get(index));
+				}
+				generations.set(index, written);
+				// data of lazily read volume is read on first access
+				if (!lazy && version == CHARS_VERSION) {
+					String data = in.getString();
+					if (data != null) {
+						device.write(index, data);
+					}
+				} else if (!lazy) {
+					device.write(index, 0, in.getBytes(blockSize));
+				}
+				image.slots.set(index, offset);
+				break;
+			case EXTENT:
+				index = in.getInt();
+				if (!image.compressed || index < 0 || index >= blocksCount) {
+					throw new IOException("Wrong block " + index + "!");
+				}
+				// extents are kept in memory without decompression
+				if (!lazy) {
+					try {
+						((CompressedBlockDevice) device).putExtent(index,
+							readExtent(in, blockSize));
+					} catch (IllegalArgumentException e) {
+						throw new IOException("Wrong block " + index + "!", e);
+					}
+				}
+				// record was not marked as dead, because checkpoint was
+				// interrupted
+				if (image.slots.get(index) != 0) {
+					image.stale.add(image.slots.get(index));
+				}
+				image.slots.set(index, offset);
+				image.extentSizes.set(index, size);
+				break;
+			case DESCRIPTOR:
+				long uid;
+				if (lazy) {
+					uid = in.getLong();
+				} else {
+					FileDescriptor fd = readDescriptor(in, version);
+					inodes.put(fd);
+					uid = fd.getUid();
+				}
+				// record was not marked as dead, because checkpoint was
+				// interrupted
+				Long old = image.offsets.put(uid, offset);
+				if (old != null) {
+					image.stale.add(old);
+				}
+				image.sizes.put(uid, size);
+				break;
+			case REMOVED:
+				uid = in.getLong();
+				inodes.remove(uid);
+				old = image.offsets.remove(uid);
+				if (old != null) {
+					image.sizes.remove(uid);
+					image.stale.add(old);
+				}
+				image.removed.add(offset);
+				break;
+			case OPENED:
+				opened = new long[in.getCount()];
+				for (int i = 0; i < opened.length; i++) {
+					opened[i] = in.getLong();
+				}
+				if (image.openedOffset != 0) {
+					image.stale.add(image.openedOffset);
+				}
+				image.openedOffset = offset;
+				image.openedSize = size;
+				break;
+			case REFS:
+				refs = new BlockRefs();
+				int shared = in.getCount();
+				for (int i = 0; i < shared; i++) {
+					int block = in.getInt();
+					int count = in.getInt();
+					if (block < 0 || block >= blocksCount || count < 2) {
+						throw new IOException("Wrong block " + block + "!");
+					}
+					refs.set(block, count);
+				}
+				if (image.refsOffset != 0) {
+					image.stale.add(image.refsOffset);
+				}
+				image.refsOffset = offset;
+				image.refsSize = size;
+				break;
+			case DEVICE:
+				if (device != null) {
+					throw new IOException("Wrong device!");
+				}
+				String pathName = in.getString();
+				if (!hasBlocks(pathName, blocksCount, blockSize)) {
+					throw new IOException("Wrong device size!");
+				}
+				device = new MappedBlockDevice(pathName, blocksCount,
+					blockSize);
+				break;
+			default:
+				throw new IOException("Wrong record on " + offset + "!");
+			}
+			if (in.position() > offset + size) {
+				throw new IOException("Wrong record on " + offset + "!");
+			}
+			in.seek(offset + size);
+		}
+		if (device == null) {
+			throw new IOException("Wrong device!");
+		}
+		if (lazy) {
+			// only descriptors of directories, which are used by file
+			// system itself, are read on mount
+			for (long uid: new long[] {rootUid, currentUid}) {
+				FileDescriptor fd = image.loadDescriptor(uid);
+				if (fd != null) {
+					inodes.put(fd);
+				}
+			}
+		}
+		FileSystem fs = createFileSystem(device, geometry, allocator, inodes,
+			rootUid, nextUid, linksCount, currentUid);
+		if (lazy) {
+			fs.loadLazily(image, image.offsets.size());
+		}
+		// descriptors of opened files are read, before they are opened
+		for (long uid: opened) {
+			fs.addOpen(uid);
+		}
+		fs.setRefs(refs);
+		fs.setSequence(sequence);
+		fs.checkpointed(image);
+		return fs;
+	}
+
+	// images of first version are read only, next checkpoint rewrites them
+	private static FileSystem readStream(Input in) throws IOException {
+		if (in.getInt() != DataBlock.BLOCK_SIZE) {
+			throw new IOException("Wrong block size!");
+		}
+		int blocksCount = in.getInt();
+		long nextUid = in.getLong();
+		long rootUid = in.getLong();
+		long currentUid = in.getLong();
+		int linksCount = in.getInt();
+		long[] words = new long[in.getCount()];
+		for (int i = 0; i < words.length; i++) {
+			words[i] = in.getLong();
+		}
+		BlockAllocator allocator;
+		try {
+			allocator = new BlockAllocator(blocksCount, words);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Wrong bitmap!", e);
+		}
+		BlockDevice device;
+		if (in.getInt() == MAPPED_DEVICE) {
+			device = new MappedBlockDevice(in.getString());
+			if (device.blocksCount() != blocksCount) {
+				device.close();
+				throw new IOException("Wrong device size!");
+			}
+		} else {
+			device = new SlabBlockDevice(blocksCount);
+			int used = in.getCount();
+			for (int i = 0; i < used; i++) {
+				int index = in.getInt();
+				String data = in.getString();
+				if (index < 0 || index >= blocksCount) {
+					throw new IOException("Wrong block " + index + "!");
+				}
+				if (data != null) {
+					device.write(index, data);
+				}
+			}
+		}
+		InodeTable inodes = new InodeTable();
+		int descriptors = in.getCount();
+		for (int i = 0; i < descriptors; i++) {
+			inodes.put(readDescriptor(in, STREAM_VERSION));
+		}
+		FileSystem fs = createFileSystem(device, new Geometry(device),
+			allocator, inodes, rootUid, nextUid, linksCount, currentUid);
+		int opened = in.getCount();
+		for (int i = 0; i < opened; i++) {
+			fs.addOpen(in.getLong());
+		}
+		return fs;
+	}
+
+	private static FileSystem createFileSystem(BlockDevice device,
+			Geometry geometry, BlockAllocator allocator, InodeTable inodes,
+			long rootUid, long nextUid, int linksCount, long currentUid)
+			throws IOException {
+		if (!geometry.fits(device)) {
+			throw new IOException("Wrong geometry!");
+		}
+		FileSystem fs;
+		try {
+			fs = new FileSystem(device, geometry, allocator, inodes, rootUid,
+				nextUid, linksCount);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Wrong root!", e);
+		}
+		FileDescriptor current = inodes.get(currentUid);
+		if (current != null && current.isDirectory()) {
+			fs.setCurrentDirectory(current);
+		}
+		return fs;
+	}
+
+	// blocks of lazily read volume are kept in image
+	private static boolean isCompressed(FileSystem fs) {
+		BlockDevice device = fs.getDevice();
+		return device instanceof CompressedBlockDevice ||
+			device instanceof ImageBlockDevice &&
+			((ImageBlockDevice) device).isCompressed();
+	}
+
+	// method and length of extent are checked before its data is read
+	private static byte[] readExtent(Input in, int blockSize)
+			throws IOException {
+		byte method = in.getByte();
+		int length = in.getInt();
+		if (length < 0 || length > blockSize) {
+			throw new IOException("Wrong image!");
+		}
+		byte[] extent = new byte[CompressedBlockDevice.EXTENT_HEADER + length];
+		ByteBuffer.wrap(extent).put(method).putInt(length);
+		in.getBytes(length).get(extent, CompressedBlockDevice.EXTENT_HEADER,
+			length);
+		return extent;
+	}
+
+	// file of mapped device should not be resized by mount
+	private static boolean hasBlocks(String pathName, int blocksCount,
+			int blockSize) {
+		try {
+			return MappedBlockDevice.blocksCount(pathName, blockSize) ==
+				blocksCount;
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	private static FileDescriptor readDescriptor(Input in, int version)
+			throws IOException {
+		long uid = in.getLong();
+		long created = in.getLong();
+		int flags = in.getInt();
+		int hardLinksCount = in.getInt();
+		long parent = in.getLong();
+		FileDescriptor fd;
+		try {
+			fd = new FileDescriptor(uid, (flags & DIRECTORY) != 0,
+				(flags & SYMLINK) != 0, created, hardLinksCount, parent);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Wrong descriptor " + uid + "!", e);
+		}
+		BlockMap map = fd.getBlocks();
+		// block maps of old images have no holes
+		int size = version >= HOLES_VERSION ? in.getCount() : 0;
+		int extents = in.getCount();
+		for (int i = 0; i < extents; i++) {
+			int offset = version >= HOLES_VERSION ? in.getCount() : map.size();
+			int start = in.getInt();
+			int length = in.getInt();
+			if (offset < map.size() || length <= 0 ||
+				(long) offset + length > Geometry.MAX_FILE_BLOCKS) {
+				throw new IOException("Wrong blocks of " + uid + "!");
+			}
+			for (int j = 0; j < length; j++) {
+				map.set(offset + j, start + j);
+			}
+		}
+		map.resize(Math.max(size, map.size()));
+		if (fd.isDirectory()) {
+			int entries = in.getCount();
+			for (int i = 0; i < entries; i++) {
+				String name = in.getString();
+				long child = in.getLong();
+				if (name == null || child == NameTree.ABSENT) {
+					throw new IOException("Wrong entry in " + uid + "!");
+				}
+				fd.getEntries().put(name, child);
+			}
+		}
+		return fd;
+	}
+
+	// buffer, which is written to channel on its position, when it is full
+	private static class Output {
+
+		private final FileChannel channel;
+
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+		// offset in channel of first byte in buffer
+		private long position;
+
+		private Output(FileChannel channel, long position) {
+			this.channel = channel;
+			this.position = position;
+		}
+
+		private long position() {
+			return position + buffer.position();
+		}
+
+		// next bytes are written on specified offset
+		private void seek(long offset) throws IOException {
+			if (offset != position()) {
+				flush();
+				position = offset;
+			}
+		}
+
+		private void putInt(int value) throws IOException {
+			ensure(4);
+			buffer.putInt(value);
+		}
+
+		private void putLong(long value) throws IOException {
+			ensure(8);
+			buffer.putLong(value);
+		}
+
+		// length and chars, null is written as length only
+		private void putString(String value) throws IOException {
+			if (value == null) {
+				putInt(NO_DATA);
+				return;
+			}
+			putInt(value.length());
+			int offset = 0;
+			while (offset < value.length()) {
+				ensure(2);
+				int count = Math.min(value.length() - offset,
+					buffer.remaining()/2);
+				buffer.asCharBuffer().put(value, offset, offset + count);
+				buffer.position(buffer.position() + count*2);
+				offset += count;
+			}
+		}
+
+		private void putBytes(byte[] bytes) throws IOException {
+			int offset = 0;
+			while (offset < bytes.length) {
+				ensure(1);
+				int count = Math.min(bytes.length - offset, buffer.remaining());
+				buffer.put(bytes, offset, count);
+				offset += count;
+			}
+		}
+
+		// bytes are copied from device to buffer directly
+		private void putBlock(BlockDevice device, int index)
+				throws IOException {
+			int size = device.blockSize();
+			ensure(size);
+			ByteBuffer block = buffer.duplicate();
+			block.limit(block.position() + size);
+			device.read(index, 0, block);
+			buffer.position(block.limit());
+		}
+
+		private void ensure(int bytes) throws IOException {
+			if (buffer.remaining() < bytes) {
+				flush();
+			}
+		}
+
+		private void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				position += channel.write(buffer, position);
+			}
+			buffer.clear();
+		}
+	}
+
+	// buffer, which is filled from channel on its position, when it is empty
+	private static class Input {
+
+		private final FileChannel channel;
+
+		private final ByteBuffer buffer;
+
+		// offset in channel after last byte in buffer
+		private long filled;
+
+		private Input(FileChannel channel, long position, int capacity) {
+			this.channel = channel;
+			buffer = ByteBuffer.allocateDirect(capacity);
+			buffer.flip();
+			filled = position;
+		}
+
+		private long position() {
+			return filled - buffer.remaining();
+		}
+
+		private byte getByte() throws IOException {
+			need(1);
+			return buffer.get();
+		}
+
+		private int getInt() throws IOException {
+			need(4);
+			return buffer.getInt();
+		}
+
+		// count of following records, can not be negative
+		private int getCount() throws IOException {
+			int count = getInt();
+			if (count < 0) {
+				throw new IOException("Wrong image!");
+			}
+			return count;
+		}
+
+		private long getLong() throws IOException {
+			need(8);
+			return buffer.getLong();
+		}
+
+		private String getString() throws IOException {
+			int length = getInt();
+			if (length == NO_DATA) {
+				return null;
+			}
+			if (length < 0 || length > BUFFER_SIZE) {
+				throw new IOException("Wrong image!");
+			}
+			char[] chars = new char[length];
+			int offset = 0;
+			while (offset < length) {
+				need(2);
+				int count = Math.min(length - offset, buffer.remaining()/2);
+				buffer.asCharBuffer().get(chars, offset, count);
+				buffer.position(buffer.position() + count*2);
+				offset += count;
+			}
+			return new String(chars);
+		}
+
+		// view of next bytes, which is valid till next read
+		private ByteBuffer getBytes(int length) throws IOException {
+			need(length);
+			ByteBuffer bytes = buffer.duplicate();
+			bytes.limit(bytes.position() + length);
+			buffer.position(bytes.limit());
+			return bytes;
+		}
+
+		// skipped bytes are not read, if they are not in buffer yet
+		private void seek(long offset) throws IOException {
+			long skipped = offset - position();
+			if (skipped >= 0 && skipped <= buffer.remaining()) {
+				buffer.position(buffer.position() + (int) skipped);
+				return;
+			}
+			buffer.clear();
+			buffer.flip();
+			filled = offset;
+		}
+
+		private void need(int bytes) throws IOException {
+			if (buffer.remaining() >= bytes) {
+				return;
+			}
+			buffer.compact();
+			while (buffer.position() < bytes) {
+				int count = channel.read(buffer, filled);
+				if (count < 0) {
+					throw new EOFException("Image is truncated!");
+				}
+				filled += count;
+			}
+			buffer.flip();
+		}
+	}
+}
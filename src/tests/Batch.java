@@ -0,0 +1,404 @@
+package tests;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Class for batch mode of console application, which runs commands from
+ * file or standard input without prompts. Lines are read and parsed by
+ * producer thread, while previous commands are done. Commands of one batch,
+ * which do not change whole volume, are done with one lock of volume and
+ * their journal records are forced together.
+ * <p>
+ * Empty lines and lines, which start with #, are skipped. Output of
+ * commands is printed in verbose, quiet, summary or json form, throughput
+ * of commands is reported at the end. Results of exports, which end after
+ * their commands, are printed in the same form before it.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+class Batch {
+	
+	public static final transient int DEFAULT_BATCH_SIZE = 256;
+	
+	// count of parsed batches, which wait for their execution
+	private static final transient int QUEUE_SIZE = 4;
+	
+	// start of comment line
+	private static final transient String COMMENT = "#";
+	
+	/**
+	 * Forms of output of batch.
+	 */
+	enum Mode {
+		
+		// output of each command as in interactive mode
+		VERBOSE,
+		
+		// only errors with their line numbers and totals
+		QUIET,
+		
+		// errors, counts of each command and totals
+		SUMMARY,
+		
+		// object with output of each command and object with totals
+		JSON;
+		
+		/**
+		 * @return mode with specified name or null, if there is no such one
+		 */
+		static Mode find(String name) {
+			for (Mode mode: values()) {
+				if (mode.toString().equals(name)) {
+					return mode;
+				}
+			}
+			return null;
+		}
+		
+		@Override
+		public String toString() {
+			return name().toLowerCase(Locale.ROOT);
+		}
+	}
+	
+	// parsed line of input
+	private static class Line {
+		
+		private final int number;
+		
+		private final String text;
+		
+		private final String[] commands;
+		
+		private Line(int number, String text, String[] commands) {
+			this.number = number;
+			this.text = text;
+			this.commands = commands;
+		}
+	}
+	
+	// marks end of input
+	private static final transient List<Line> END =
+		Collections.emptyList();
+	
+	private final Shell shell;
+	
+	private final BufferedReader input;
+	
+	private final Mode mode;
+	
+	private final int batchSize;
+	
+	private final PrintStream out;
+	
+	private final PrintStream err;
+	
+	// output of command, which is done
+	private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+	
+	private final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+	
+	private final BlockingQueue<List<Line>> queue =
+		new ArrayBlockingQueue<List<Line>>(QUEUE_SIZE);
+	
+	// counts of done and failed commands by their names
+	private final Map<String, int[]> counts = new TreeMap<String, int[]>();
+	
+	private int commandsCount;
+	
+	private int failedCount;
+	
+	private int batchesCount;
+	
+	// error of producer, null if input was read
+	private volatile IOException readError;
+	
+	Batch(Shell shell, Reader input, Mode mode, int batchSize) {
+		if (shell == null) {
+			throw new IllegalArgumentException("Wrong shell!");
+		}
+		if (input == null) {
+			throw new IllegalArgumentException("Wrong input!");
+		}
+		if (mode == null) {
+			throw new IllegalArgumentException("Wrong mode!");
+		}
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("Wrong batch size!");
+		}
+		this.shell = shell;
+		this.input = new BufferedReader(input);
+		this.mode = mode;
+		this.batchSize = batchSize;
+		this.out = shell.out;
+		this.err = shell.err;
+	}
+	
+	/**
+	 * Runs all commands of input or commands till exit one.
+	 *
+	 * @return count of failed commands
+	 */
+	int run() {
+		Thread producer = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				produce();
+			}
+		}, "batch-parser");
+		// producer can wait for input, which is not needed after exit
+		producer.setDaemon(true);
+		producer.start();
+		long start = System.nanoTime();
+		Shell.Reporter reporter = shell.reporter;
+		shell.out = new PrintStream(output, true);
+		shell.err = new PrintStream(errors, true);
+		shell.reporter = new Shell.Reporter() {
+			
+			@Override
+			public void report(String message, boolean failed) {
+				reportBackground(message, failed);
+			}
+		};
+		try {
+			while (!shell.exited) {
+				List<Line> lines = take();
+				if (lines == END) {
+					break;
+				}
+				consume(lines);
+				batchesCount++;
+			}
+			// exports are reported, before totals are printed
+			shell.awaitReports();
+		} finally {
+			shell.out = out;
+			shell.err = err;
+			shell.reporter = reporter;
+		}
+		long elapsed = System.nanoTime() - start;
+		if (readError != null) {
+			err.println(readError);
+			failedCount++;
+		}
+		report(elapsed);
+		return failedCount;
+	}
+	
+	// reads lines of input and puts them to queue in batches
+	private void produce() {
+		List<Line> lines = new ArrayList<Line>(batchSize);
+		try {
+			String text;
+			for (int number = 1; (text = input.readLine()) != null;
+					number++) {
+				String[] commands = Shell.parse(text);
+				if (commands.length == 0 || commands[0].startsWith(COMMENT)) {
+					continue;
+				}
+				lines.add(new Line(number, text.trim(), commands));
+				if (lines.size() == batchSize) {
+					put(lines);
+					lines = new ArrayList<Line>(batchSize);
+				}
+			}
+		} catch (IOException e) {
+			readError = e;
+		} finally {
+			if (!lines.isEmpty()) {
+				put(lines);
+			}
+			put(END);
+		}
+	}
+	
+	private void put(List<Line> lines) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				queue.put(lines);
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private List<Line> take() {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return queue.take();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	// runs of commands, which do not change whole volume, are done in batch
+	// of volume, others are done alone
+	private void consume(final List<Line> lines) {
+		int i = 0;
+		while (i < lines.size() && !shell.exited) {
+			if (isExclusive(lines.get(i)) || !shell.isMounted()) {
+				execute(lines.get(i++));
+				continue;
+			}
+			final int first = i;
+			while (i < lines.size() && !isExclusive(lines.get(i))) {
+				i++;
+			}
+			final int last = i;
+			shell.fs.batch(new Runnable() {
+				
+				@Override
+				public void run() {
+					for (int j = first; j < last; j++) {
+						execute(lines.get(j));
+					}
+				}
+			});
+		}
+	}
+	
+	private static boolean isExclusive(Line line) {
+		Command command = Command.find(line.commands[0]);
+		return command != null && command.isExclusive();
+	}
+	
+	private void execute(Line line) {
+		output.reset();
+		errors.reset();
+		boolean done = shell.execute(line.commands);
+		commandsCount++;
+		Command command = Command.find(line.commands[0]);
+		String name = command == null ? "unknown" : command.toString();
+		int[] count = counts.get(name);
+		if (count == null) {
+			count = new int[2];
+			counts.put(name, count);
+		}
+		count[0]++;
+		if (!done) {
+			failedCount++;
+			count[1]++;
+		}
+		switch (mode) {
+		case VERBOSE:
+			out.println("> " + line.text);
+			out.print(output.toString());
+			err.print(errors.toString());
+			break;
+		case JSON:
+			out.println("{\"line\": " + line.number + ", \"command\": " +
+				quote(line.text) + ", \"done\": " + done + ", \"output\": " +
+				quote(output.toString().trim()) + ", \"error\": " +
+				quote(errors.toString().trim()) + "}");
+			break;
+		default:
+			for (String error: errors.toString().split("\\R")) {
+				if (!error.isEmpty()) {
+					err.println("Line " + line.number + ": " + error);
+				}
+			}
+		}
+	}
+	
+	// result of background work is printed in form of mode, it is not
+	// counted as command
+	private void reportBackground(String message, boolean failed) {
+		switch (mode) {
+		case VERBOSE:
+			(failed ? err : out).println(message);
+			break;
+		case JSON:
+			out.println("{\"background\": true, \"done\": " + !failed +
+				", \"output\": " + quote(failed ? "" : message) +
+				", \"error\": " + quote(failed ? message : "") + "}");
+			break;
+		default:
+			if (failed) {
+				err.println("Background: " + message);
+			}
+		}
+	}
+	
+	private void report(long elapsed) {
+		double seconds = elapsed/1e9;
+		double throughput = seconds == 0 ? 0 : commandsCount/seconds;
+		if (mode == Mode.JSON) {
+			out.println(String.format(Locale.ROOT, "{\"commands\": %d, " +
+				"\"failed\": %d, \"batches\": %d, \"seconds\": %.3f, " +
+				"\"throughput\": %.1f}", commandsCount, failedCount,
+				batchesCount, seconds, throughput));
+			return;
+		}
+		if (mode == Mode.SUMMARY) {
+			for (Map.Entry<String, int[]> entry: counts.entrySet()) {
+				int[] count = entry.getValue();
+				out.println(entry.getKey() + (entry.getKey().length() < 8 ?
+					"\t\t" : "\t") + count[0] + " commands, " + count[1] +
+					" failed.");
+			}
+		}
+		out.println(String.format(Locale.ROOT, "%d commands in %d batches " +
+			"were done in %.3f seconds (%.1f commands per second), %d " +
+			"failed.", commandsCount, batchesCount, seconds, throughput,
+			failedCount));
+	}
+	
+	// string as json literal
+	private static String quote(String data) {
+		StringBuilder builder = new StringBuilder("\"");
+		for (int i = 0; i < data.length(); i++) {
+			char c = data.charAt(i);
+			switch (c) {
+			case '"':
+				builder.append("\\\"");
+				break;
+			case '\\':
+				builder.append("\\\\");
+				break;
+			case '\n':
+				builder.append("\\n");
+				break;
+			case '\r':
+				builder.append("\\r");
+				break;
+			case '\t':
+				builder.append("\\t");
+				break;
+			default:
+				if (c < ' ') {
+					builder.append(String.format("\\u%04x", (int) c));
+				} else {
+					builder.append(c);
+				}
+			}
+		}
+		return builder.append('"').toString();
+	}
+}
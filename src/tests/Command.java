@@ -0,0 +1,842 @@
+package tests;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import filesystem.BlockDevice;
+import filesystem.BufferCache;
+import filesystem.CompressedBlockDevice;
+import filesystem.DirectoryIndex;
+import filesystem.FileDescriptor;
+import filesystem.FileSystem;
+import filesystem.FileSystemStats;
+import filesystem.Geometry;
+import filesystem.MappedBlockDevice;
+import filesystem.Session;
+import filesystem.SlabBlockDevice;
+import filesystem.Snapshot;
+
+/**
+ * Enumeration of commands of console application. Each command knows, 
+ * whether it needs mounted volume, how many parameters it takes and
+ * whether it changes whole volume, so it can not be run in batch of other
+ * commands. Commands are run by interactive and batch modes with their 
+ * shell.
+ * 
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+enum Command {
+	
+	MOUNT(false, true, 1, 2, true,
+		"Load file system from specified image or .xml file, image "
+			+ "can be loaded on first access with lazy option.") {
+		
+		@Override
+		void execute(Shell shell, String[] commands) {
+			boolean lazy = commands.length - 1 == 2;
+			if (lazy && (!commands[2].equals("lazy") || 
+				Shell.isXML(commands[1]))) {
+				shell.error("Wrong parameters!");
+				return;
+			}
+			try {
+				// xml volumes are imported, others are binary images
+				if (Shell.isXML(commands[1])) {
+					shell.fs = FileSystem.readXML(commands[1]);
+				} else {
+					shell.fs = FileSystem.readImage(commands[1], lazy);
+				}
+			} catch (Exception e) {
+				shell.error(e);
+				return;
+			}
+			shell.mounted(commands[1]);
+			shell.out.println("File system successfully mounted.");
+		}
+	},
+	
+	UMOUNT(true, false, 1, 1, true,
+		"Load current file system to specified image or .xml file and "
+			+ "delete it from system.") {
+		
+		@Override
+		void execute(Shell shell, String[] commands) {
+			try {
+				// volume is saved with opened files and snapshots first, so
+				// they are kept, if save fails
+				shell.save(commands[1]);
+				shell.session.close();
+				// blocks, kept by snapshots, are not saved as used
+				for (Snapshot snapshot: shell.fs.getSnapshots()) {
+					snapshot.release();
+				}
+				shell.save(commands[1]);
+				shell.unmount();
+			} catch (Exception e) {
+				shell.error(e);
+				return;
+			}
+			shell.out.println("File system successfully unmounted.");
+		}
+	},
+	
+	CHECKPOINT(true, false, 1, 1, true,
+		"Save changes of current file system to specified image "
+			+ "without unmounting.") {
+		
+		@Override
+		void execute(Shell shell, String[] commands) {
+			try {
+				shell.save(commands[1]);
+			} catch (Exception e) {
+				shell.error(e);
+				return;
+			}
+			shell.out.println("File system successfully saved.");
+		}
+	},
+	
+	MKFS(false, true, 1, 5, true,
+		"Create file system on specified device file or in memory, "
+			+ "compressed or not, with optional blocks count, block size "
+			+ "in bytes, descriptors count and maximum file size in "
+			+ "bytes.") {
+		
+		@Override
+		void execute(Shell shell, String[] commands) {
+			int parameters = commands.length - 1;
+			BlockDevice device = null;
+			try {
+				int count = Geometry.DEFAULT_BLOCKS_COUNT;
+				int blockSize = MappedBlockDevice.BLOCK_BYTES;
+				int descriptors = 0;
+				long fileSize = 0;
+				if (parameters >= 2 && 
+					(count = shell.parseInt(commands[2])) == 
+					Shell.NUMBER_PARSE_ERROR) {
+					return;
+				}
+				if (parameters >= 3 && (blockSize = 
+					shell.parseInt(commands[3])) == Shell.NUMBER_PARSE_ERROR) {
+					return;
+				}
+				if (parameters >= 4 && (descriptors = 
+					shell.parseInt(commands[4])) == Shell.NUMBER_PARSE_ERROR) {
+					return;
+				}
+				if (parameters == 5 && (fileSize = 
+					shell.parseLong(commands[5])) == Shell.NUMBER_PARSE_ERROR) {
+					return;
+				}
+				if (commands[1].equals(Shell.MEMORY)) {
+					device = new SlabBlockDevice(count, blockSize);
+				} else if (commands[1].equals(Shell.COMPRESSED)) {
+					device = new CompressedBlockDevice(count, blockSize);
+				} else if (parameters >= 2) {
+					device = MappedBlockDevice.create(commands[1], count, 
+						blockSize);
+				} else {
+					// without blocks count size of device file is used
+					device = MappedBlockDevice.create(commands[1], 
+						MappedBlockDevice.blocksCount(commands[1], blockSize), 
+						blockSize);
+				}
+				// limits, which are not specified, are default ones
+				Geometry geometry = new Geometry(device);
+				if (parameters >= 4) {
+					geometry = Geometry.withFileSize(device.blocksCount(), 
+						device.blockSize(), descriptors, parameters == 5 ? 
+						fileSize : geometry.getMaxFileSize());
+				}
+				shell.fs = new FileSystem(device, geometry);
+			} catch (Exception e) {
+				// device, which got no file system, is not left opened
+				if (device != null && shell.fs == null) {
+					try {
+						device.close();
+					} catch (IOException c) {
+						e.addSuppressed(c);
+					}
+				}
+				shell.error(e);
+				return;
+			}
+			shell.mounted(commands[1]);
+			Geometry geometry = shell.fs.getGeometry();
+			shell.out.println("File system successfully created on " +
+				"device " + commands[1] + " with " + 
+				geometry.getBlocksCount() + " blocks of " + 
+				geometry.getBlockSize() + " bytes, " + 
+				geometry.getDescriptorsCount() + " descriptors and " + 
+				"maximum file size " + geometry.getMaxFileSize() + " bytes.");
+		}
+	},
+	
+	FILESTAT(true, false, 1, 1, false,
+		"Show information about specified by id file descriptor.") {
+		
+		@Override
+		void execute(Shell shell, String[] commands) {
+			long uid = shell.parseLong(commands[1]);
+			if (uid == Shell.NUMBER_PARSE_ERROR) {
+				return;
+			}
+			FileDescriptor fd = shell.fs.getFileDescriptor(uid);
+			if (fd == null) {
+				shell.error(
+					"There is no file descriptor with uid " + uid + "!");
+				return;
+			}
+			shell.out.println(fd);
+		}
+	},
+	
+	LS(true, false, 0, Integer.MAX_VALUE, false,
+		"Show file list with their descriptions.") {
+		
+		@Override
+		void execute(Shell shell, String[] commands) {
+			FileDescriptor current = shell.fs.getCurrentDirectory();
+			DirectoryIndex entries = current.getEntries();
+			for (String entry: entries.names()) {
+				shell.out.print(entry + " --- ");
+				shell.out.println(
+					shell.fs.getFileDescriptor(entries.get(entry)));
+			}
+		}
+	},
+	
+	CREATE(true, false, 1, 1, false,
+		"Create file with specified name.") {
+		
+		@Override
+		void execute(Shell shell, String[] commands) {
+			String name = commands[1];
+			int message = shell.fs.create(name);
+			if (message == FileSystem.TRUNCATED_FILENAME) {
+				shell.out.println("File name was truncated!");
+			} else if (message < 0) {
+				shell.printError(message, name);
+				return;
+			}
+			FileDescriptor fd = shell.fs.getFileDescriptor(name);
+			shell.out.println("File with name " + shell.fs.truncate(name) + 
+				" was successfully created with " + fd + ".");
+		}
+	},
+	
+	OPEN(true, false, 1, 1, false,
+		"Open file with specified name and create handle.") {
+		
+		@Override
+		void execute(Shell shell, String[] commands) {
+			String name = commands[1];
+			int handle = shell.session.open(name);
+			if (handle == Session.TOO_MANY_OPENED) {
+				shell.error("Maximum count of opened files " +
+					"reached!");
+				return;
+			}
+			if (handle < 0) {
+				shell.error(
+					"There is no file with name " + name + "!");
+				return;
+			}
+			shell.out.println("File with name " + name + 
+				" was successfully opened with handle " + handle + ".");
+		}
+	},
+	
+	CLOSE(true, false, 1, 1, false,
+		"Close file, specified by handle.") {
+		
+		@Override
+		void execute(Shell shell, String[] commands) {
+			int handle = shell.parseInt(commands[1]);
+			if (handle == Shell.NUMBER_PARSE_ERROR) {
+				return;
+			}
+			if (shell.session.close(handle) == Session.WRONG_HANDLE) {
+				shell.error("File with handle " + handle + 
+					" was not opened!");
+				return;
+			}
+			shell.out.println("File with handle " + handle + 
+				" was successfully closed.");
+		}
+	},
+	
+	READ(true, false, 3, 3, false,
+		"Read data from specified by handle file with specified "
+			+ "offset and size.") {
+		
+		@Override
+		void execute(Shell shell, String[] commands) {
+			int handle = shell.parseInt(commands[1]);
+			int displacement = shell.parseInt(commands[2]);
+			int size = shell.parseInt(commands[3]);
+			if (handle == Shell.NUMBER_PARSE_ERROR || 
+				displacement == Shell.NUMBER_PARSE_ERROR || 
+				size == Shell.NUMBER_PARSE_ERROR) {
+					return;
+			}
+			if (shell.session.get(handle) == null) {
+				shell.error("File with handle " + handle + 
+					" was not opened!");
+				return;
+			}
+			if (displacement < 0 || size < 0) {
+				shell.error("Wrong displacement or size!");
+				return;
+			}
+			shell.session.seek(handle, displacement);
+			String data = shell.session.read(handle, size);
+			shell.out.println("Data " + data + 
+				" was successfully read form file with handle " + handle +
+				" on displacement " + displacement + " and with "
+				+ "real size " + data.length() + ".");
+		}
+	},
+	
+	WRITE(true, false, 3, 3, false,
+		"Write data to specified by handle file with specified offset "
+			+ "and size.") {
+		
+		@Override
+		void execute(Shell shell, String[] commands) {
+			int handle = shell.parseInt(commands[1]);
+			int displacement = shell.parseInt(commands[2]);
+			int size = shell.parseInt(commands[3]);
+			if (handle == Shell.NUMBER_PARSE_ERROR || 
+				displacement == Shell.NUMBER_PARSE_ERROR || 
+				size == Shell.NUMBER_PARSE_ERROR) {
+					return;
+			}
+			if (shell.session.get(handle) == null) {
+				shell.error("File with handle " + handle + 
+					" was not opened!");
+				return;
+			}
+			if (displacement < 0 || size < 0) {
+				shell.error("Wrong displacement or size!");
+				return;
+			}
+			StringBuilder builder = new StringBuilder();
+			for (int i = 0; i < size; i++) {
+				builder.append(Shell.randomChar());
+			}
+			String data = builder.toString();
+			shell.session.seek(handle, displacement);
+			if (shell.session.write(handle, data) == FileSystem.WRONG_BLOCK) {
+				shell.error("There is no free blocks or " +
+					"file is too big!");
+				return;
+			}
+			shell.out.println("Data " + data + 
+				" was successfully writed in file with handle " + 
+				handle + " on displacement " + displacement + 
+				" and with real size " + size + ".");
+		}
+	},
+	
+	LINK(true, false, 2, 2, false,
+		"Create link on specified file with specified name.") {
+		
+		@Override
+		void execute(Shell shell, String[] commands) {
+			String name = commands[1];
+			String linkName = commands[2];
+			if (name.equals(linkName)) {
+				shell.error("Can not make cyclic hard link!");
+				return;
+			}
+			int message = shell.fs.link(name, linkName);
+			if (message == FileSystem.WRONG_TYPE) {
+				shell.error("Can not make hard link on directory!");
+				return;
+			}
+			if (message == FileSystem.TOO_MANY_LINKS) {
+				shell.error("Maximum count of hard links on this " 
+					+ shell.fs.getFileDescriptor(name) + " reached!");
+				return;
+			}
+			if (message == FileSystem.TRUNCATED_FILENAME) {
+				shell.out.println("Link name was truncated!");
+			} else if (message < 0) {
+				shell.printError(message, name);
+				return;
+			}
+			shell.out.println("Link " + linkName + " on file " + name + 
+				" was successfully created.");
+		}
+	},
+	
+	UNLINK(true, false, 1, 1, false,
+		"Destroy link with specified name.") {
+		
+		@Override
+		void execute(Shell shell, String[] commands) {
+			String linkName = commands[1];
+			FileDescriptor fd = shell.fs.getFileDescriptor(linkName);
+			int message = shell.fs.unlink(linkName);
+			if (message == FileSystem.WRONG_TYPE) {
+				shell.error("Can not unlink directory " + linkName +
+					"! Please, use rmdir command instead.");
+				return;
+			}
+			if (message < 0) {
+				shell.error(
+					"There is no link with name " + linkName + "!");
+				return;
+			}
+			if (fd.isNoHardLinksCount()) {
+				shell.out.println("File " + linkName + 
+					" was successfully removed.");
+			} else {
+				shell.out.println("Link " + linkName + 
+					" was successfully removed.");
+			}
+		}
+	},
+	
+	TRUNCATE(true, false, 2, 2, false,
+		"Change file size, specified by id.") {
+		
+		@Override
+		void execute(Shell shell, String[] commands) {
+			String name = commands[1];
+			int size = shell.parseInt(commands[2]);
+			if (size == Shell.NUMBER_PARSE_ERROR) {
+				return;
+			}
+			FileDescriptor fd = shell.fs.getFileDescriptor(name);
+			if (fd == null || fd.isDirectory()) {
+				shell.error(
+					"There is no file with name " + name + "!");
+				return;
+			}
+			long uid = fd.getUid();
+			if (!shell.fs.isOpened(uid)) {
+				shell.error("File with uid " + uid + 
+					" was not opened!");
+				return;
+			}
+			// size of block in chars
+			int blockSize = shell.fs.getDevice().blockSize()/2;
+			int count = (int) (((long) Math.max(size, 0) + blockSize - 1)/
+				blockSize);
+			int maximum = shell.fs.getGeometry().getFileBlocks();
+			if (count > maximum) {
+				shell.error("Maximum file size is " + 
+					(long) maximum*blockSize + "!");
+				return;
+			}
+			if (shell.fs.resize(fd, count) == FileSystem.WRONG_BLOCK) {
+				shell.error("There is no free blocks!");
+				return;
+			}
+			shell.out.println("File with name " + name + 
+				" was successfully truncated to new size " + 
+				(long) count*blockSize + ".");
+		}
+	},
+	
+	MKDIR(true, false, 1, 1, false,
+		"Make directory with specified name.") {
+		
+		@Override
+		void execute(Shell shell, String[] commands) {
+			String name = commands[1];
+			int message = shell.fs.mkdir(name);
+			if (message == FileSystem.TRUNCATED_FILENAME) {
+				shell.out.println("Directory name was truncated!");
+			} else if (message < 0) {
+				shell.printError(message, name);
+				return;
+			}
+			shell.out.println("Directory with name " + 
+				shell.fs.truncate(name) + " was succesfully created.");
+		}
+	},
+	
+	RMDIR(true, false, 1, 1, false,
+		"Delete specified empty directory.") {
+		
+		@Override
+		void execute(Shell shell, String[] commands) {
+			String name = commands[1];
+			int message = shell.fs.rmdir(name);
+			if (message == FileSystem.NO_SUCH_FILE || 
+				message == FileSystem.WRONG_TYPE) {
+				shell.error(
+					"There is no directory with name " + name + "!");
+				return;
+			}
+			if (message < 0) {
+				shell.printError(message, name);
+				return;
+			}
+			shell.out.println("Directory with name " + name + 
+				" was succesfully removed.");
+		}
+	},
+	
+	CD(true, false, 1, 1, false,
+		"Change current working directory to specified.") {
+		
+		@Override
+		void execute(Shell shell, String[] commands) {
+			String name = commands[1];
+			FileDescriptor current = shell.fs.resolve(name);
+			if (current == null || current.isFile()) {
+				shell.error("There is no directory with name " +
+					name + "!");
+				return;
+			}
+			shell.fs.setCurrentDirectory(current);
+			shell.out.println("Current directory changed to " + name + ".");
+		}
+	},
+	
+	PWD(true, false, 0, Integer.MAX_VALUE, false,
+		"Show current working directory.") {
+		
+		@Override
+		void execute(Shell shell, String[] commands) {
+			String name = shell.fs.getName(shell.fs.getCurrentDirectory());
+			shell.out.println("Current directory is " + name + ".");
+		}
+	},
+	
+	SYMLINK(true, false, 2, 2, false,
+		"Create link with specified name on specified path.") {
+		
+		@Override
+		void execute(Shell shell, String[] commands) {
+			String path = commands[1];
+			String name = commands[2];
+			if (path.equals(name)) {
+				shell.error("Can not make cyclic symbolic link!");
+				return;
+			}
+			int message = shell.fs.symlink(path, name);
+			if (message == FileSystem.TRUNCATED_FILENAME) {
+				shell.out.println("File name was truncated!");
+			} else if (message < 0) {
+				shell.printError(message, name);
+				return;
+			}
+			shell.out.println("Symbolic link with name " + name + " on " 
+				+ path + " was successfully created.");
+		}
+	},
+	
+	DEDUP(true, false, 1, 1, true,
+		"Turn on or off sharing of written blocks with same data.") {
+		
+		@Override
+		void execute(Shell shell, String[] commands) {
+			if (!commands[1].equals("on") && !commands[1].equals("off")) {
+				shell.error("Wrong parameters!");
+				return;
+			}
+			shell.fs.setDeduplicated(commands[1].equals("on"));
+			shell.out.println("Deduplication was successfully turned " + 
+				commands[1] + ".");
+		}
+	},
+	
+	DEDUPSTAT(true, false, 0, Integer.MAX_VALUE, false,
+		"Show space, saved by shared blocks.") {
+		
+		@Override
+		void execute(Shell shell, String[] commands) {
+			int blockSize = shell.fs.getDevice().blockSize();
+			int used = shell.fs.getDevice().blocksCount() - 
+				shell.fs.freeBlocksCount();
+			int saved = shell.fs.savedBlocksCount();
+			shell.out.println("Deduplication is " + 
+				(shell.fs.isDeduplicated() ? "on" : "off") + ".");
+			shell.out.println(used + " blocks are used for " + 
+				(used + saved) + " blocks of files and snapshots.");
+			shell.out.println(shell.fs.sharedBlocksCount() + " blocks are " +
+				"shared, " + saved + " blocks (" + (long) saved*blockSize +
+				" bytes) are saved.");
+			shell.out.println(shell.fs.deduplicatedCount() + " written " +
+				"blocks were deduplicated, " + shell.fs.fingerprintsCount() + 
+				" blocks can be found by data.");
+		}
+	},
+	
+	COMPRESSSTAT(true, false, 0, Integer.MAX_VALUE, false,
+		"Show space, taken by compressed blocks.") {
+		
+		@Override
+		void execute(Shell shell, String[] commands) {
+			if (!(shell.fs.getDevice() instanceof CompressedBlockDevice)) {
+				shell.out.println("Volume is not compressed in memory.");
+				return;
+			}
+			CompressedBlockDevice compressed = 
+				(CompressedBlockDevice) shell.fs.getDevice();
+			long raw = compressed.rawBytes();
+			long stored = compressed.storedBytes();
+			shell.out.println(stored + " bytes are stored for " + raw + 
+				" bytes of written blocks" + (raw == 0 ? "." : 
+				String.format(" (ratio %.2f).", (double) raw/stored)));
+		}
+	},
+	
+	CACHE(true, false, 1, 1, true,
+		"Set count of buffers in cache of blocks, 0 removes cache.") {
+		
+		@Override
+		void execute(Shell shell, String[] commands) {
+			int buffers = shell.parseInt(commands[1]);
+			if (buffers == Shell.NUMBER_PARSE_ERROR) {
+				return;
+			}
+			try {
+				shell.fs.setBuffersCount(buffers);
+			} catch (IllegalArgumentException e) {
+				shell.error(e);
+				return;
+			}
+			shell.out.println(buffers == 0 ? "Buffer cache is removed." :
+				"Buffer cache has " + buffers + " buffers of " + 
+				shell.fs.getDevice().blockSize() + " bytes.");
+		}
+	},
+	
+	CACHESTAT(true, false, 0, Integer.MAX_VALUE, false,
+		"Show hits and misses of cache of blocks.") {
+		
+		@Override
+		void execute(Shell shell, String[] commands) {
+			BufferCache cache = shell.fs.getBufferCache();
+			if (cache == null) {
+				shell.out.println("Volume has no buffer cache.");
+				return;
+			}
+			long hits = cache.hitsCount();
+			long misses = cache.missesCount();
+			shell.out.println(cache.cachedCount() + " of " + 
+				cache.buffersCount() + " buffers are used, " + 
+				cache.dirtyCount() + " are changed.");
+			shell.out.println(hits + " hits, " + misses + " misses" +
+				(hits + misses == 0 ? "" : String.format(" (hit rate " +
+				"%.1f%%)", 100.0*hits/(hits + misses))) + ", " + 
+				cache.evictionsCount() + " evictions, " + 
+				cache.writeBacksCount() + " write backs, " + 
+				cache.prefetchesCount() + " blocks read in advance.");
+		}
+	},
+	
+	SNAPSHOT(true, false, 0, Integer.MAX_VALUE, true,
+		"Show snapshots or create, export to image or .xml file in "
+			+ "background or release snapshot, specified by id.") {
+		
+		@Override
+		void execute(Shell shell, String[] commands) {
+			if (commands.length - 1 == 0) {
+				for (Snapshot snapshot: shell.fs.getSnapshots()) {
+					shell.out.println(snapshot + ".");
+				}
+				shell.out.println(shell.fs.sharedBlocksCount() + 
+					" blocks are shared with snapshots.");
+				return;
+			}
+			if (commands[1].equals("create")) {
+				if (commands.length - 1 != 1) {
+					shell.error("Wrong parameters count!");
+					return;
+				}
+				Snapshot snapshot = shell.fs.snapshot();
+				shell.out.println("Snapshot " + snapshot.getId() + 
+					" was successfully created.");
+				return;
+			}
+			if (!commands[1].equals("export") && 
+				!commands[1].equals("release")) {
+				shell.error("Wrong parameters!");
+				return;
+			}
+			if (commands.length - 1 != (commands[1].equals("export") ? 
+				3 : 2)) {
+				shell.error("Wrong parameters count!");
+				return;
+			}
+			int id = shell.parseInt(commands[2]);
+			if (id == Shell.NUMBER_PARSE_ERROR) {
+				return;
+			}
+			Snapshot snapshot = shell.fs.getSnapshot(id);
+			if (snapshot == null) {
+				shell.error("There is no snapshot with id " + id + 
+					"!");
+				return;
+			}
+			if (commands[1].equals("release")) {
+				snapshot.release();
+				shell.out.println("Snapshot " + id + 
+					" was successfully released.");
+				return;
+			}
+			// volume can be used, while snapshot is written
+			shell.reportExport(id, commands[3], 
+				snapshot.export(commands[3], Shell.isXML(commands[3])));
+			shell.out.println("Export of snapshot " + id + " to " + 
+				commands[3] + " was started.");
+		}
+	},
+	
+	STATS(false, false, 0, 1, false,
+		"Show latencies of commands and operations of file system and its "
+			+ "counters, reset option clears them.") {
+		
+		@Override
+		void execute(Shell shell, String[] commands) {
+			if (commands.length - 1 == 1) {
+				if (!commands[1].equals("reset")) {
+					shell.error("Wrong parameters!");
+					return;
+				}
+				shell.latencies.reset();
+				if (shell.isMounted()) {
+					shell.fs.getStats().reset();
+				}
+				shell.out.println("Statistics were successfully reset.");
+				return;
+			}
+			shell.out.println("Commands:");
+			shell.printLatencies(shell.latencies);
+			if (!shell.isMounted()) {
+				return;
+			}
+			FileSystemStats stats = shell.fs.getStats();
+			shell.out.println("Operations of file system:");
+			shell.printLatencies(stats);
+			shell.out.println(stats.getBlocksAllocated() + " blocks were " +
+				"allocated, " + stats.getBlocksFreed() + " were freed, " + 
+				stats.getFreeBlocksCount() + " of " + stats.getBlocksCount() + 
+				" blocks are free.");
+			shell.out.println(stats.getBytesRead() + " bytes were read, " + 
+				stats.getBytesWritten() + " bytes were written.");
+			shell.out.println(stats.getOpenedFilesCount() + " files are " +
+				"opened, " + stats.getDescriptorsCount() + " descriptors " +
+				"have " + stats.getLinksCount() + " names.");
+		}
+	},
+	
+	HELP(false, false, 0, Integer.MAX_VALUE, false, 
+		"Show these information.") {
+		
+		@Override
+		void execute(Shell shell, String[] commands) {
+			shell.out.println("In this application you can use next commands:");
+			for (Command command: values()) {
+				String name = command.toString();
+				shell.out.println(name + (name.length() < 8 ? "\t\t" : "\t") + 
+					command.help);
+			}
+		}
+	},
+	
+	EXIT(false, false, 0, Integer.MAX_VALUE, true, 
+		"Close application immediately.") {
+		
+		@Override
+		void execute(Shell shell, String[] commands) {
+			shell.out.println("Goodbye.");
+			shell.exited = true;
+		}
+	};
+	
+	private static final Map<String, Command> NAMES = 
+		new HashMap<String, Command>();
+	
+	static {
+		for (Command command: values()) {
+			NAMES.put(command.toString(), command);
+		}
+	}
+	
+	// command needs mounted volume
+	private final boolean mounted;
+	
+	// command needs volume, which is not mounted
+	private final boolean unmounted;
+	
+	private final int minimum;
+	
+	private final int maximum;
+	
+	// command changes whole volume, so it waits for all operations
+	private final boolean exclusive;
+	
+	private final String help;
+	
+	private Command(boolean mounted, boolean unmounted, int minimum, 
+			int maximum, boolean exclusive, String help) {
+		this.mounted = mounted;
+		this.unmounted = unmounted;
+		this.minimum = minimum;
+		this.maximum = maximum;
+		this.exclusive = exclusive;
+		this.help = help;
+	}
+	
+	/**
+	 * @return names of all commands in their order
+	 */
+	static String[] names() {
+		Command[] commands = values();
+		String[] names = new String[commands.length];
+		for (int i = 0; i < commands.length; i++) {
+			names[i] = commands[i].toString();
+		}
+		return names;
+	}
+	
+	/**
+	 * @return command with specified name or null, if there is no such one
+	 */
+	static Command find(String name) {
+		return NAMES.get(name);
+	}
+	
+	boolean isExclusive() {
+		return exclusive;
+	}
+	
+	/**
+	 * Checks state of shell and count of parameters and runs command.
+	 * 
+	 * @param commands name of command and its parameters
+	 */
+	void run(Shell shell, String[] commands) {
+		if (mounted && !shell.isMounted()) {
+			shell.error("There is no mounted file system!");
+			return;
+		}
+		if (unmounted && shell.isMounted()) {
+			shell.error("There is already mounted file system!");
+			return;
+		}
+		if (commands.length - 1 < minimum || commands.length - 1 > maximum) {
+			shell.error("Wrong parameters count!");
+			return;
+		}
+		execute(shell, commands);
+	}
+	
+	abstract void execute(Shell shell, String[] commands);
+	
+	@Override
+	public String toString() {
+		return name().toLowerCase(Locale.ROOT);
+	}
+}
@@ -0,0 +1,285 @@
+package tests;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.StringTokenizer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import filesystem.FileDescriptor;
+import filesystem.FileSystem;
+import filesystem.FileSystemStats;
+import filesystem.LatencyHistogram;
+import filesystem.Metrics;
+import filesystem.Session;
+
+/**
+ * Class for state of console application: mounted file system, session of
+ * user and streams, which commands print their results and errors to.
+ *
+ * @author Mir4ik
+ * @version 0.1 17.10.2026
+ */
+class Shell {
+	
+	/**
+	 * Receiver of results of work, which is done in background, after its
+	 * command was reported.
+	 */
+	interface Reporter {
+		
+		void report(String message, boolean failed);
+	}
+	
+	public static final transient int NUMBER_PARSE_ERROR = -1;
+	
+	// name of device, which keeps volume in memory
+	static final transient String MEMORY = "memory";
+	
+	// name of device, which keeps compressed volume in memory
+	static final transient String COMPRESSED = "compressed";
+	
+	FileSystem fs = null;
+	
+	// files, opened by user, are closed with it
+	Session session = null;
+	
+	PrintStream out;
+	
+	PrintStream err;
+	
+	// last command has printed error
+	boolean failed;
+	
+	// exit command was done
+	boolean exited;
+	
+	// prints to streams of application, batch replaces it to keep its form
+	// of output
+	volatile Reporter reporter;
+	
+	// threads, which wait for results of background work
+	private final List<Thread> reporters = new ArrayList<Thread>();
+	
+	// latencies of commands by their numbers
+	final Metrics latencies = new Metrics(Command.names());
+	
+	Shell(final PrintStream out, final PrintStream err) {
+		this.out = out;
+		this.err = err;
+		reporter = new Reporter() {
+			
+			@Override
+			public void report(String message, boolean failed) {
+				(failed ? err : out).println(message);
+			}
+		};
+	}
+	
+	boolean isMounted() {
+		return fs != null;
+	}
+	
+	/**
+	 * Runs command, specified by its name and parameters, errors of command
+	 * are printed and do not stop application.
+	 *
+	 * @return false, if command has failed
+	 */
+	boolean execute(String[] commands) {
+		failed = false;
+		if (commands.length == 0) {
+			return true;
+		}
+		Command command = Command.find(commands[0]);
+		if (command == null) {
+			error("Unknown command!");
+			return false;
+		}
+		long start = System.nanoTime();
+		try {
+			command.run(this, commands);
+		} catch (RuntimeException e) {
+			error(e);
+		}
+		latencies.record(command.ordinal(), start);
+		return !failed;
+	}
+	
+	/**
+	 * Opens session of mounted file system and registers its statistics
+	 * with name of image or device.
+	 */
+	void mounted(String name) {
+		session = fs.openSession();
+		fs.getStats().register(FileSystemStats.TYPE, name);
+	}
+	
+	void unmount() throws IOException {
+		fs.getStats().unregister();
+		fs.close();
+		fs = null;
+		session = null;
+	}
+	
+	// xml volumes are exported, others are saved by checkpoint
+	void save(String pathName) throws Exception {
+		if (isXML(pathName)) {
+			FileSystem.writeXML(fs, pathName);
+		} else {
+			FileSystem.checkpoint(fs, pathName);
+		}
+	}
+	
+	void error(Object message) {
+		failed = true;
+		err.println(message);
+	}
+	
+	// prints result of export, when it is done
+	void reportExport(final int id, final String pathName,
+			final Future<Void> export) {
+		// command, which has started export, can be already reported
+		Thread thread = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				try {
+					export.get();
+					reporter.report("Snapshot " + id + " was successfully " +
+						"exported to " + pathName + ".", false);
+				} catch (ExecutionException e) {
+					reporter.report(String.valueOf(e.getCause()), true);
+				} catch (InterruptedException e) {
+					// application is closed
+				}
+				synchronized (reporters) {
+					reporters.remove(Thread.currentThread());
+				}
+			}
+		});
+		thread.setDaemon(true);
+		synchronized (reporters) {
+			reporters.add(thread);
+		}
+		thread.start();
+	}
+	
+	// waits for results of background work, which was started by commands
+	void awaitReports() {
+		List<Thread> threads;
+		synchronized (reporters) {
+			threads = new ArrayList<Thread>(reporters);
+		}
+		boolean interrupted = false;
+		for (Thread thread: threads) {
+			while (thread.isAlive()) {
+				try {
+					thread.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	void printError(int message, String name) {
+		switch (message) {
+		case FileSystem.WRONG_BLOCK:
+			error("There is no free blocks!");
+			break;
+		case FileDescriptor.WRONG_DESCRIPTOR:
+			error("Maximum count of descriptors reached!");
+			break;
+		case FileSystem.NO_SUCH_FILE:
+			error("There is no file or directory with name " + name + "!");
+			break;
+		case FileSystem.FILE_EXISTS:
+			error("File with name " + name + " already exists!");
+			break;
+		case FileSystem.NOT_EMPTY:
+			error("Can not remove not empty directory " + name + "!");
+			break;
+		case FileSystem.WRONG_TYPE:
+			error("File with name " + name + " has wrong type!");
+			break;
+		case FileSystem.TOO_MANY_LINKS:
+			error("Maximum count of hard links on " + name + " reached!");
+			break;
+		case FileSystem.BUSY:
+			error("Can not remove current directory " + name + "!");
+			break;
+		default:
+			error("Unknown error " + message + "!");
+		}
+	}
+	
+	// latencies in microseconds
+	void printLatencies(Metrics metrics) {
+		out.println(String.format(Locale.ROOT, "%-16s%10s%10s%10s%10s%10s%12s",
+			"", "count", "mean", "50%", "90%", "99%", "max, us"));
+		for (int i = 0; i < metrics.size(); i++) {
+			LatencyHistogram histogram = metrics.getHistogram(i);
+			if (histogram.count() == 0) {
+				continue;
+			}
+			out.println(String.format(Locale.ROOT, 
+				"%-16s%10d%10.1f%10.1f%10.1f%10.1f%12.1f", metrics.getName(i),
+				histogram.count(), histogram.mean()/1e3, 
+				histogram.percentile(50)/1e3, histogram.percentile(90)/1e3, 
+				histogram.percentile(99)/1e3, histogram.max()/1e3));
+		}
+	}
+	
+	long parseLong(String data) {
+		long parsed = NUMBER_PARSE_ERROR;
+		try {
+			parsed = Long.parseLong(data);
+		} catch (NumberFormatException e) {
+			error(e);
+		}
+		return parsed;
+	}
+	
+	int parseInt(String data) {
+		int parsed = NUMBER_PARSE_ERROR;
+		try {
+			parsed = Integer.parseInt(data);
+		} catch (NumberFormatException e) {
+			error(e);
+		}
+		return parsed;
+	}
+	
+	/**
+	 * Splits line of command to its name and parameters.
+	 */
+	static String[] parse(String line) {
+		StringTokenizer tokenizer = new StringTokenizer(line, " \t");
+		String[] commands = new String[tokenizer.countTokens()];
+		for (int i = 0; tokenizer.hasMoreTokens(); i++) {
+			commands[i] = tokenizer.nextToken();
+		}
+		return commands;
+	}
+	
+	static boolean isXML(String pathName) {
+		return pathName.toLowerCase().endsWith(".xml");
+	}
+	
+	static char randomChar() {
+		Random random = new Random();
+		char generated = (char) random.nextInt();
+		while (generated < 'A' || generated > 'z') {
+			generated = (char) random.nextInt();
+		}
+		return generated;
+	}
+}